@@ -0,0 +1,25 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with JMH's normal command line options, plus the GC profiler so
+ * every result also shows allocation rate and GC counts.
+ * <pre>
+ * mvn -pl shared install
+ * mvn -pl benchmarks package
+ * java -jar benchmarks/target/benchmarks.jar [JMH options, e.g. ChessGameBenchmarks.validMoves]
+ * </pre>
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        var options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,42 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.Fen;
+
+import java.util.Map;
+
+/**
+ * The fixed set of positions every benchmark runs on, so numbers from different runs
+ * (and different commits) can be compared.
+ */
+public final class BenchmarkPositions {
+
+    // Keys are the names used in the benchmarks' @Param lists
+    private static final Map<String, String> POSITIONS = Map.of(
+            // Middlegames: lots of pieces, pins, checks and promotions
+            "kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "position4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "position6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            // Endgames: few pieces, long slider rays
+            "position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "rook-endgame", "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+            "pawn-endgame", "8/5k2/3p4/1p1Pp2p/pP2Pp1P/P4P1K/8/8 b - - 0 1",
+            // White is checkmated
+            "fools-mate", "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3"
+    );
+
+    private BenchmarkPositions() {
+    }
+
+    /**
+     * @param name one of the keys of POSITIONS
+     * @return a new game set up in that position
+     */
+    public static ChessGame load(String name) {
+        String fen = POSITIONS.get(name);
+        if (fen == null) {
+            throw new IllegalArgumentException(String.format("Unknown benchmark position: %s", name));
+        }
+        return Fen.parse(fen);
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying and comparing boards, which happens every time a game is cached or stored.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessBoardBenchmarks {
+
+    @Param({"kiwipete", "position4", "position6", "position3", "rook-endgame", "pawn-endgame", "fools-mate"})
+    public String position;
+
+    private ChessBoard board;
+    private ChessBoard equalBoard;
+
+    @Setup
+    public void setup() {
+        board = BenchmarkPositions.load(position).getBoard();
+        equalBoard = BenchmarkPositions.load(position).getBoard();
+    }
+
+    /**
+     * ChessBoard.clone() is protected and just calls the copy constructor, so this is
+     * what clone costs.
+     */
+    @Benchmark
+    public ChessBoard copy() {
+        return new ChessBoard(board);
+    }
+
+    @Benchmark
+    public boolean equalBoards() {
+        return board.equals(equalBoard);
+    }
+
+    @Benchmark
+    public int boardHashCode() {
+        return board.hashCode();
+    }
+}
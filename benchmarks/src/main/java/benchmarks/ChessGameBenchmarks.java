@@ -0,0 +1,99 @@
+package benchmarks;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of ChessGame: move validation, making moves and game status queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessGameBenchmarks {
+
+    @Param({"kiwipete", "position4", "position6", "position3", "rook-endgame", "pawn-endgame", "fools-mate"})
+    public String position;
+
+    private ChessGame game;
+    private final List<ChessPosition> pieceSquares = new ArrayList<>();
+    private final MoveList legalMoves = new MoveList();
+    private final List<ChessMove> legalChessMoves = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        game = BenchmarkPositions.load(position);
+        ChessBoard board = game.getBoard();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(ChessPosition.of(row, col));
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    pieceSquares.add(ChessPosition.of(row, col));
+                }
+            }
+        }
+        game.legalMoves(legalMoves);
+        legalChessMoves.addAll(legalMoves.toChessMoves());
+    }
+
+    /**
+     * validMoves for every piece of the side to move
+     */
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        for (ChessPosition square : pieceSquares) {
+            blackhole.consume(game.validMoves(square));
+        }
+    }
+
+    /**
+     * Every legal move made and taken back in place
+     */
+    @Benchmark
+    public long makeUnmakeMove() {
+        long keys = 0;
+        for (int i = 0; i < legalMoves.size(); i++) {
+            game.makeMove(legalMoves.get(i));
+            keys += game.positionKey();
+            game.unmakeMove();
+        }
+        return keys;
+    }
+
+    /**
+     * Every legal move through the public, validated makeMove. Each one needs its own
+     * copy of the game, so the cost of copying the board is included.
+     */
+    @Benchmark
+    public void makeMove(Blackhole blackhole) throws InvalidMoveException {
+        for (ChessMove move : legalChessMoves) {
+            ChessGame copy = new ChessGame();
+            copy.setBoard(new ChessBoard(game.getBoard()));
+            copy.setTeamTurn(game.getTeamTurn());
+            copy.makeMove(move);
+            blackhole.consume(copy);
+        }
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return game.isInCheck(game.getTeamTurn());
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return game.isInCheckmate(game.getTeamTurn());
+    }
+
+    @Benchmark
+    public boolean isInStalemate() {
+        return game.isInStalemate(game.getTeamTurn());
+    }
+}
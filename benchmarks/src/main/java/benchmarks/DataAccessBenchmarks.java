@@ -0,0 +1,163 @@
+package benchmarks;
+
+import dataaccess.AuthDAO;
+import dataaccess.DataAccessException;
+import dataaccess.GameDAO;
+import dataaccess.MemoryAuthDAO;
+import dataaccess.MemoryGameDAO;
+import model.AuthData;
+import model.GameData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the data access layer does for each move a player sends: check the auth token,
+ * then look up the game, with one request in 16 also writing the game back.
+ * <p>
+ * The same request runs on 1, 4 and 8 threads against the memory DAOs ("memory") and
+ * against the same DAOs behind one lock ("locked"). Requests per second should grow
+ * with the thread count for "memory" (up to the number of processors) and stay flat
+ * for "locked", where every thread waits its turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataAccessBenchmarks {
+
+    private static final int USERS = 10000;
+
+    @Param({"memory", "locked"})
+    public String store;
+
+    private AuthDAO auths;
+    private GameDAO games;
+    private String[] tokens;
+    private GameData[] gameData;
+
+    @State(Scope.Thread)
+    public static class Requests {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setup() throws DataAccessException {
+        if (store.equals("memory")) {
+            auths = new MemoryAuthDAO();
+            games = new MemoryGameDAO();
+        }
+        else {
+            LockedStore locked = new LockedStore();
+            auths = locked;
+            games = locked;
+        }
+        tokens = new String[USERS];
+        gameData = new GameData[USERS];
+        for (int i = 0; i < USERS; i++) {
+            AuthData auth = new AuthData();
+            auth.authToken = "token-" + i;
+            auth.username = "user" + i;
+            auths.createAuth(auth);
+            tokens[i] = auth.authToken;
+
+            GameData game = new GameData();
+            game.gameName = "game " + i;
+            game.whiteUsername = auth.username;
+            games.createGame(game);
+            gameData[i] = game;
+        }
+    }
+
+    private GameData request(Requests requests) throws DataAccessException {
+        int user = requests.random.nextInt(USERS);
+        if (auths.getAuth(tokens[user]) == null) {
+            throw new IllegalStateException("Token went missing");
+        }
+        GameData game = games.getGame(gameData[user].gameID);
+        if ((user & 15) == 0) {
+            games.updateGame(game);
+        }
+        return game;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public GameData oneThread(Requests requests) throws DataAccessException {
+        return request(requests);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public GameData fourThreads(Requests requests) throws DataAccessException {
+        return request(requests);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public GameData eightThreads(Requests requests) throws DataAccessException {
+        return request(requests);
+    }
+
+    /**
+     * Tokens and games in plain HashMaps behind a single lock, for comparison
+     */
+    private static class LockedStore implements AuthDAO, GameDAO {
+        private final Map<String, AuthData> tokens = new HashMap<>();
+        private final Map<Integer, GameData> games = new HashMap<>();
+        private int lastID;
+
+        @Override
+        public synchronized void createAuth(AuthData auth) {
+            tokens.put(auth.authToken, auth);
+        }
+
+        @Override
+        public synchronized AuthData getAuth(String authToken) {
+            return tokens.get(authToken);
+        }
+
+        @Override
+        public synchronized void deleteAuth(String authToken) {
+            tokens.remove(authToken);
+        }
+
+        @Override
+        public synchronized int createGame(GameData game) {
+            game.gameID = ++lastID;
+            games.put(game.gameID, game);
+            return game.gameID;
+        }
+
+        @Override
+        public synchronized GameData getGame(int gameID) {
+            return games.get(gameID);
+        }
+
+        @Override
+        public synchronized Collection<GameData> listGames() {
+            return new ArrayList<>(games.values());
+        }
+
+        @Override
+        public synchronized void updateGame(GameData game) throws DataAccessException {
+            if (games.replace(game.gameID, game) == null) {
+                throw new DataAccessException("Game not found: " + game.gameID);
+            }
+        }
+
+        @Override
+        public synchronized void clear() {
+            tokens.clear();
+            games.clear();
+        }
+    }
+}
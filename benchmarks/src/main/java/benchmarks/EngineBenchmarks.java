@@ -0,0 +1,75 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.SearchThreads;
+import chess.engine.TranspositionTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-depth searches. Besides searches per second, the "nodes" counter reports the
+ * search speed in nodes per second, which is what decides the CPU cost of a bot move.
+ * <p>
+ * With threads above 1 the search is Lazy SMP. Searches per second at N threads divided
+ * by searches per second at 1 is the time-to-depth speedup; nodes per second counts all
+ * threads together. The SearchThreads limit is raised to the thread count, so on a machine
+ * with fewer processors the threads just take turns and the speedup drops below 1.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmarks {
+
+    @Param({"kiwipete", "position6", "position3", "rook-endgame"})
+    public String position;
+
+    @Param({"5"})
+    public int depth;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Engine engine;
+    private ChessGame game;
+
+    /**
+     * Nodes searched, reported by JMH as a rate (nodes per second)
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class NodeCounter {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        game = BenchmarkPositions.load(position);
+        SearchThreads.setLimit(Math.max(threads, SearchThreads.getLimit()));
+        engine = new Engine(new TranspositionTable(16), threads);
+    }
+
+    // Every search starts cold; otherwise later searches would just read the table
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        engine.getTable().clear();
+    }
+
+    @Benchmark
+    public SearchResult search(NodeCounter counter) {
+        SearchResult result = engine.search(game, SearchLimits.depth(depth));
+        counter.nodes += result.nodes();
+        return result;
+    }
+}
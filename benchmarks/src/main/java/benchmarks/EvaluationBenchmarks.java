@@ -0,0 +1,45 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.PieceSquareTables;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating a position, from a full board down to a bare endgame.
+ * "incremental" reads the score ChessBoard keeps up to date as pieces move, so it
+ * should take the same time in every position; "rescan" adds up every piece the way an
+ * evaluator without incremental updates would, and gets cheaper as pieces come off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmarks {
+
+    // 32, 14, 11 and 9 pieces
+    @Param({"kiwipete", "pawn-endgame", "position3", "rook-endgame"})
+    public String position;
+
+    private ChessBoard board;
+
+    @Setup
+    public void setup() {
+        ChessGame game = BenchmarkPositions.load(position);
+        board = game.getBoard();
+    }
+
+    @Benchmark
+    public int incremental() {
+        return board.pieceSquareScore();
+    }
+
+    @Benchmark
+    public int rescan() {
+        return PieceSquareTables.evaluate(board);
+    }
+}
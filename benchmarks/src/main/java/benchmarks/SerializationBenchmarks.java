@@ -0,0 +1,62 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.PositionCodec;
+import com.google.gson.Gson;
+import model.GameData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson round trips of GameData, which is how games travel between client, server
+ * and database, next to the compact binary encoding of the same position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmarks {
+
+    @Param({"kiwipete", "position6", "rook-endgame"})
+    public String position;
+
+    private final Gson gson = new Gson();
+    private GameData gameData;
+    private String json;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        gameData = new GameData();
+        gameData.gameID = 1234;
+        gameData.whiteUsername = "white";
+        gameData.blackUsername = "black";
+        gameData.gameName = "benchmark";
+        gameData.game = BenchmarkPositions.load(position);
+        json = gson.toJson(gameData);
+        encoded = PositionCodec.encode(gameData.game);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return gson.toJson(gameData);
+    }
+
+    @Benchmark
+    public GameData fromJson() {
+        return gson.fromJson(json, GameData.class);
+    }
+
+    @Benchmark
+    public byte[] encodePosition() {
+        return PositionCodec.encode(gameData.game);
+    }
+
+    @Benchmark
+    public ChessGame decodePosition() {
+        return PositionCodec.decode(encoded);
+    }
+}
@@ -1,4 +1,33 @@
 package dataaccess;
 
-public class AuthDAO {
+import model.AuthData;
+
+/**
+ * Stores the auth tokens of logged in users, keyed by token.
+ */
+public interface AuthDAO {
+
+    /**
+     * @param auth token and the user it belongs to
+     * @throws DataAccessException if the token is already in use or the store fails
+     */
+    void createAuth(AuthData auth) throws DataAccessException;
+
+    /**
+     * @param authToken token sent with a request
+     * @return the token's data, or null if it isn't (or is no longer) valid
+     */
+    AuthData getAuth(String authToken) throws DataAccessException;
+
+    /**
+     * Logs a token out. Deleting a token that doesn't exist does nothing.
+     *
+     * @param authToken token to remove
+     */
+    void deleteAuth(String authToken) throws DataAccessException;
+
+    /**
+     * Removes every token
+     */
+    void clear() throws DataAccessException;
 }
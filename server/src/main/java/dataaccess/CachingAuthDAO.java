@@ -0,0 +1,174 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps auth tokens that were recently checked in memory in front of another AuthDAO
+ * (normally SqlAuthDAO), so checking the token on every request and every move is a map
+ * lookup instead of a database query.
+ * <p>
+ * A cached token expires two ways: after ttlMillis without being used, so tokens of users
+ * who left don't pile up, and maxAgeMillis after it was loaded no matter how much it's
+ * used, so a token deleted some other way than through this DAO (another server, or by
+ * hand) stops working within that time. Either way, the next check asks the database
+ * again. A background thread sweeps out expired tokens every sweepMillis.
+ * <p>
+ * Loads query the database without holding any lock, so a slow query only holds up the
+ * check that made it. Logging out (deleteAuth) deletes the token from the database, then
+ * bumps a deletion count, then removes it from the cache. A load only caches what it
+ * read if the count hasn't moved since before its query, so a check that raced a logout
+ * may answer with the old token but never caches it: once deleteAuth returns, the token
+ * is rejected everywhere in this server.
+ * <p>
+ * Tokens that don't exist aren't cached, so a bad token costs a query each time.
+ */
+public final class CachingAuthDAO implements AuthDAO, AutoCloseable {
+
+    /**
+     * @param hits        checks answered from memory
+     * @param misses      checks that went to the database
+     * @param expirations cached tokens dropped for being idle or too old
+     * @param revocations tokens logged out
+     * @param size        tokens cached right now
+     */
+    public record Metrics(long hits, long misses, long expirations, long revocations, int size) {
+    }
+
+    private record Cached(AuthData auth, long loaded, long lastUsed) {
+    }
+
+    private final AuthDAO tokens;
+    private final long ttlNanos;
+    private final long maxAgeNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Cached> cache = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder revocations = new LongAdder();
+    // Goes up whenever tokens are deleted; loads that overlap a change don't cache
+    private final AtomicLong deletions = new AtomicLong();
+
+    /**
+     * @param tokens       the DAO behind the cache
+     * @param ttlMillis    how long an unused token stays cached
+     * @param maxAgeMillis how long a token stays cached however often it's used
+     * @param sweepMillis  how often expired tokens are swept out
+     */
+    public CachingAuthDAO(AuthDAO tokens, long ttlMillis, long maxAgeMillis, long sweepMillis) {
+        this(tokens, ttlMillis, maxAgeMillis, sweepMillis, System::nanoTime);
+    }
+
+    // The clock can be swapped for tests
+    CachingAuthDAO(AuthDAO tokens, long ttlMillis, long maxAgeMillis, long sweepMillis, LongSupplier clock) {
+        this.tokens = tokens;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.clock = clock;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "auth-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        tokens.createAuth(auth);
+        long now = clock.getAsLong();
+        cache.put(auth.authToken, new Cached(auth, now, now));
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return null;
+        }
+        Cached cached = cache.get(authToken);
+        long now = clock.getAsLong();
+        if (cached != null && !isExpired(cached, now)) {
+            hits.increment();
+            // Not worth a write per check; the idle time only needs to be roughly right
+            if (now - cached.lastUsed() > ttlNanos / 8) {
+                cache.replace(authToken, cached, new Cached(cached.auth(), cached.loaded(), now));
+            }
+            return cached.auth();
+        }
+        misses.increment();
+        if (cached != null && cache.remove(authToken, cached)) {
+            expirations.increment();
+        }
+        long deletionsBefore = deletions.get();
+        AuthData auth = tokens.getAuth(authToken);
+        if (auth == null) {
+            return null;
+        }
+        Cached loaded = new Cached(auth, now, now);
+        cache.compute(authToken, (token, current) -> {
+            if (current != null && !isExpired(current, now)) {
+                return current;
+            }
+            // Deleted while the query ran, maybe this very token: don't cache it again
+            return deletions.get() == deletionsBefore ? loaded : current;
+        });
+        return auth;
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return;
+        }
+        // Database first, so a check running meanwhile can't cache it again
+        tokens.deleteAuth(authToken);
+        deletions.incrementAndGet();
+        cache.remove(authToken);
+        revocations.increment();
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        tokens.clear();
+        deletions.incrementAndGet();
+        cache.clear();
+    }
+
+    public Metrics metrics() {
+        return new Metrics(hits.sum(), misses.sum(), expirations.sum(), revocations.sum(), cache.size());
+    }
+
+    // Drops every expired token; runs on the sweeper thread
+    void sweep() {
+        long now = clock.getAsLong();
+        cache.entrySet().removeIf(entry -> {
+            if (isExpired(entry.getValue(), now)) {
+                expirations.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Stops the background sweeps
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private boolean isExpired(Cached cached, long now) {
+        return now - cached.lastUsed() >= ttlNanos || now - cached.loaded() >= maxAgeNanos;
+    }
+}
@@ -0,0 +1,327 @@
+package dataaccess;
+
+import model.GameData;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps recently used games in memory in front of another GameDAO (normally SqlGameDAO),
+ * so the games being played are read from memory and only idle ones from the database.
+ * <p>
+ * Reads go through the cache: a game that isn't cached is loaded from the DAO behind it
+ * and kept. Writes go through to that DAO first and then replace the cached game. The
+ * cached GameData is the live one, the same object every caller gets back, so moves made
+ * on its ChessGame are seen by everyone at once; the MoveJournal takes care of writing
+ * them. Before a game is loaded or updated, its journaled moves are written, so the
+ * database never hands back a position older than the one that was evicted, and an
+ * update never has its moves added a second time.
+ * <p>
+ * ChessGame isn't thread safe (validMoves and makeMove share scratch buffers, and
+ * makeMove changes the board in steps), so sharing it comes with a rule: <b>synchronize on the
+ * GameData</b> around everything that reads or changes it, from validMoves and
+ * makeMove to serializing it or recording a move in the journal. That's one lock per
+ * game, so players in different games never wait on each other:
+ * <pre>
+ * GameData data = games.getGame(gameID);
+ * synchronized (data) {
+ *     data.game.makeMove(move);
+ *     journal.recordMove(gameID, data.game, move);
+ * }
+ * </pre>
+ * The same goes for the games in listGames(), which include the live ones. The cache
+ * itself never looks inside a GameData, so it never takes these locks.
+ * <p>
+ * Once there are more than maxGames, the least recently used tenth are evicted in one go
+ * (by one thread at a time, while reads carry on). "Recently used" is a counter stamped
+ * on each read, which is close enough to true LRU for this and doesn't make reads write
+ * to a shared list. A game with journaled moves that haven't been written yet is never
+ * evicted. An evicted game is still remembered through a weak reference, so if a player
+ * still holds it, the next read gets that same object back instead of a second copy from
+ * the database; only once nobody holds it is it really gone. Active games are read on
+ * every move, so maxGames should still be well above the number of games being played
+ * at once.
+ * <p>
+ * The list of all games is cached too, until the next write, with cached games swapped
+ * in for their database copies.
+ */
+public class CachingGameDAO implements GameDAO {
+
+    /**
+     * @param hits          reads answered from memory
+     * @param misses        reads that went to the DAO behind the cache
+     * @param evictions     games dropped to make room
+     * @param reclaims      evicted games read again while someone still held them
+     * @param invalidations games dropped by invalidate()
+     * @param listHits      game lists answered from memory
+     * @param listMisses    game lists read from the DAO behind the cache
+     * @param size          games cached right now
+     */
+    public record Metrics(long hits, long misses, long evictions, long reclaims, long invalidations,
+                          long listHits, long listMisses, int size) {
+
+        /**
+         * @return fraction of reads answered from memory
+         */
+        public double hitRate() {
+            long reads = hits + misses;
+            return reads == 0 ? 0 : (double) hits / reads;
+        }
+    }
+
+    // An evicted game, kept until nobody holds it any more
+    private static final class Released extends WeakReference<GameData> {
+        final int gameID;
+
+        Released(GameData game, ReferenceQueue<GameData> queue) {
+            super(game, queue);
+            this.gameID = game.gameID;
+        }
+    }
+
+    private static final class Cached {
+        final GameData game;
+        volatile long lastUsed;
+
+        Cached(GameData game, long lastUsed) {
+            this.game = game;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final GameDAO games;
+    private final MoveJournal journal;
+    private final int maxGames;
+    private final ConcurrentIntMap<Cached> cache = new ConcurrentIntMap<>();
+    private final ConcurrentIntMap<Released> released = new ConcurrentIntMap<>();
+    private final ReferenceQueue<GameData> collected = new ReferenceQueue<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final ReentrantLock evicting = new ReentrantLock();
+    // Bumped by every write, so a load that raced with one doesn't cache what it read
+    private final AtomicLong writes = new AtomicLong();
+    private volatile List<GameData> gameList;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder reclaims = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder listHits = new LongAdder();
+    private final LongAdder listMisses = new LongAdder();
+
+    /**
+     * @param games    the DAO behind the cache
+     * @param journal  journal whose moves for a game are written before loading it, or
+     *                 null if moves don't go through one
+     * @param maxGames games to keep before evicting
+     */
+    public CachingGameDAO(GameDAO games, MoveJournal journal, int maxGames) {
+        if (maxGames < 1) {
+            throw new IllegalArgumentException("Cache needs room for at least one game: " + maxGames);
+        }
+        this.games = games;
+        this.journal = journal;
+        this.maxGames = maxGames;
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        int gameID = games.createGame(game);
+        writes.incrementAndGet();
+        gameList = null;
+        store(gameID, game);
+        return gameID;
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        Cached cached = cache.get(gameID);
+        if (cached != null) {
+            hits.increment();
+            cached.lastUsed = clock.incrementAndGet();
+            return cached.game;
+        }
+        GameData held = reclaim(gameID);
+        if (held != null) {
+            reclaims.increment();
+            return held;
+        }
+        misses.increment();
+        if (gameID <= 0) {
+            return null;
+        }
+        if (journal != null) {
+            journal.flush(gameID);
+        }
+        long writesBefore = writes.get();
+        GameData loaded = games.getGame(gameID);
+        if (loaded == null || writes.get() != writesBefore) {
+            return loaded;
+        }
+        // Someone else may have loaded it meanwhile; everyone gets the same object
+        Cached mine = new Cached(loaded, clock.incrementAndGet());
+        Cached theirs = cache.putIfAbsent(gameID, mine);
+        if (theirs != null) {
+            return theirs.game;
+        }
+        evictIfFull();
+        return loaded;
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        List<GameData> list = gameList;
+        if (list != null) {
+            listHits.increment();
+            return new ArrayList<>(list);
+        }
+        listMisses.increment();
+        long writesBefore = writes.get();
+        List<GameData> loaded = new ArrayList<>();
+        for (GameData game : games.listGames()) {
+            Cached cached = cache.get(game.gameID);
+            loaded.add(cached != null ? cached.game : game);
+        }
+        if (writes.get() == writesBefore) {
+            gameList = loaded;
+        }
+        return new ArrayList<>(loaded);
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        if (journal != null) {
+            // The update writes the game's whole history, journaled moves included
+            journal.flush(game.gameID);
+        }
+        try {
+            games.updateGame(game);
+        }
+        finally {
+            // Even a failed write may have changed the row, so loads that started
+            // before it can't be trusted either way
+            writes.incrementAndGet();
+            gameList = null;
+        }
+        store(game.gameID, game);
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        writes.incrementAndGet();
+        try {
+            games.clear();
+            if (journal != null) {
+                // Otherwise they'd be written to games that no longer exist
+                journal.discardAll();
+            }
+        }
+        finally {
+            cache.clear();
+            released.clear();
+            gameList = null;
+        }
+    }
+
+    /**
+     * Drops a game from the cache, for when its row was changed some other way than
+     * through this DAO (e.g. a player joining or leaving through another server). The next
+     * read loads it again.
+     */
+    public void invalidate(int gameID) {
+        writes.incrementAndGet();
+        gameList = null;
+        released.remove(gameID);
+        if (cache.remove(gameID) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(hits.sum(), misses.sum(), evictions.sum(), reclaims.sum(), invalidations.sum(),
+                listHits.sum(), listMisses.sum(), cache.size());
+    }
+
+    private void store(int gameID, GameData game) {
+        cache.put(gameID, new Cached(game, clock.incrementAndGet()));
+        released.remove(gameID);
+        evictIfFull();
+    }
+
+    // Puts an evicted game back in the cache if someone still holds it, so they and the
+    // caller share one copy
+    private GameData reclaim(int gameID) {
+        Released ref = released.get(gameID);
+        GameData held = ref == null ? null : ref.get();
+        if (held == null) {
+            return null;
+        }
+        Cached theirs = cache.putIfAbsent(gameID, new Cached(held, clock.incrementAndGet()));
+        released.remove(gameID, ref);
+        if (theirs != null) {
+            return theirs.game;
+        }
+        evictIfFull();
+        return held;
+    }
+
+    // Drops the least recently used tenth. Only one thread does it; the others just
+    // carry on, since the cache being briefly over size doesn't hurt.
+    private void evictIfFull() {
+        if (cache.size() <= maxGames || !evicting.tryLock()) {
+            return;
+        }
+        try {
+            List<Cached> entries = cache.values();
+            int excess = entries.size() - maxGames;
+            if (excess <= 0) {
+                return;
+            }
+            // Sort a snapshot of the stamps, since reads keep changing them
+            long[] stamps = new long[entries.size()];
+            for (int i = 0; i < stamps.length; i++) {
+                stamps[i] = entries.get(i).lastUsed;
+            }
+            long[] sorted = stamps.clone();
+            Arrays.sort(sorted);
+            int toEvict = Math.min(sorted.length, excess + Math.max(1, maxGames / 10));
+            long cutoff = sorted[toEvict - 1];
+            for (int i = 0; i < stamps.length; i++) {
+                Cached entry = entries.get(i);
+                int gameID = entry.game.gameID;
+                // Skip it if it was read since the snapshot, or its moves are still on
+                // their way to the database
+                if (stamps[i] > cutoff || entry.lastUsed != stamps[i]
+                        || (journal != null && journal.hasPending(gameID))) {
+                    continue;
+                }
+                // Remembered before it leaves the cache, so a read in between finds it
+                Released ref = new Released(entry.game, collected);
+                released.put(gameID, ref);
+                if (cache.remove(gameID, entry)) {
+                    evictions.increment();
+                }
+                else {
+                    // Replaced by a newer copy meanwhile
+                    released.remove(gameID, ref);
+                }
+            }
+            Reference<? extends GameData> gone;
+            while ((gone = collected.poll()) != null) {
+                Released ref = (Released) gone;
+                released.remove(ref.gameID, ref);
+            }
+        }
+        finally {
+            evicting.unlock();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package dataaccess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hash map from positive int keys to values that many threads can use at once, without
+ * boxing the keys.
+ * <p>
+ * Keys are split over segments by hash, and each segment is an open-addressing table
+ * (linear probing) of keys next to values. Reads never lock: they follow the segment's
+ * current table and probe it. Writes lock only their own segment, so writers to different
+ * segments never wait on each other and nobody ever waits on a reader.
+ * <p>
+ * The trick that makes lock-free reads safe is the order of the writes. A new entry's
+ * value is written before its key, and both arrays are read and written with volatile
+ * semantics, so a reader that finds the key also sees the value. Keys are never cleared:
+ * removing an entry only sets its value to null, leaving the key behind as a marker that
+ * probes keep going past. A segment that fills up (with entries or removed markers) is
+ * copied into a new table, which readers only see once it's complete.
+ * <p>
+ * Key 0 marks an empty slot, so keys must be positive. Game IDs are.
+ *
+ * @param <V> value type
+ */
+final class ConcurrentIntMap<V> {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int MIN_CAPACITY = 16;
+
+    // When put() stores the value
+    private static final int ALWAYS = 0;
+    private static final int IF_PRESENT = 1;
+    private static final int IF_ABSENT = 2;
+
+    private final Segment<V>[] segments;
+
+    ConcurrentIntMap() {
+        // Every element is a new Segment<V> made just below, so the cast is safe
+        @SuppressWarnings("unchecked")
+        Segment<V>[] created = (Segment<V>[]) new Segment<?>[1 << SEGMENT_BITS];
+        segments = created;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * @return the value for key, or null if there isn't one
+     */
+    V get(int key) {
+        int hash = hash(key);
+        return segmentFor(hash).table.get(key, hash);
+    }
+
+    /**
+     * @return the value that was replaced, or null if key was new
+     */
+    V put(int key, V value) {
+        int hash = hash(checkKey(key));
+        return segmentFor(hash).put(key, hash, value, ALWAYS);
+    }
+
+    /**
+     * Replaces the value for a key only if the map already has one.
+     *
+     * @return the value that was replaced, or null (and nothing stored) if key wasn't there
+     */
+    V replace(int key, V value) {
+        int hash = hash(checkKey(key));
+        return segmentFor(hash).put(key, hash, value, IF_PRESENT);
+    }
+
+    /**
+     * Stores a value only if the map doesn't have one for the key yet.
+     *
+     * @return the value already there (and nothing stored), or null if value was stored
+     */
+    V putIfAbsent(int key, V value) {
+        int hash = hash(checkKey(key));
+        return segmentFor(hash).put(key, hash, value, IF_ABSENT);
+    }
+
+    /**
+     * @return the value that was removed, or null if key wasn't there
+     */
+    V remove(int key) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Removes a key only while it still has the given value (the same object).
+     *
+     * @return whether it was removed
+     */
+    boolean remove(int key, V expected) {
+        int hash = hash(key);
+        return expected != null && segmentFor(hash).remove(key, hash, expected) != null;
+    }
+
+    /**
+     * @return number of entries; only exact when nothing is being written
+     */
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return a copy of the values. Entries written while it's being made may or may not
+     * be in it, but every entry that was there before and not removed is.
+     */
+    List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        for (Segment<V> segment : segments) {
+            segment.table.addValues(values);
+        }
+        return values;
+    }
+
+    void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private static int checkKey(int key) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive: " + key);
+        }
+        return key;
+    }
+
+    // IDs are handed out in order, so multiplying by a large odd constant spreads
+    // neighbours over the segments (top bits) and the slots (bottom bits)
+    private static int hash(int key) {
+        return key * 0x9E3779B9;
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static final class Segment<V> {
+        // Readers only ever look at this; writers hold the segment's lock
+        volatile Table<V> table = new Table<>(MIN_CAPACITY);
+        volatile int size;
+        // Slots with a key in them, including removed entries
+        private int used;
+
+        synchronized V put(int key, int hash, V value, int when) {
+            Table<V> current = table;
+            int slot = current.find(key, hash);
+            V old = current.values.get(slot);
+            if (current.keys.get(slot) == key) {
+                if ((old == null && when == IF_PRESENT) || (old != null && when == IF_ABSENT)) {
+                    return old;
+                }
+                current.values.set(slot, value);
+                if (old == null) {
+                    size++;
+                }
+                return old;
+            }
+            if (when == IF_PRESENT) {
+                return null;
+            }
+            if ((used + 1) * 4 > current.capacity() * 3) {
+                current = resize(current);
+                slot = current.find(key, hash);
+            }
+            // Value first: a reader that sees the key must also see the value
+            current.values.set(slot, value);
+            current.keys.set(slot, key);
+            used++;
+            size++;
+            return null;
+        }
+
+        // Removes whatever's there if expected is null, otherwise only expected
+        synchronized V remove(int key, int hash, V expected) {
+            Table<V> current = table;
+            int slot = current.find(key, hash);
+            if (current.keys.get(slot) != key) {
+                return null;
+            }
+            if (expected != null && current.values.get(slot) != expected) {
+                return null;
+            }
+            V old = current.values.getAndSet(slot, null);
+            if (old != null) {
+                size--;
+            }
+            return old;
+        }
+
+        synchronized void clear() {
+            table = new Table<>(MIN_CAPACITY);
+            size = 0;
+            used = 0;
+        }
+
+        // Copies the live entries into a table with room to grow, leaving removed
+        // entries behind. Readers still probing the old table aren't affected.
+        private Table<V> resize(Table<V> old) {
+            int capacity = MIN_CAPACITY;
+            while ((size + 1) * 2 > capacity) {
+                capacity *= 2;
+            }
+            Table<V> grown = new Table<>(capacity);
+            for (int slot = 0; slot < old.capacity(); slot++) {
+                V value = old.values.get(slot);
+                if (value != null) {
+                    int key = old.keys.get(slot);
+                    int to = grown.find(key, hash(key));
+                    grown.values.set(to, value);
+                    grown.keys.set(to, key);
+                }
+            }
+            used = size;
+            table = grown;
+            return grown;
+        }
+    }
+
+    private static final class Table<V> {
+        final AtomicIntegerArray keys;
+        final AtomicReferenceArray<V> values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicIntegerArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * @return the slot holding key, or the empty slot where it would go. There
+         * always is one, since tables are never more than 3/4 full.
+         */
+        int find(int key, int hash) {
+            int slot = hash & mask;
+            while (true) {
+                int found = keys.get(slot);
+                if (found == key || found == 0) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        V get(int key, int hash) {
+            int slot = find(key, hash);
+            return keys.get(slot) == key ? values.get(slot) : null;
+        }
+
+        void addValues(List<V> into) {
+            for (int slot = 0; slot < capacity(); slot++) {
+                V value = values.get(slot);
+                if (value != null) {
+                    into.add(value);
+                }
+            }
+        }
+    }
+}
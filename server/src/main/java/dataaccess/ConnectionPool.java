@@ -0,0 +1,239 @@
+package dataaccess;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed maximum number of database connections, opened as they're needed and reused
+ * after that, instead of a new connection (a network round trip plus a login) for every
+ * query.
+ * <p>
+ * Each borrower holds a permit for as long as it has a connection, so at most maxSize
+ * are ever handed out; a borrower that can't get a permit within the acquire timeout
+ * gets a DataAccessException instead of waiting forever. Returned connections go to the
+ * front of the idle list and the next borrower takes from the front, so the same few
+ * connections stay busy and the rest stay idle.
+ * <p>
+ * A connection that has sat idle longer than validateAfterMillis is checked with
+ * Connection.isValid() before it's handed out (MySQL drops idle connections after a
+ * while), and one that's failed or been marked broken is closed instead of reused.
+ * Each connection also keeps its own cache of prepared statements (see PooledConnection).
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Opens a new connection to the database
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * A snapshot of the pool's state and counters since it was created.
+     *
+     * @param open             connections open right now, idle or in use
+     * @param idle             connections waiting to be borrowed
+     * @param inUse            connections borrowed right now
+     * @param waiting          threads waiting for a connection
+     * @param acquired         connections handed out
+     * @param timeouts         acquires that gave up waiting
+     * @param created          connections opened
+     * @param discarded        connections closed because they failed validation or broke
+     * @param waitNanos        total time spent waiting for a connection
+     * @param statementHits    prepared statements found in a connection's cache
+     * @param statementMisses  prepared statements that had to be prepared
+     */
+    public record Metrics(int open, int idle, int inUse, int waiting, long acquired, long timeouts,
+                          long created, long discarded, long waitNanos, long statementHits,
+                          long statementMisses) {
+
+        /**
+         * @return average time an acquire waited, in milliseconds
+         */
+        public double averageWaitMillis() {
+            return acquired == 0 ? 0 : waitNanos / 1e6 / acquired;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final int statementCacheSize;
+    private final long validateAfterNanos;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    final LongAdder statementHits = new LongAdder();
+    final LongAdder statementMisses = new LongAdder();
+
+    /**
+     * @param factory              opens new connections
+     * @param maxSize              most connections open at once
+     * @param acquireTimeoutMillis how long acquire() waits for a connection before failing
+     * @param statementCacheSize   prepared statements kept per connection (0 for none)
+     * @param validateAfterMillis  idle time after which a connection is checked before use
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long acquireTimeoutMillis,
+                          int statementCacheSize, long validateAfterMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool needs at least one connection: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.validateAfterNanos = TimeUnit.MILLISECONDS.toNanos(validateAfterMillis);
+        // Fair, so a burst of requests is served in order instead of some timing out
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection. Close it (try-with-resources) to give it back.
+     *
+     * @return a connection that isn't in use by anyone else
+     * @throws DataAccessException if none is free within the acquire timeout, or a new
+     *                             one can't be opened
+     */
+    public PooledConnection acquire() throws DataAccessException {
+        if (closed) {
+            throw new DataAccessException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new DataAccessException(String.format(
+                        "Timed out after %d ms waiting for a database connection", acquireTimeoutMillis));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted waiting for a database connection", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+
+        try {
+            PooledConnection connection = take();
+            connection.returned = false;
+            acquired.increment();
+            return connection;
+        }
+        catch (DataAccessException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Called holding a permit. Having a permit means at most maxSize - 1 other
+    // connections are borrowed, so if all maxSize are open one of them is idle (or just
+    // about to be, since returns put the connection back before releasing the permit).
+    private PooledConnection take() throws DataAccessException {
+        while (true) {
+            PooledConnection connection = idle.pollFirst();
+            if (connection != null) {
+                if (isUsable(connection)) {
+                    return connection;
+                }
+                discard(connection);
+                continue;
+            }
+            int current = open.get();
+            if (current < maxSize) {
+                if (open.compareAndSet(current, current + 1)) {
+                    return openConnection();
+                }
+            }
+            else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private PooledConnection openConnection() throws DataAccessException {
+        try {
+            Connection connection = factory.open();
+            created.increment();
+            return new PooledConnection(this, connection, statementCacheSize);
+        }
+        catch (SQLException | RuntimeException e) {
+            open.decrementAndGet();
+            throw new DataAccessException("Failed to open a database connection", e);
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        if (System.nanoTime() - connection.lastUsed < validateAfterNanos) {
+            return true;
+        }
+        try {
+            return connection.connection().isValid(2);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes a connection back from PooledConnection.close()
+     */
+    void release(PooledConnection connection) {
+        if (closed || connection.isBroken()) {
+            discard(connection);
+        }
+        else {
+            connection.lastUsed = System.nanoTime();
+            idle.addFirst(connection);
+            // close() may have drained the idle list between the check and the add. It
+            // sets closed before draining, so one of the two always sees the other.
+            if (closed) {
+                closeIdle();
+            }
+        }
+        permits.release();
+    }
+
+    private void discard(PooledConnection connection) {
+        discarded.increment();
+        open.decrementAndGet();
+        connection.closeQuietly();
+    }
+
+    public Metrics metrics() {
+        int inUse = maxSize - permits.availablePermits();
+        return new Metrics(open.get(), idle.size(), inUse, permits.getQueueLength(), acquired.sum(),
+                timeouts.sum(), created.sum(), discarded.sum(), waitNanos.sum(), statementHits.sum(),
+                statementMisses.sum());
+    }
+
+    /**
+     * Closes the idle connections now and borrowed ones as they're returned. Acquiring
+     * after this fails.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            open.decrementAndGet();
+            connection.closeQuietly();
+        }
+    }
+}
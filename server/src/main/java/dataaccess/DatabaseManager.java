@@ -0,0 +1,294 @@
+package dataaccess;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class DatabaseManager {
+    private static String databaseName;
+    private static String dbUsername;
+    private static String dbPassword;
+    private static String connectionUrl;
+
+    private static int poolSize;
+    private static long poolTimeoutMillis;
+    private static int poolStatements;
+    private static long poolValidateAfterMillis;
+    private static ConnectionPool pool;
+
+    private static long journalFlushMillis;
+    private static int journalFlushMoves;
+    private static MoveJournal journal;
+
+    private static final String[] CREATE_TABLES = {
+            """
+            CREATE TABLE IF NOT EXISTS user (
+              username VARCHAR(256) NOT NULL,
+              password VARCHAR(256) NOT NULL,
+              email VARCHAR(256) NOT NULL,
+              PRIMARY KEY (username)
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS auth (
+              token VARCHAR(256) NOT NULL,
+              username VARCHAR(256) NOT NULL,
+              PRIMARY KEY (token)
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS game (
+              id INT NOT NULL AUTO_INCREMENT,
+              white_username VARCHAR(256),
+              black_username VARCHAR(256),
+              game_name VARCHAR(256) NOT NULL,
+              game VARBINARY(64),
+              start_position VARBINARY(64),
+              moves BLOB,
+              PRIMARY KEY (id)
+            )
+            """
+    };
+
+    /*
+     * Load the database information for the db.properties file.
+     */
+    static {
+        loadPropertiesFromResources();
+    }
+
+    /**
+     * Reads one row of a query's results
+     */
+    @FunctionalInterface
+    interface RowReader<T> {
+        T read(ResultSet row) throws SQLException;
+    }
+
+    /**
+     * Creates the database if it does not already exist.
+     */
+    static public void createDatabase() throws DataAccessException {
+        var statement = "CREATE DATABASE IF NOT EXISTS " + databaseName;
+        try (var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
+             var preparedStatement = conn.prepareStatement(statement)) {
+            preparedStatement.executeUpdate();
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to create database", ex);
+        }
+    }
+
+    /**
+     * Creates the database and its tables if they don't exist yet. Safe to call more
+     * than once; every SQL DAO calls it when it's created.
+     */
+    static synchronized void configureDatabase() throws DataAccessException {
+        createDatabase();
+        try (var conn = getConnection()) {
+            for (String statement : CREATE_TABLES) {
+                try (var preparedStatement = conn.prepareStatement(statement)) {
+                    preparedStatement.executeUpdate();
+                }
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to create tables", ex);
+        }
+    }
+
+    /**
+     * Create a connection to the database and sets the catalog based upon the
+     * properties specified in db.properties. Connections to the database should
+     * be short-lived, and you must close the connection when you are done with it.
+     * The easiest way to do that is with a try-with-resource block.
+     * <br/>
+     * <code>
+     * try (var conn = DatabaseManager.getConnection()) {
+     * // execute SQL statements.
+     * }
+     * </code>
+     * This opens a brand-new connection every time, which is slow; the DAOs borrow from
+     * {@link #pool()} instead, which opens its connections with this.
+     */
+    static Connection getConnection() throws DataAccessException {
+        try {
+            //do not wrap the following line with a try-with-resources
+            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
+            conn.setCatalog(databaseName);
+            return conn;
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to get connection", ex);
+        }
+    }
+
+    /**
+     * The connection pool every SQL DAO shares, created the first time it's needed with
+     * the db.pool.* settings from db.properties.
+     */
+    public static synchronized ConnectionPool pool() {
+        if (pool == null) {
+            pool = new ConnectionPool(DatabaseManager::openPooledConnection, poolSize, poolTimeoutMillis,
+                    poolStatements, poolValidateAfterMillis);
+        }
+        return pool;
+    }
+
+    /**
+     * The move journal every game's moves go through, created the first time it's needed
+     * with the db.journal.* settings from db.properties. It writes with SqlGameDAO.
+     */
+    public static synchronized MoveJournal journal() {
+        if (journal == null) {
+            journal = new MoveJournal(SqlGameDAO::writeMoves, journalFlushMillis, journalFlushMoves);
+        }
+        return journal;
+    }
+
+    /**
+     * Writes any journaled moves, then closes the pool's connections, e.g. when the
+     * server stops. The next pool() or journal() call starts over.
+     */
+    public static synchronized void shutdown() throws DataAccessException {
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } finally {
+            journal = null;
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+        }
+    }
+
+    private static Connection openPooledConnection() throws SQLException {
+        // rewriteBatchedStatements lets Connector/J send a JDBC batch in one round trip
+        // instead of one per row. useServerPrepStmts has MySQL parse and plan each
+        // statement once, so PooledConnection's statement cache saves work on the server.
+        var conn = DriverManager.getConnection(connectionUrl + "?rewriteBatchedStatements=true&useServerPrepStmts=true",
+                dbUsername, dbPassword);
+        conn.setCatalog(databaseName);
+        return conn;
+    }
+
+    /**
+     * Runs an INSERT, UPDATE or DELETE on a pooled connection with a cached statement.
+     *
+     * @param sql    statement with ? placeholders
+     * @param params values for the placeholders, in order
+     * @return the generated key of an inserted row, or 0 if there isn't one
+     */
+    static int executeUpdate(String sql, Object... params) throws DataAccessException {
+        return update(sql, true, params);
+    }
+
+    /**
+     * Like executeUpdate, but for when the caller needs to know whether any rows matched.
+     *
+     * @return number of rows the statement matched (Connector/J counts matched rows,
+     * not just the ones that actually changed)
+     */
+    static int executeUpdateCount(String sql, Object... params) throws DataAccessException {
+        return update(sql, false, params);
+    }
+
+    private static int update(String sql, boolean returnKey, Object... params) throws DataAccessException {
+        try (var conn = pool().acquire()) {
+            try {
+                var statement = conn.prepare(sql);
+                setParameters(statement, params);
+                int rows = statement.executeUpdate();
+                if (!returnKey) {
+                    return rows;
+                }
+                try (var keys = statement.getGeneratedKeys()) {
+                    return keys.next() ? keys.getInt(1) : 0;
+                }
+            } catch (SQLException ex) {
+                checkBroken(conn, ex);
+                throw new DataAccessException(String.format("unable to update database: %s", ex.getMessage()), ex);
+            }
+        }
+    }
+
+    /**
+     * Runs a SELECT on a pooled connection with a cached statement.
+     *
+     * @param sql    query with ? placeholders
+     * @param reader turns each row into a result
+     * @param params values for the placeholders, in order
+     * @return the results, one per row
+     */
+    static <T> List<T> executeQuery(String sql, RowReader<T> reader, Object... params)
+            throws DataAccessException {
+        try (var conn = pool().acquire()) {
+            try {
+                var statement = conn.prepare(sql);
+                setParameters(statement, params);
+                var results = new ArrayList<T>();
+                try (var rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        results.add(reader.read(rows));
+                    }
+                }
+                return results;
+            } catch (SQLException ex) {
+                checkBroken(conn, ex);
+                throw new DataAccessException(String.format("unable to read data: %s", ex.getMessage()), ex);
+            }
+        }
+    }
+
+    private static void setParameters(PreparedStatement statement, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            switch (param) {
+                case null -> statement.setNull(i + 1, Types.NULL);
+                case String s -> statement.setString(i + 1, s);
+                case Integer n -> statement.setInt(i + 1, n);
+                case byte[] bytes -> statement.setBytes(i + 1, bytes);
+                default -> statement.setObject(i + 1, param);
+            }
+        }
+    }
+
+    // SQLState class 08 means the connection itself failed, so it shouldn't be reused
+    static void checkBroken(PooledConnection conn, SQLException ex) {
+        String state = ex.getSQLState();
+        if (state != null && state.startsWith("08")) {
+            conn.markBroken();
+        }
+    }
+
+    private static void loadPropertiesFromResources() {
+        try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
+            if (propStream == null) {
+                throw new Exception("Unable to load db.properties");
+            }
+            Properties props = new Properties();
+            props.load(propStream);
+            loadProperties(props);
+        } catch (Exception ex) {
+            throw new RuntimeException("unable to process db.properties", ex);
+        }
+    }
+
+    private static void loadProperties(Properties props) {
+        databaseName = props.getProperty("db.name");
+        dbUsername = props.getProperty("db.user");
+        dbPassword = props.getProperty("db.password");
+
+        var host = props.getProperty("db.host");
+        var port = Integer.parseInt(props.getProperty("db.port"));
+        connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+
+        poolSize = Integer.parseInt(props.getProperty("db.pool.size", "10"));
+        poolTimeoutMillis = Long.parseLong(props.getProperty("db.pool.timeoutMillis", "5000"));
+        poolStatements = Integer.parseInt(props.getProperty("db.pool.statements", "32"));
+        poolValidateAfterMillis = Long.parseLong(props.getProperty("db.pool.validateAfterMillis", "30000"));
+
+        journalFlushMillis = Long.parseLong(props.getProperty("db.journal.flushMillis", "1000"));
+        journalFlushMoves = Integer.parseInt(props.getProperty("db.journal.flushMoves", "256"));
+    }
+}
@@ -1,4 +1,44 @@
 package dataaccess;
 
-public class GameDAO {
+import model.GameData;
+
+import java.util.Collection;
+
+/**
+ * Stores games, keyed by GameData.gameID.
+ */
+public interface GameDAO {
+
+    /**
+     * Adds a game and gives it a new ID. The ID is also written into game.gameID.
+     *
+     * @param game game to add; its gameID is ignored
+     * @return the new game's ID (always positive)
+     */
+    int createGame(GameData game) throws DataAccessException;
+
+    /**
+     * @param gameID ID createGame returned
+     * @return the game, or null if there isn't one with that ID
+     */
+    GameData getGame(int gameID) throws DataAccessException;
+
+    /**
+     * @return every game. The collection is a copy, so it doesn't change as games are
+     * added later.
+     */
+    Collection<GameData> listGames() throws DataAccessException;
+
+    /**
+     * Replaces a stored game (players joining, moves being made) with the given one.
+     *
+     * @param game game with the ID of a stored game
+     * @throws DataAccessException if there's no game with that ID or the store fails
+     */
+    void updateGame(GameData game) throws DataAccessException;
+
+    /**
+     * Removes every game
+     */
+    void clear() throws DataAccessException;
 }
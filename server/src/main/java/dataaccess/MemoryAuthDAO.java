@@ -0,0 +1,37 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps auth tokens in memory, for running without a database.
+ */
+public class MemoryAuthDAO implements AuthDAO {
+
+    private final ConcurrentHashMap<String, AuthData> tokens = new ConcurrentHashMap<>();
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        if (tokens.putIfAbsent(auth.authToken, auth) != null) {
+            throw new DataAccessException("Auth token already in use");
+        }
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) {
+        return authToken == null ? null : tokens.get(authToken);
+    }
+
+    @Override
+    public void deleteAuth(String authToken) {
+        if (authToken != null) {
+            tokens.remove(authToken);
+        }
+    }
+
+    @Override
+    public void clear() {
+        tokens.clear();
+    }
+}
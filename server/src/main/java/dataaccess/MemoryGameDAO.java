@@ -0,0 +1,48 @@
+package dataaccess;
+
+import model.GameData;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps games in memory, for running without a database. Games are looked up by ID on
+ * every move, so they go in a map keyed by the int ID itself (see ConcurrentIntMap)
+ * rather than a map of boxed Integers.
+ */
+public class MemoryGameDAO implements GameDAO {
+
+    private final ConcurrentIntMap<GameData> games = new ConcurrentIntMap<>();
+    // IDs keep counting up after clear(), so an old ID never finds a new game
+    private final AtomicInteger lastID = new AtomicInteger();
+
+    @Override
+    public int createGame(GameData game) {
+        int gameID = lastID.incrementAndGet();
+        game.gameID = gameID;
+        games.put(gameID, game);
+        return gameID;
+    }
+
+    @Override
+    public GameData getGame(int gameID) {
+        return games.get(gameID);
+    }
+
+    @Override
+    public Collection<GameData> listGames() {
+        return games.values();
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        if (game.gameID <= 0 || games.replace(game.gameID, game) == null) {
+            throw new DataAccessException("Game not found: " + game.gameID);
+        }
+    }
+
+    @Override
+    public void clear() {
+        games.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package dataaccess;
+
+import model.UserData;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps users in memory, for running without a database.
+ */
+public class MemoryUserDAO implements UserDAO {
+
+    private final ConcurrentHashMap<String, UserData> users = new ConcurrentHashMap<>();
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        UserData stored = new UserData();
+        stored.username = user.username;
+        stored.password = BCrypt.hashpw(user.password, BCrypt.gensalt());
+        stored.email = user.email;
+        if (users.putIfAbsent(user.username, stored) != null) {
+            throw new DataAccessException("Username already taken: " + user.username);
+        }
+    }
+
+    @Override
+    public UserData getUser(String username) {
+        return username == null ? null : users.get(username);
+    }
+
+    @Override
+    public void clear() {
+        users.clear();
+    }
+}
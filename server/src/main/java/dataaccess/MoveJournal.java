@@ -0,0 +1,474 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.PackedMove;
+import chess.PositionCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind storage for moves, so a move costs a memory append instead of a database
+ * write.
+ * <p>
+ * Each move is added to its game's journal in memory, along with the position after it.
+ * Every flushMillis, or sooner once maxPendingMoves moves are waiting, a background
+ * thread hands every game with new moves to the writer in one batch: one row per game no
+ * matter how many moves it made, with just its latest position and the moves to add to
+ * its history. A game that ends is flushed right away on the caller's thread, and so is
+ * everything when the journal is closed, so finished games are never left in memory.
+ * <p>
+ * A game is written by one flush at a time, so its moves always reach the database in
+ * order; a flush that finds a game already being written waits for that write, but only
+ * for games it needs, so loading one game never waits on a batch of others. If a write
+ * fails, its moves go back in the journal (ahead of any made since) and are tried again
+ * on the next flush. When a batch fails, its games are written one at a time so a single
+ * bad row doesn't hold up the rest, and a game whose row keeps failing while others'
+ * go through is given up on after MAX_FAILURES tries: its moves are dropped from the
+ * journal (the live game still has them) and logged as an error.
+ */
+public final class MoveJournal implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MoveJournal.class);
+    // A PackedMove with its flags fits in 19 bits
+    private static final int MOVE_BYTES = 3;
+    // Failed writes of a game, while other games' writes succeeded, before its moves are dropped
+    static final int MAX_FAILURES = 5;
+
+    /**
+     * Stores a batch of journal entries, all at once (e.g. one JDBC batch)
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        void write(List<Entry> batch) throws DataAccessException;
+    }
+
+    /**
+     * New moves for one game since its last flush.
+     *
+     * @param gameID   game the moves were made in
+     * @param position PositionCodec encoding of the position after the last move
+     * @param moves    the moves in the form of encodeMoves
+     */
+    public record Entry(int gameID, byte[] position, byte[] moves) {
+
+        /**
+         * @return number of moves in the entry
+         */
+        public int moveCount() {
+            return moves.length / MOVE_BYTES;
+        }
+    }
+
+    /**
+     * @param recorded   moves added to the journal
+     * @param written    moves written to the database
+     * @param rows       game rows written (one per game per flush)
+     * @param flushes    batches written
+     * @param failures   writes that failed and were put back
+     * @param dropped    moves given up on after their game's row failed MAX_FAILURES times
+     * @param pending    moves waiting to be written right now
+     */
+    public record Metrics(long recorded, long written, long rows, long flushes, long failures, long dropped,
+                          int pending) {
+    }
+
+    // A game's journal. Only changed inside ConcurrentHashMap.compute, which runs one
+    // at a time per game, and taken out of the map whole when flushed.
+    private static final class Pending {
+        final int gameID;
+        byte[] position;
+        byte[] moves = new byte[16];
+        int length;
+        // Writes of these moves that failed while other games' writes went through
+        int failures;
+
+        Pending(int gameID) {
+            this.gameID = gameID;
+        }
+
+        void append(byte[] more, int count) {
+            if (length + count > moves.length) {
+                moves = Arrays.copyOf(moves, Math.max(moves.length * 2, length + count));
+            }
+            System.arraycopy(more, 0, moves, length, count);
+            length += count;
+        }
+
+        int moveCount() {
+            return length / MOVE_BYTES;
+        }
+
+        Entry toEntry() {
+            return new Entry(gameID, position, Arrays.copyOf(moves, length));
+        }
+    }
+
+    private final BatchWriter writer;
+    private final int maxPendingMoves;
+    private final ConcurrentHashMap<Integer, Pending> journals = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingMoves = new AtomicInteger();
+    // Games a flush is writing right now; the latch opens when it's done
+    private final ConcurrentHashMap<Integer, CountDownLatch> writing = new ConcurrentHashMap<>();
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    // recordMove holds the read lock from checking closed until its move is in the
+    // journal, and close() takes the write lock to set closed, so every move that got
+    // in is there for close()'s last flush
+    private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param writer          stores flushed moves
+     * @param flushMillis     how often waiting moves are written
+     * @param maxPendingMoves waiting moves that trigger a flush before the interval is up
+     */
+    public MoveJournal(BatchWriter writer, long flushMillis, int maxPendingMoves) {
+        this.writer = writer;
+        this.maxPendingMoves = maxPendingMoves;
+        // A daemon thread, so a forgotten journal doesn't keep the server running;
+        // close() is what makes sure nothing is lost
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "move-journal-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushInBackground, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a move to its game's journal. Call it after making the move, so game is the
+     * position the move led to.
+     *
+     * @param gameID game the move was made in
+     * @param game   the game after the move
+     * @param move   the move
+     * @throws IllegalStateException    if the journal has been closed
+     * @throws IllegalArgumentException if move isn't the last move made in game
+     */
+    public void recordMove(int gameID, ChessGame game, ChessMove move) {
+        // The game's own copy of the move has the flags (castling, en passant, double
+        // push) that replaying it needs
+        int packed = game.getLastPackedMove();
+        if (!PackedMove.sameMove(packed, PackedMove.fromChessMove(move))) {
+            throw new IllegalArgumentException(String.format("%s isn't the game's last move", move));
+        }
+        byte[] position = PositionCodec.encode(game);
+        byte[] bytes = encodeMoves(new int[]{packed});
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Move journal is closed");
+            }
+            journals.compute(gameID, (id, pending) -> {
+                if (pending == null) {
+                    pending = new Pending(id);
+                }
+                pending.position = position;
+                pending.append(bytes, bytes.length);
+                return pending;
+            });
+        }
+        finally {
+            closing.readLock().unlock();
+        }
+        recorded.increment();
+        if (pendingMoves.incrementAndGet() >= maxPendingMoves && earlyFlushQueued.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    earlyFlushQueued.set(false);
+                    flushInBackground();
+                });
+            }
+            catch (RejectedExecutionException e) {
+                // Closed meanwhile; close() writes these anyway
+                earlyFlushQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes a finished game's waiting moves now, before returning.
+     *
+     * @param gameID game that ended
+     * @throws DataAccessException if they couldn't be written (they stay in the journal)
+     */
+    public void endGame(int gameID) throws DataAccessException {
+        flush(gameID);
+    }
+
+    /**
+     * Writes one game's waiting moves now, before returning, e.g. before reading the
+     * game back from the database. If a flush is already writing the game, waits for it
+     * first; other games' writes don't hold it up.
+     *
+     * @param gameID game to write
+     * @throws DataAccessException if they couldn't be written (they stay in the journal)
+     */
+    public void flush(int gameID) throws DataAccessException {
+        CountDownLatch mine = new CountDownLatch(1);
+        CountDownLatch theirs;
+        while ((theirs = writing.putIfAbsent(gameID, mine)) != null) {
+            try {
+                theirs.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessException("Interrupted waiting for game " + gameID + " to be written", e);
+            }
+        }
+        try {
+            Pending pending = journals.remove(gameID);
+            if (pending != null) {
+                write(List.of(pending));
+            }
+        }
+        finally {
+            done(gameID, mine);
+        }
+    }
+
+    /**
+     * Writes every game's waiting moves now, before returning.
+     *
+     * @throws DataAccessException if they couldn't be written (they stay in the journal)
+     */
+    public void flush() throws DataAccessException {
+        List<Pending> batch = new ArrayList<>();
+        List<CountDownLatch> claims = new ArrayList<>();
+        List<Integer> busy = new ArrayList<>();
+        try {
+            for (Integer gameID : journals.keySet()) {
+                CountDownLatch mine = new CountDownLatch(1);
+                if (writing.putIfAbsent(gameID, mine) != null) {
+                    busy.add(gameID);
+                    continue;
+                }
+                Pending pending = journals.remove(gameID);
+                if (pending == null) {
+                    done(gameID, mine);
+                    continue;
+                }
+                batch.add(pending);
+                claims.add(mine);
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+        finally {
+            for (int i = 0; i < batch.size(); i++) {
+                done(batch.get(i).gameID, claims.get(i));
+            }
+        }
+        // Games another flush was writing: wait for it, then write anything recorded
+        // since. Done after letting go of this batch's games, so two flushes never wait
+        // on each other.
+        for (int gameID : busy) {
+            flush(gameID);
+        }
+    }
+
+    /**
+     * @param gameID game to check
+     * @return whether the game has moves that haven't reached the database yet
+     */
+    public boolean hasPending(int gameID) {
+        return journals.containsKey(gameID) || writing.containsKey(gameID);
+    }
+
+    /**
+     * Forgets every game's waiting moves without writing them, for when the games
+     * themselves are being deleted.
+     */
+    public void discardAll() {
+        for (Integer gameID : journals.keySet()) {
+            Pending pending = journals.remove(gameID);
+            if (pending != null) {
+                pendingMoves.addAndGet(-pending.moveCount());
+            }
+        }
+    }
+
+    private void done(int gameID, CountDownLatch mine) {
+        writing.remove(gameID, mine);
+        mine.countDown();
+    }
+
+    private void write(List<Pending> batch) throws DataAccessException {
+        try {
+            writer.write(entries(batch));
+            wrote(batch);
+            return;
+        }
+        catch (DataAccessException | RuntimeException e) {
+            failures.increment();
+            if (batch.size() == 1) {
+                putBack(batch.getFirst(), false);
+                throw e;
+            }
+        }
+        // One bad row fails the whole batch, so write the games one at a time to let the
+        // others through
+        List<Pending> failed = new ArrayList<>();
+        DataAccessException failure = null;
+        for (Pending pending : batch) {
+            try {
+                writer.write(List.of(pending.toEntry()));
+                wrote(List.of(pending));
+            }
+            catch (DataAccessException | RuntimeException e) {
+                failures.increment();
+                failed.add(pending);
+                if (failure == null) {
+                    failure = e instanceof DataAccessException dataAccess ? dataAccess
+                            : new DataAccessException("Failed to write game " + pending.gameID, e);
+                }
+            }
+        }
+        // If every game failed, the database is the problem, not the games
+        boolean othersWritten = failed.size() < batch.size();
+        for (Pending pending : failed) {
+            putBack(pending, othersWritten);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static List<Entry> entries(List<Pending> batch) {
+        List<Entry> entries = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            entries.add(pending.toEntry());
+        }
+        return entries;
+    }
+
+    private void wrote(List<Pending> batch) {
+        int moves = 0;
+        for (Pending pending : batch) {
+            moves += pending.moveCount();
+        }
+        pendingMoves.addAndGet(-moves);
+        written.add(moves);
+        rows.add(batch.size());
+        flushes.increment();
+    }
+
+    // Puts the moves of a failed write back ahead of any recorded since, keeping the
+    // newer position if there are newer moves, or drops them if the game has failed
+    // too often
+    private void putBack(Pending failed, boolean counts) {
+        int failuresSoFar = counts ? failed.failures + 1 : failed.failures;
+        if (failuresSoFar >= MAX_FAILURES) {
+            pendingMoves.addAndGet(-failed.moveCount());
+            dropped.add(failed.moveCount());
+            LOG.error("Dropped {} journaled moves of game {} after {} failed writes", failed.moveCount(),
+                    failed.gameID, failuresSoFar);
+            return;
+        }
+        journals.compute(failed.gameID, (id, newer) -> {
+            Pending pending = new Pending(id);
+            pending.append(failed.moves, failed.length);
+            pending.position = failed.position;
+            pending.failures = failuresSoFar;
+            if (newer != null) {
+                pending.append(newer.moves, newer.length);
+                pending.position = newer.position;
+            }
+            return pending;
+        });
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        }
+        catch (DataAccessException | RuntimeException e) {
+            LOG.warn("Failed to write {} journaled moves, will retry: {}", pendingMoves.get(), e.getMessage());
+        }
+    }
+
+    /**
+     * @param moves packed moves, with their flags
+     * @return the moves three bytes each (big-endian PackedMove), as stored in the
+     * game table's moves column
+     */
+    public static byte[] encodeMoves(int[] moves) {
+        byte[] bytes = new byte[moves.length * MOVE_BYTES];
+        for (int i = 0; i < moves.length; i++) {
+            bytes[i * MOVE_BYTES] = (byte) (moves[i] >>> 16);
+            bytes[i * MOVE_BYTES + 1] = (byte) (moves[i] >>> 8);
+            bytes[i * MOVE_BYTES + 2] = (byte) moves[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * @param bytes moves written by encodeMoves (one after another)
+     * @return the packed moves
+     * @throws IllegalArgumentException if bytes isn't a whole number of moves
+     */
+    public static int[] decodeMoves(byte[] bytes) {
+        if (bytes.length % MOVE_BYTES != 0) {
+            throw new IllegalArgumentException(String.format("%d bytes isn't a whole number of moves", bytes.length));
+        }
+        int[] moves = new int[bytes.length / MOVE_BYTES];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = (bytes[i * MOVE_BYTES] & 0xFF) << 16 | (bytes[i * MOVE_BYTES + 1] & 0xFF) << 8
+                    | bytes[i * MOVE_BYTES + 2] & 0xFF;
+        }
+        return moves;
+    }
+
+    public Metrics metrics() {
+        return new Metrics(recorded.sum(), written.sum(), rows.sum(), flushes.sum(), failures.sum(), dropped.sum(),
+                pendingMoves.get());
+    }
+
+    /**
+     * Stops the background flushes and writes whatever is still waiting. Recording moves
+     * after this fails.
+     *
+     * @throws DataAccessException if the last moves couldn't be written
+     */
+    @Override
+    public void close() throws DataAccessException {
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        }
+        finally {
+            closing.writeLock().unlock();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
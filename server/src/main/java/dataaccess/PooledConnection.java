@@ -0,0 +1,155 @@
+package dataaccess;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a ConnectionPool. Closing it gives it back to the pool
+ * rather than closing the real connection, so use it in try-with-resources:
+ * <pre>
+ * try (var conn = pool.acquire()) {
+ *     var statement = conn.prepare("SELECT ... WHERE id=?");
+ *     ...
+ * }
+ * </pre>
+ * Statements from prepare() are cached on the connection by their SQL, so a query the
+ * server runs all the time is only prepared once per connection. That saves MySQL work
+ * because DatabaseManager asks Connector/J for server-side prepared statements
+ * (useServerPrepStmts); with client-side ones it would only save the driver's parsing.
+ * Statements belong to the connection: don't close them, and don't use them after
+ * giving the connection back. Only the least recently used statements are closed once
+ * the cache is full. With a cache size of 0 nothing is cached, and statements are
+ * closed when the connection is given back.
+ */
+public final class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final int statementCacheSize;
+    private final Map<String, PreparedStatement> statements;
+    // Statements prepared while the cache is off, closed when the connection is given back
+    private final List<PreparedStatement> uncached = new ArrayList<>();
+    private boolean broken;
+    // Set when the borrower gives it back; the pool clears it when lending it out again
+    boolean returned;
+    // When it was last given back, from System.nanoTime()
+    volatile long lastUsed = System.nanoTime();
+
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCacheSize = statementCacheSize;
+        // Access order, so the eldest entry is the least recently used
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                // The only entry is the one just added, which the caller is about to use
+                if (size() <= Math.max(statementCacheSize, 1)) {
+                    return false;
+                }
+                closeStatement(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param sql statement with ? placeholders
+     * @return a prepared statement for sql, with its parameters cleared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            pool.statementHits.increment();
+            statement.clearParameters();
+            return statement;
+        }
+        pool.statementMisses.increment();
+        statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        if (statementCacheSize > 0) {
+            statements.put(sql, statement);
+        }
+        else {
+            uncached.add(statement);
+        }
+        return statement;
+    }
+
+    /**
+     * @return the underlying connection, for anything prepare() doesn't cover (e.g.
+     * transactions). Don't close it; close this instead.
+     */
+    public Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Marks the connection as unusable (e.g. the network dropped), so the pool closes it
+     * when it's given back instead of lending it out again.
+     */
+    public void markBroken() {
+        broken = true;
+    }
+
+    boolean isBroken() {
+        if (broken) {
+            return true;
+        }
+        try {
+            return connection.isClosed();
+        }
+        catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Gives the connection back to the pool. Closing it again does nothing.
+     */
+    @Override
+    public void close() {
+        if (returned) {
+            return;
+        }
+        returned = true;
+        closeUncached();
+        pool.release(this);
+    }
+
+    // Only the pool calls this, and only for connections nobody has borrowed
+    void closeQuietly() {
+        for (PreparedStatement statement : statements.values()) {
+            closeStatement(statement);
+        }
+        statements.clear();
+        closeUncached();
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            // It's being thrown away anyway
+        }
+    }
+
+    private void closeUncached() {
+        for (PreparedStatement statement : uncached) {
+            closeStatement(statement);
+        }
+        uncached.clear();
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        }
+        catch (SQLException e) {
+            // Nothing useful to do; the connection still works
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+
+/**
+ * Auth tokens in the MySQL auth table.
+ */
+public class SqlAuthDAO implements AuthDAO {
+
+    public SqlAuthDAO() throws DataAccessException {
+        DatabaseManager.configureDatabase();
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        try {
+            DatabaseManager.executeUpdate("INSERT INTO auth (token, username) VALUES (?, ?)",
+                    auth.authToken, auth.username);
+        }
+        catch (DataAccessException e) {
+            if (e.getCause() instanceof SQLIntegrityConstraintViolationException) {
+                throw new DataAccessException("Auth token already in use", e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        var tokens = DatabaseManager.executeQuery("SELECT token, username FROM auth WHERE token=?",
+                row -> {
+                    AuthData auth = new AuthData();
+                    auth.authToken = row.getString("token");
+                    auth.username = row.getString("username");
+                    return auth;
+                }, authToken);
+        return tokens.isEmpty() ? null : tokens.getFirst();
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        DatabaseManager.executeUpdate("DELETE FROM auth WHERE token=?", authToken);
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        DatabaseManager.executeUpdate("TRUNCATE auth");
+    }
+}
@@ -0,0 +1,186 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.PositionCodec;
+import model.GameData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Games in the MySQL game table. The game itself is stored in PositionCodec's binary
+ * form (a few dozen bytes) rather than as JSON.
+ * <p>
+ * Moves made during play don't come through updateGame: they go through the
+ * MoveJournal (DatabaseManager.journal()), which writes them in batches with writeMoves.
+ * The game's history is kept next to its position: the position it started from
+ * (start_position) and every move since (moves, in MoveJournal.encodeMoves form, flags
+ * and all). getGame replays them, so a reloaded game still has its move list, PGN and
+ * the positions repetition is checked against. listGames only reads positions.
+ * createGame and updateGame write the game's whole history, so a game's journaled moves
+ * have to be flushed before updateGame (CachingGameDAO does), or they'd be added twice.
+ */
+public class SqlGameDAO implements GameDAO {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SqlGameDAO.class);
+    private static final String COLUMNS = "id, white_username, black_username, game_name, game";
+
+    public SqlGameDAO() throws DataAccessException {
+        DatabaseManager.configureDatabase();
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        int gameID = DatabaseManager.executeUpdate(
+                "INSERT INTO game (white_username, black_username, game_name, game, start_position, moves) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                game.whiteUsername, game.blackUsername, game.gameName, encode(game.game),
+                encodeStart(game.game), encodeHistory(game.game));
+        game.gameID = gameID;
+        return gameID;
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        var games = DatabaseManager.executeQuery("SELECT " + COLUMNS + ", start_position, moves FROM game WHERE id=?",
+                SqlGameDAO::readGameWithHistory, gameID);
+        return games.isEmpty() ? null : games.getFirst();
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        return DatabaseManager.executeQuery("SELECT " + COLUMNS + " FROM game", SqlGameDAO::readGame);
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        int matched = DatabaseManager.executeUpdateCount(
+                "UPDATE game SET white_username=?, black_username=?, game_name=?, game=?, start_position=?, moves=? "
+                        + "WHERE id=?",
+                game.whiteUsername, game.blackUsername, game.gameName, encode(game.game),
+                encodeStart(game.game), encodeHistory(game.game), game.gameID);
+        if (matched == 0) {
+            throw new DataAccessException("Game not found: " + game.gameID);
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        // Not TRUNCATE, which would start AUTO_INCREMENT over and hand out old IDs again
+        DatabaseManager.executeUpdate("DELETE FROM game");
+    }
+
+    /**
+     * Writes a flush of the move journal as one JDBC batch in one transaction: each game
+     * gets its latest position, and its new moves added to the end of its history.
+     *
+     * @param batch one entry per game
+     */
+    static void writeMoves(List<MoveJournal.Entry> batch) throws DataAccessException {
+        try (var conn = DatabaseManager.pool().acquire()) {
+            Connection connection = conn.connection();
+            try {
+                connection.setAutoCommit(false);
+                var statement = conn.prepare("UPDATE game SET game=?, moves=CONCAT(COALESCE(moves, ''), ?) WHERE id=?");
+                for (MoveJournal.Entry entry : batch) {
+                    statement.setBytes(1, entry.position());
+                    statement.setBytes(2, entry.moves());
+                    statement.setInt(3, entry.gameID());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            }
+            catch (SQLException ex) {
+                DatabaseManager.checkBroken(conn, ex);
+                try {
+                    connection.rollback();
+                }
+                catch (SQLException rollbackFailed) {
+                    ex.addSuppressed(rollbackFailed);
+                    conn.markBroken();
+                }
+                throw new DataAccessException("unable to write moves: " + ex.getMessage(), ex);
+            }
+            finally {
+                try {
+                    connection.setAutoCommit(true);
+                }
+                catch (SQLException ex) {
+                    conn.markBroken();
+                }
+            }
+        }
+    }
+
+    static byte[] encode(ChessGame game) {
+        return game == null ? null : PositionCodec.encode(game);
+    }
+
+    private static byte[] encodeStart(ChessGame game) {
+        return game == null ? null : game.getStartPosition();
+    }
+
+    private static byte[] encodeHistory(ChessGame game) {
+        return game == null ? null : MoveJournal.encodeMoves(game.getPackedHistory());
+    }
+
+    static GameData readGame(ResultSet row) throws SQLException {
+        return readGame(row, false);
+    }
+
+    static GameData readGameWithHistory(ResultSet row) throws SQLException {
+        return readGame(row, true);
+    }
+
+    private static GameData readGame(ResultSet row, boolean withHistory) throws SQLException {
+        GameData game = new GameData();
+        game.gameID = row.getInt("id");
+        game.whiteUsername = row.getString("white_username");
+        game.blackUsername = row.getString("black_username");
+        game.gameName = row.getString("game_name");
+        byte[] encoded = row.getBytes("game");
+        if (encoded == null) {
+            game.game = null;
+        }
+        else if (withHistory) {
+            game.game = decodeGame(encoded, row.getBytes("start_position"), row.getBytes("moves"));
+        }
+        else {
+            game.game = PositionCodec.decode(encoded);
+        }
+        return game;
+    }
+
+    /**
+     * Rebuilds a game from its stored history, as long as that history leads to the
+     * stored position. It won't if journaled moves were written after an updateGame
+     * that already had them; then the position is all there is.
+     *
+     * @param position      the game column
+     * @param startPosition the start_position column, or null
+     * @param moves         the moves column, or null
+     * @return the game, with its history if it had a usable one
+     */
+    static ChessGame decodeGame(byte[] position, byte[] startPosition, byte[] moves) {
+        if (startPosition != null) {
+            try {
+                ChessGame replayed = ChessGame.fromHistory(startPosition,
+                        MoveJournal.decodeMoves(moves == null ? new byte[0] : moves));
+                if (Arrays.equals(PositionCodec.encode(replayed), position)) {
+                    return replayed;
+                }
+            }
+            catch (RuntimeException e) {
+                LOG.warn("Unreadable game history: {}", e.getMessage());
+            }
+        }
+        return PositionCodec.decode(position);
+    }
+}
@@ -0,0 +1,49 @@
+package dataaccess;
+
+import model.UserData;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+
+/**
+ * Users in the MySQL user table.
+ */
+public class SqlUserDAO implements UserDAO {
+
+    public SqlUserDAO() throws DataAccessException {
+        DatabaseManager.configureDatabase();
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        try {
+            DatabaseManager.executeUpdate("INSERT INTO user (username, password, email) VALUES (?, ?, ?)",
+                    user.username, BCrypt.hashpw(user.password, BCrypt.gensalt()), user.email);
+        }
+        catch (DataAccessException e) {
+            // The primary key makes the check and the insert one step
+            if (e.getCause() instanceof SQLIntegrityConstraintViolationException) {
+                throw new DataAccessException("Username already taken: " + user.username, e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        var users = DatabaseManager.executeQuery("SELECT username, password, email FROM user WHERE username=?",
+                row -> {
+                    UserData user = new UserData();
+                    user.username = row.getString("username");
+                    user.password = row.getString("password");
+                    user.email = row.getString("email");
+                    return user;
+                }, username);
+        return users.isEmpty() ? null : users.getFirst();
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        DatabaseManager.executeUpdate("TRUNCATE user");
+    }
+}
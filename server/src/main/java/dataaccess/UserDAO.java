@@ -1,4 +1,35 @@
 package dataaccess;
 
-public class UserDAO {
+import model.UserData;
+
+/**
+ * Stores registered users, keyed by username.
+ * <p>
+ * Passwords are never stored as given: createUser stores a BCrypt hash of the password,
+ * and the user getUser returns has that hash as its password, which callers check a
+ * login against with BCrypt.checkpw.
+ */
+public interface UserDAO {
+
+    /**
+     * Adds a new user. Checking and inserting happen as one step, so two threads
+     * registering the same name can't both succeed. The user's password is hashed before
+     * it's stored; the given user isn't changed.
+     *
+     * @param user user to add, with the password as the user typed it
+     * @throws DataAccessException if the username is already taken or the store fails
+     */
+    void createUser(UserData user) throws DataAccessException;
+
+    /**
+     * @param username name the user registered with
+     * @return the user, with the hash of their password, or null if there isn't one with
+     * that name
+     */
+    UserData getUser(String username) throws DataAccessException;
+
+    /**
+     * Removes every user
+     */
+    void clear() throws DataAccessException;
 }
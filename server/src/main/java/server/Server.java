@@ -1,6 +1,9 @@
 package server;
 
+import dataaccess.DataAccessException;
+import dataaccess.DatabaseManager;
 import io.javalin.*;
+import org.slf4j.LoggerFactory;
 
 public class Server {
 
@@ -20,5 +23,11 @@ public class Server {
 
     public void stop() {
         javalin.stop();
+        try {
+            DatabaseManager.shutdown();
+        }
+        catch (DataAccessException e) {
+            LoggerFactory.getLogger(Server.class).error("Moves were lost on shutdown", e);
+        }
     }
 }
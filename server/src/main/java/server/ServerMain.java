@@ -4,11 +4,14 @@ import chess.*;
 
 public class ServerMain {
     public static void main(String[] args) {
-        var piece = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+        Slf4jEngineLog.install();
+        var piece = ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
         System.out.println("♕ 240 Chess Server: " + piece);
 
         Server server = new Server();
         server.run(8080);
+        // Ctrl-C or a kill still writes out journaled moves
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
 
         System.out.println("♕ 240 Chess Server");
     }
@@ -0,0 +1,37 @@
+package server;
+
+import chess.EngineLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the chess engine's diagnostics to SLF4J, so they end up in the server's log
+ * with everything else.
+ */
+public class Slf4jEngineLog implements EngineLog.Sink {
+
+    private final Logger logger = LoggerFactory.getLogger("chess");
+
+    @Override
+    public void log(EngineLog.Level level, String message) {
+        switch (level) {
+            case TRACE -> logger.trace(message);
+            case DEBUG -> logger.debug(message);
+            case INFO -> logger.info(message);
+            case WARN -> logger.warn(message);
+            case ERROR -> logger.error(message);
+            case OFF -> {
+            }
+        }
+    }
+
+    /**
+     * Routes engine messages to SLF4J. EngineLog's level decides what gets logged;
+     * simplelogger.properties lets everything from the "chess" logger through, so
+     * tracing a single game or raising EngineLog's level at runtime shows up without
+     * touching SLF4J's configuration.
+     */
+    public static void install() {
+        EngineLog.setSink(new Slf4jEngineLog());
+    }
+}
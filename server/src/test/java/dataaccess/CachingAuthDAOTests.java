@@ -0,0 +1,233 @@
+package dataaccess;
+
+import model.AuthData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CachingAuthDAOTests {
+
+    private static final long TTL = 1000;
+    private static final long MAX_AGE = 5000;
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * A memory DAO that counts how often it's asked for a token
+     */
+    private static class CountingAuthDAO extends MemoryAuthDAO {
+        int reads;
+        boolean down;
+
+        @Override
+        public AuthData getAuth(String authToken) {
+            reads++;
+            if (down) {
+                throw new IllegalStateException("Not expected to be called");
+            }
+            return super.getAuth(authToken);
+        }
+    }
+
+    private final CountingAuthDAO database = new CountingAuthDAO();
+    // Nanoseconds, moved forward by the tests
+    private long now;
+    private final CachingAuthDAO cache = new CachingAuthDAO(database, TTL, MAX_AGE, NEVER, () -> now);
+
+    @AfterEach
+    public void stopSweeper() {
+        cache.close();
+    }
+
+    private void advance(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static AuthData auth(String token, String username) {
+        AuthData auth = new AuthData();
+        auth.authToken = token;
+        auth.username = username;
+        return auth;
+    }
+
+    @Test
+    @DisplayName("Checks Come From Memory")
+    public void hits() throws DataAccessException {
+        cache.createAuth(auth("token", "alice"));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals("alice", cache.getAuth("token").username);
+        }
+        Assertions.assertEquals(0, database.reads);
+        Assertions.assertEquals(10, cache.metrics().hits());
+
+        // Logged in through another server: read once, then cached
+        database.createAuth(auth("elsewhere", "bob"));
+        Assertions.assertEquals("bob", cache.getAuth("elsewhere").username);
+        Assertions.assertEquals("bob", cache.getAuth("elsewhere").username);
+        Assertions.assertEquals(1, database.reads);
+
+        // Unknown tokens aren't cached
+        Assertions.assertNull(cache.getAuth("bogus"));
+        Assertions.assertNull(cache.getAuth("bogus"));
+        Assertions.assertNull(cache.getAuth(null));
+        Assertions.assertEquals(3, database.reads);
+        Assertions.assertEquals(3, cache.metrics().misses());
+    }
+
+    @Test
+    @DisplayName("Logout Revokes Immediately")
+    public void revocation() throws DataAccessException {
+        cache.createAuth(auth("token", "alice"));
+        cache.getAuth("token");
+        cache.deleteAuth("token");
+        Assertions.assertNull(cache.getAuth("token"));
+        Assertions.assertNull(database.getAuth("token"));
+        Assertions.assertEquals(1, cache.metrics().revocations());
+        Assertions.assertEquals(0, cache.metrics().size());
+    }
+
+    @Test
+    @DisplayName("Idle Tokens Expire")
+    public void idleExpiry() throws DataAccessException {
+        cache.createAuth(auth("token", "alice"));
+        advance(TTL - 1);
+        cache.getAuth("token");
+        // Used just now, so still cached well past the first TTL
+        advance(TTL - 1);
+        cache.getAuth("token");
+        Assertions.assertEquals(0, database.reads);
+
+        advance(TTL);
+        Assertions.assertEquals("alice", cache.getAuth("token").username);
+        Assertions.assertEquals(1, database.reads);
+        Assertions.assertEquals(1, cache.metrics().expirations());
+    }
+
+    @Test
+    @DisplayName("Tokens Expire However Often They're Used")
+    public void absoluteExpiry() throws DataAccessException {
+        cache.createAuth(auth("token", "alice"));
+        // Deleted behind the cache's back, e.g. by another server
+        database.deleteAuth("token");
+        for (long elapsed = 0; elapsed < MAX_AGE; elapsed += TTL / 2) {
+            Assertions.assertNotNull(cache.getAuth("token"));
+            advance(TTL / 2);
+        }
+        Assertions.assertNull(cache.getAuth("token"), "Token outlived its maximum age");
+    }
+
+    @Test
+    @DisplayName("Sweeper Removes Expired Tokens")
+    public void sweep() throws DataAccessException {
+        cache.createAuth(auth("old", "alice"));
+        advance(TTL / 2);
+        cache.createAuth(auth("new", "bob"));
+        advance(TTL / 2);
+        cache.sweep();
+        Assertions.assertEquals(1, cache.metrics().size());
+        Assertions.assertEquals(1, cache.metrics().expirations());
+        database.down = true;
+        Assertions.assertEquals("bob", cache.getAuth("new").username);
+    }
+
+    @Test
+    @DisplayName("Background Sweeps")
+    public void backgroundSweeps() throws Exception {
+        try (CachingAuthDAO sweeping = new CachingAuthDAO(new MemoryAuthDAO(), 1, NEVER, 5)) {
+            sweeping.createAuth(auth("token", "alice"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sweeping.metrics().size() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Assertions.assertEquals(0, sweeping.metrics().size(), "Sweeper never ran");
+        }
+    }
+
+    @Test
+    @DisplayName("Database Errors Aren't Cached")
+    public void loadFailure() throws DataAccessException {
+        AuthDAO failing = new AuthDAO() {
+            @Override
+            public void createAuth(AuthData auth) {
+            }
+
+            @Override
+            public AuthData getAuth(String authToken) throws DataAccessException {
+                throw new DataAccessException("Database is down");
+            }
+
+            @Override
+            public void deleteAuth(String authToken) {
+            }
+
+            @Override
+            public void clear() {
+            }
+        };
+        try (CachingAuthDAO failingCache = new CachingAuthDAO(failing, TTL, MAX_AGE, NEVER, () -> now)) {
+            Assertions.assertThrows(DataAccessException.class, () -> failingCache.getAuth("token"));
+            Assertions.assertEquals(0, failingCache.metrics().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Logout During A Load Isn't Blocked Or Undone")
+    public void logoutDuringLoad() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MemoryAuthDAO stored = new MemoryAuthDAO();
+        stored.createAuth(auth("token", "alice"));
+        // Reads the token, then stalls like a slow query
+        AuthDAO slow = new AuthDAO() {
+            @Override
+            public void createAuth(AuthData auth) throws DataAccessException {
+                stored.createAuth(auth);
+            }
+
+            @Override
+            public AuthData getAuth(String authToken) throws DataAccessException {
+                AuthData auth = stored.getAuth(authToken);
+                loaded.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return auth;
+            }
+
+            @Override
+            public void deleteAuth(String authToken) throws DataAccessException {
+                stored.deleteAuth(authToken);
+            }
+
+            @Override
+            public void clear() throws DataAccessException {
+                stored.clear();
+            }
+        };
+        try (CachingAuthDAO slowCache = new CachingAuthDAO(slow, TTL, MAX_AGE, NEVER, () -> now)) {
+            CompletableFuture<AuthData> check = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return slowCache.getAuth("token");
+                }
+                catch (DataAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Assertions.assertTrue(loaded.await(5, TimeUnit.SECONDS));
+            // Would wait on the stalled query if it held the token's entry
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> slowCache.deleteAuth("token"));
+            release.countDown();
+            check.get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(0, slowCache.metrics().size(), "Logged out token was cached again");
+            Assertions.assertNull(slowCache.getAuth("token"));
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.MoveList;
+import chess.PackedMove;
+import chess.PositionCodec;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CachingGameDAOTests {
+
+    /**
+     * A memory DAO that hands out copies, like a database would, and counts its reads
+     */
+    private static class CountingGameDAO implements GameDAO {
+        final MemoryGameDAO games = new MemoryGameDAO();
+        int reads;
+        int lists;
+
+        private static GameData copy(GameData game) {
+            if (game == null) {
+                return null;
+            }
+            GameData copy = new GameData();
+            copy.gameID = game.gameID;
+            copy.whiteUsername = game.whiteUsername;
+            copy.blackUsername = game.blackUsername;
+            copy.gameName = game.gameName;
+            copy.game = game.game == null ? null : ChessGame.fromFen(game.game.toFen());
+            return copy;
+        }
+
+        @Override
+        public int createGame(GameData game) {
+            int gameID = games.createGame(copy(game));
+            game.gameID = gameID;
+            return gameID;
+        }
+
+        @Override
+        public GameData getGame(int gameID) {
+            reads++;
+            return copy(games.getGame(gameID));
+        }
+
+        @Override
+        public Collection<GameData> listGames() {
+            lists++;
+            List<GameData> copies = new ArrayList<>();
+            for (GameData game : games.listGames()) {
+                copies.add(copy(game));
+            }
+            return copies;
+        }
+
+        @Override
+        public void updateGame(GameData game) throws DataAccessException {
+            games.updateGame(copy(game));
+        }
+
+        @Override
+        public void clear() {
+            games.clear();
+        }
+    }
+
+    private static GameData game(String name) {
+        GameData game = new GameData();
+        game.gameName = name;
+        game.game = new ChessGame();
+        return game;
+    }
+
+    @Test
+    @DisplayName("Reads Come From Memory")
+    public void readThrough() throws DataAccessException {
+        CountingGameDAO database = new CountingGameDAO();
+        int gameID = database.createGame(game("cold"));
+        CachingGameDAO cache = new CachingGameDAO(database, null, 10);
+
+        GameData first = cache.getGame(gameID);
+        GameData second = cache.getGame(gameID);
+        Assertions.assertSame(first, second, "Callers got different copies of a cached game");
+        Assertions.assertEquals(1, database.reads);
+        Assertions.assertNull(cache.getGame(gameID + 1));
+        Assertions.assertNull(cache.getGame(0));
+
+        CachingGameDAO.Metrics metrics = cache.metrics();
+        Assertions.assertEquals(1, metrics.hits());
+        Assertions.assertEquals(3, metrics.misses());
+        Assertions.assertEquals(1, metrics.size());
+        Assertions.assertEquals(0.25, metrics.hitRate());
+    }
+
+    @Test
+    @DisplayName("Writes Go Through")
+    public void writeThrough() throws DataAccessException {
+        CountingGameDAO database = new CountingGameDAO();
+        CachingGameDAO cache = new CachingGameDAO(database, null, 10);
+        GameData created = game("new");
+        int gameID = cache.createGame(created);
+        Assertions.assertSame(created, cache.getGame(gameID));
+        Assertions.assertEquals(0, database.reads, "A game just created was read back from the database");
+
+        created.whiteUsername = "alice";
+        cache.updateGame(created);
+        Assertions.assertEquals("alice", database.getGame(gameID).whiteUsername);
+        Assertions.assertSame(created, cache.getGame(gameID));
+
+        GameData missing = game("missing");
+        missing.gameID = gameID + 1;
+        Assertions.assertThrows(DataAccessException.class, () -> cache.updateGame(missing));
+        Assertions.assertNull(cache.getGame(gameID + 1), "A failed update was cached");
+    }
+
+    @Test
+    @DisplayName("Least Recently Used Are Evicted")
+    public void eviction() throws DataAccessException {
+        CountingGameDAO database = new CountingGameDAO();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(database.createGame(game("game " + i)));
+        }
+        CachingGameDAO cache = new CachingGameDAO(database, null, 20);
+        for (int gameID : ids.subList(0, 20)) {
+            cache.getGame(gameID);
+        }
+        // Keep the first game busy while the rest are loaded
+        for (int gameID : ids.subList(20, 30)) {
+            cache.getGame(ids.getFirst());
+            cache.getGame(gameID);
+        }
+        CachingGameDAO.Metrics metrics = cache.metrics();
+        Assertions.assertTrue(metrics.size() <= 20, "Cache grew to " + metrics.size());
+        Assertions.assertTrue(metrics.evictions() >= 10);
+
+        int reads = database.reads;
+        cache.getGame(ids.getFirst());
+        cache.getGame(ids.getLast());
+        Assertions.assertEquals(reads, database.reads, "A recently used game was evicted");
+        // Read again from the database, or reclaimed if it hasn't been collected yet
+        long hits = cache.metrics().hits();
+        cache.getGame(ids.get(1));
+        Assertions.assertEquals(hits, cache.metrics().hits(), "The least recently used game wasn't evicted");
+    }
+
+    @Test
+    @DisplayName("Games In Play Are Never Copied")
+    public void evictionKeepsGamesInPlay() throws Exception {
+        CountingGameDAO database = new CountingGameDAO();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            ids.add(database.createGame(game("game " + i)));
+        }
+        MoveJournal journal = new MoveJournal(batch -> {
+        }, 3600000, 1000);
+        try {
+            CachingGameDAO cache = new CachingGameDAO(database, journal, 10);
+            List<GameData> held = new ArrayList<>();
+            for (int gameID : ids.subList(0, 10)) {
+                held.add(cache.getGame(gameID));
+            }
+            // The oldest game has a move waiting in the journal
+            GameData playing = held.getFirst();
+            ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+            playing.game.makeMove(move);
+            journal.recordMove(playing.gameID, playing.game, move);
+
+            // Evicts the two oldest, but not the one with a journaled move
+            cache.getGame(ids.getLast());
+            Assertions.assertEquals(1, cache.metrics().evictions());
+            Assertions.assertEquals(10, cache.metrics().size());
+
+            // The evicted game is still held, so a read gets that copy, not a new one
+            int reads = database.reads;
+            Assertions.assertSame(held.get(1), cache.getGame(ids.get(1)), "A held game was loaded a second time");
+            Assertions.assertSame(playing, cache.getGame(playing.gameID));
+            Assertions.assertEquals(reads, database.reads);
+            Assertions.assertEquals(1, cache.metrics().reclaims());
+        }
+        finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Invalidation")
+    public void invalidation() throws DataAccessException {
+        CountingGameDAO database = new CountingGameDAO();
+        int gameID = database.createGame(game("shared"));
+        CachingGameDAO cache = new CachingGameDAO(database, null, 10);
+        cache.getGame(gameID);
+
+        // Another server lets bob join
+        GameData joined = database.getGame(gameID);
+        joined.blackUsername = "bob";
+        database.updateGame(joined);
+        Assertions.assertNull(cache.getGame(gameID).blackUsername);
+
+        cache.invalidate(gameID);
+        Assertions.assertEquals("bob", cache.getGame(gameID).blackUsername);
+        Assertions.assertEquals(1, cache.metrics().invalidations());
+    }
+
+    @Test
+    @DisplayName("Game List")
+    public void gameList() throws DataAccessException {
+        CountingGameDAO database = new CountingGameDAO();
+        CachingGameDAO cache = new CachingGameDAO(database, null, 10);
+        GameData live = game("live");
+        int gameID = cache.createGame(live);
+        cache.createGame(game("other"));
+
+        Assertions.assertEquals(2, cache.listGames().size());
+        Assertions.assertEquals(2, cache.listGames().size());
+        Assertions.assertEquals(1, database.lists);
+        Assertions.assertTrue(cache.listGames().contains(live), "List has a database copy of a cached game");
+
+        // Joining changes the list
+        live.whiteUsername = "alice";
+        cache.updateGame(live);
+        Assertions.assertEquals(2, cache.listGames().size());
+        Assertions.assertEquals(2, database.lists);
+        Assertions.assertEquals(2, cache.metrics().listHits());
+
+        cache.clear();
+        Assertions.assertTrue(cache.listGames().isEmpty());
+        Assertions.assertNull(cache.getGame(gameID));
+    }
+
+    @Test
+    @DisplayName("Journaled Moves Are Written Before Loading")
+    public void journalFlushedBeforeLoad() throws Exception {
+        CountingGameDAO database = new CountingGameDAO();
+        int gameID = database.createGame(game("played"));
+        // Stands in for SqlGameDAO.writeMoves: stores each game's latest position
+        MoveJournal journal = new MoveJournal(batch -> {
+            for (MoveJournal.Entry entry : batch) {
+                GameData stored = database.getGame(entry.gameID());
+                stored.game = PositionCodec.decode(entry.position());
+                database.updateGame(stored);
+            }
+        }, 3600000, 1000);
+        try {
+            CachingGameDAO cache = new CachingGameDAO(database, journal, 10);
+            GameData game = cache.getGame(gameID);
+            ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+            game.game.makeMove(move);
+            journal.recordMove(gameID, game.game, move);
+
+            cache.invalidate(gameID);
+            Assertions.assertEquals(game.game.toFen(), cache.getGame(gameID).game.toFen(),
+                    "Reloaded game is missing a journaled move");
+        }
+        finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Clear Discards Journaled Moves")
+    public void clearDiscardsJournal() throws Exception {
+        CountingGameDAO database = new CountingGameDAO();
+        List<MoveJournal.Entry> written = new ArrayList<>();
+        MoveJournal journal = new MoveJournal(written::addAll, 3600000, 1000);
+        try {
+            CachingGameDAO cache = new CachingGameDAO(database, journal, 10);
+            int gameID = cache.createGame(game("cleared"));
+            GameData game = cache.getGame(gameID);
+            ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+            game.game.makeMove(move);
+            journal.recordMove(gameID, game.game, move);
+
+            cache.clear();
+            Assertions.assertEquals(0, journal.metrics().pending());
+            journal.flush();
+            Assertions.assertTrue(written.isEmpty(), "Moves of a cleared game were written");
+            Assertions.assertTrue(cache.createGame(game("next")) > gameID, "A game ID was reused");
+        }
+        finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Shared Game Is Locked Per Game")
+    public void sharedGameLocking() throws Exception {
+        CountingGameDAO database = new CountingGameDAO();
+        CachingGameDAO cache = new CachingGameDAO(database, null, 10);
+        int gameID = cache.createGame(game("busy"));
+        ExecutorService players = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> moved = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                moved.add(players.submit(() -> {
+                    int moves = 0;
+                    MoveList legal = new MoveList();
+                    for (int turn = 0; turn < 25; turn++) {
+                        GameData data = cache.getGame(gameID);
+                        // The documented contract: hold the GameData's lock around any use
+                        synchronized (data) {
+                            legal.clear();
+                            data.game.legalMoves(legal);
+                            if (legal.isEmpty() || data.game.isDraw()) {
+                                break;
+                            }
+                            ChessMove move = PackedMove.toChessMove(legal.get(turn % legal.size()));
+                            Assertions.assertTrue(data.game.validMoves(move.getStartPosition()).contains(move));
+                            data.game.makeMove(move);
+                            moves++;
+                        }
+                    }
+                    return moves;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : moved) {
+                total += future.get();
+            }
+            GameData data = cache.getGame(gameID);
+            synchronized (data) {
+                Assertions.assertEquals(total, data.game.getHistorySize(), "Moves were lost");
+                Assertions.assertEquals(data.game, ChessGame.fromHistory(data.game.getStartPosition(),
+                        data.game.getPackedHistory()), "Board doesn't match its own history");
+            }
+        }
+        finally {
+            players.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package dataaccess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionPoolTests {
+
+    /**
+     * Stands in for a MySQL connection: remembers whether it's been closed, can be made
+     * to fail isValid(), and hands out statements that only remember being closed.
+     */
+    private static class FakeConnection {
+        boolean closed;
+        boolean valid = true;
+        int prepared;
+        // Run when the pool checks whether the connection was closed
+        Runnable whileChecked = () -> {
+        };
+        final Connection proxy;
+
+        FakeConnection() {
+            proxy = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class}, (self, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> {
+                            whileChecked.run();
+                            yield closed;
+                        }
+                        case "isValid" -> valid && !closed;
+                        case "prepareStatement" -> {
+                            prepared++;
+                            yield fakeStatement();
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private static PreparedStatement fakeStatement() {
+            boolean[] closed = new boolean[1];
+            return (PreparedStatement) Proxy.newProxyInstance(FakeConnection.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (self, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed[0] = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed[0];
+                        case "clearParameters" -> null;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+
+    private final List<FakeConnection> opened = new ArrayList<>();
+
+    private ConnectionPool pool(int maxSize, long timeoutMillis, int statements, long validateAfterMillis) {
+        return new ConnectionPool(() -> {
+            FakeConnection connection = new FakeConnection();
+            synchronized (opened) {
+                opened.add(connection);
+            }
+            return connection.proxy;
+        }, maxSize, timeoutMillis, statements, validateAfterMillis);
+    }
+
+    @Test
+    @DisplayName("Connections Are Reused")
+    public void reuse() throws Exception {
+        ConnectionPool pool = pool(4, 1000, 8, 60000);
+        Connection first;
+        try (PooledConnection conn = pool.acquire()) {
+            first = conn.connection();
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            Assertions.assertSame(first, conn.connection(), "Pool opened a new connection instead of reusing");
+        }
+        ConnectionPool.Metrics metrics = pool.metrics();
+        Assertions.assertEquals(1, metrics.created());
+        Assertions.assertEquals(2, metrics.acquired());
+        Assertions.assertEquals(1, metrics.idle());
+        Assertions.assertEquals(0, metrics.inUse());
+    }
+
+    @Test
+    @DisplayName("Bounded With Acquire Timeout")
+    public void bounded() throws Exception {
+        ConnectionPool pool = pool(2, 50, 8, 60000);
+        PooledConnection first = pool.acquire();
+        PooledConnection second = pool.acquire();
+        Assertions.assertEquals(2, pool.metrics().inUse());
+        Assertions.assertThrows(DataAccessException.class, pool::acquire);
+        Assertions.assertEquals(1, pool.metrics().timeouts());
+        Assertions.assertEquals(2, pool.metrics().open());
+
+        // Giving one back frees a place, and closing twice doesn't free two
+        first.close();
+        first.close();
+        PooledConnection third = pool.acquire();
+        Assertions.assertThrows(DataAccessException.class, pool::acquire);
+        third.close();
+        second.close();
+        Assertions.assertEquals(2, opened.size());
+    }
+
+    @Test
+    @DisplayName("Statement Cache")
+    public void statementCache() throws Exception {
+        ConnectionPool pool = pool(1, 1000, 2, 60000);
+        PreparedStatement select;
+        try (PooledConnection conn = pool.acquire()) {
+            select = conn.prepare("SELECT 1");
+            Assertions.assertSame(select, conn.prepare("SELECT 1"));
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            Assertions.assertSame(select, conn.prepare("SELECT 1"), "Cache didn't survive returning the connection");
+            conn.prepare("SELECT 2");
+            conn.prepare("SELECT 3");
+            // Only two fit, and SELECT 1 is least recently used
+            Assertions.assertTrue(select.isClosed(), "Evicted statement wasn't closed");
+            Assertions.assertNotSame(select, conn.prepare("SELECT 1"));
+        }
+        Assertions.assertEquals(2, pool.metrics().statementHits());
+        Assertions.assertEquals(4, pool.metrics().statementMisses());
+        Assertions.assertEquals(4, opened.getFirst().prepared);
+    }
+
+    @Test
+    @DisplayName("Statement Cache Turned Off")
+    public void noStatementCache() throws Exception {
+        ConnectionPool pool = pool(1, 1000, 0, 60000);
+        PreparedStatement select;
+        try (PooledConnection conn = pool.acquire()) {
+            select = conn.prepare("SELECT 1");
+            Assertions.assertFalse(select.isClosed(), "Caller got a closed statement");
+            Assertions.assertNotSame(select, conn.prepare("SELECT 1"));
+            Assertions.assertFalse(select.isClosed(), "Statement closed while the connection was still borrowed");
+        }
+        Assertions.assertTrue(select.isClosed(), "Statement outlived giving the connection back");
+        Assertions.assertEquals(0, pool.metrics().statementHits());
+        Assertions.assertEquals(2, opened.getFirst().prepared);
+    }
+
+    @Test
+    @DisplayName("Broken And Stale Connections Are Replaced")
+    public void healthChecks() throws Exception {
+        ConnectionPool pool = pool(2, 1000, 8, 0);
+        try (PooledConnection conn = pool.acquire()) {
+            conn.markBroken();
+        }
+        Assertions.assertTrue(opened.getFirst().closed, "Broken connection wasn't closed");
+        Assertions.assertEquals(0, pool.metrics().open());
+
+        try (PooledConnection conn = pool.acquire()) {
+            Assertions.assertSame(opened.get(1).proxy, conn.connection());
+        }
+        // Fails its check on the way out, since every idle connection is checked here
+        opened.get(1).valid = false;
+        try (PooledConnection conn = pool.acquire()) {
+            Assertions.assertSame(opened.get(2).proxy, conn.connection());
+        }
+        Assertions.assertTrue(opened.get(1).closed);
+        Assertions.assertEquals(2, pool.metrics().discarded());
+        Assertions.assertEquals(1, pool.metrics().open());
+    }
+
+    @Test
+    @DisplayName("Failed Open")
+    public void failedOpen() {
+        ConnectionPool pool = new ConnectionPool(() -> {
+            throw new SQLException("Connection refused", "08001");
+        }, 1, 1000, 8, 60000);
+        Assertions.assertThrows(DataAccessException.class, pool::acquire);
+        // The permit and the open count went back, so it can try again
+        Assertions.assertThrows(DataAccessException.class, pool::acquire);
+        Assertions.assertEquals(0, pool.metrics().inUse());
+        Assertions.assertEquals(0, pool.metrics().open());
+        Assertions.assertEquals(0, pool.metrics().timeouts());
+    }
+
+    @Test
+    @DisplayName("Closing The Pool")
+    public void close() throws Exception {
+        ConnectionPool pool = pool(2, 1000, 8, 60000);
+        PooledConnection borrowed = pool.acquire();
+        pool.acquire().close();
+        pool.close();
+        Assertions.assertTrue(opened.get(1).closed, "Idle connection wasn't closed");
+        Assertions.assertFalse(opened.get(0).closed, "Borrowed connection was closed under its borrower");
+        borrowed.close();
+        Assertions.assertTrue(opened.get(0).closed);
+        Assertions.assertThrows(DataAccessException.class, pool::acquire);
+    }
+
+    @Test
+    @DisplayName("Return Racing Close")
+    public void closeRace() throws Exception {
+        ConnectionPool pool = pool(2, 1000, 8, 60000);
+        PooledConnection borrowed = pool.acquire();
+        // The pool checks the connection after deciding to keep it; close it right then
+        opened.getFirst().whileChecked = pool::close;
+        borrowed.close();
+        Assertions.assertTrue(opened.getFirst().closed, "Connection returned during close() leaked");
+        Assertions.assertEquals(0, pool.metrics().open());
+        Assertions.assertEquals(0, pool.metrics().idle());
+    }
+
+    @Test
+    @DisplayName("Never More Than Max Size")
+    public void concurrentBorrowers() throws Exception {
+        ConnectionPool pool = pool(3, 5000, 8, 60000);
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger mostBorrowed = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(threads.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        try (PooledConnection conn = pool.acquire()) {
+                            mostBorrowed.accumulateAndGet(borrowed.incrementAndGet(), Math::max);
+                            Thread.yield();
+                            borrowed.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        finally {
+            threads.shutdownNow();
+        }
+        Assertions.assertTrue(mostBorrowed.get() <= 3, "Borrowed at once: " + mostBorrowed.get());
+        Assertions.assertTrue(opened.size() <= 3, "Opened: " + opened.size());
+        Assertions.assertEquals(4000, pool.metrics().acquired());
+        Assertions.assertEquals(0, pool.metrics().inUse());
+    }
+}
@@ -0,0 +1,185 @@
+package dataaccess;
+
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.mindrot.jbcrypt.BCrypt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MemoryDAOTests {
+
+    private static UserData user(String username) {
+        UserData user = new UserData();
+        user.username = username;
+        user.password = "secret";
+        user.email = username + "@example.com";
+        return user;
+    }
+
+    private static AuthData auth(String token, String username) {
+        AuthData auth = new AuthData();
+        auth.authToken = token;
+        auth.username = username;
+        return auth;
+    }
+
+    private static GameData game(String name) {
+        GameData game = new GameData();
+        game.gameName = name;
+        return game;
+    }
+
+    @Test
+    @DisplayName("Users")
+    public void users() throws DataAccessException {
+        UserDAO users = new MemoryUserDAO();
+        users.createUser(user("alice"));
+        UserData alice = users.getUser("alice");
+        Assertions.assertEquals("alice@example.com", alice.email);
+        Assertions.assertNotEquals("secret", alice.password, "Password was stored as given");
+        Assertions.assertTrue(BCrypt.checkpw("secret", alice.password));
+        Assertions.assertFalse(BCrypt.checkpw("guess", alice.password));
+        Assertions.assertNull(users.getUser("bob"));
+        Assertions.assertThrows(DataAccessException.class, () -> users.createUser(user("alice")));
+        Assertions.assertSame(alice, users.getUser("alice"), "A failed registration replaced the user");
+
+        users.clear();
+        Assertions.assertNull(users.getUser("alice"));
+    }
+
+    @Test
+    @DisplayName("Auth Tokens")
+    public void authTokens() throws DataAccessException {
+        AuthDAO tokens = new MemoryAuthDAO();
+        tokens.createAuth(auth("token-1", "alice"));
+        Assertions.assertEquals("alice", tokens.getAuth("token-1").username);
+        Assertions.assertNull(tokens.getAuth("token-2"));
+        Assertions.assertNull(tokens.getAuth(null));
+        Assertions.assertThrows(DataAccessException.class, () -> tokens.createAuth(auth("token-1", "bob")));
+
+        tokens.deleteAuth("token-1");
+        Assertions.assertNull(tokens.getAuth("token-1"));
+        tokens.deleteAuth("token-1");
+    }
+
+    @Test
+    @DisplayName("Games")
+    public void games() throws DataAccessException {
+        GameDAO games = new MemoryGameDAO();
+        GameData first = game("first");
+        int firstID = games.createGame(first);
+        int secondID = games.createGame(game("second"));
+        Assertions.assertTrue(firstID > 0);
+        Assertions.assertNotEquals(firstID, secondID);
+        Assertions.assertEquals(firstID, first.gameID);
+        Assertions.assertSame(first, games.getGame(firstID));
+        Assertions.assertNull(games.getGame(secondID + 1));
+        Assertions.assertEquals(2, games.listGames().size());
+
+        GameData joined = game("first");
+        joined.gameID = firstID;
+        joined.whiteUsername = "alice";
+        games.updateGame(joined);
+        Assertions.assertEquals("alice", games.getGame(firstID).whiteUsername);
+
+        GameData missing = game("missing");
+        missing.gameID = secondID + 1;
+        Assertions.assertThrows(DataAccessException.class, () -> games.updateGame(missing));
+        Assertions.assertNull(games.getGame(secondID + 1), "Updating a missing game created it");
+
+        games.clear();
+        Assertions.assertTrue(games.listGames().isEmpty());
+        Assertions.assertTrue(games.createGame(game("third")) > secondID, "IDs were reused after clear");
+    }
+
+    @Test
+    @DisplayName("Int Map Growth And Removal")
+    public void intMap() {
+        ConcurrentIntMap<String> map = new ConcurrentIntMap<>();
+        for (int key = 1; key <= 10000; key++) {
+            Assertions.assertNull(map.put(key, "v" + key));
+        }
+        Assertions.assertEquals(10000, map.size());
+        for (int key = 1; key <= 10000; key += 2) {
+            Assertions.assertEquals("v" + key, map.remove(key));
+        }
+        Assertions.assertEquals(5000, map.size());
+        Assertions.assertNull(map.remove(1));
+        Assertions.assertNull(map.replace(1, "again"), "replace() added a removed key");
+        Assertions.assertNull(map.get(1));
+
+        // Removed keys can come back, and adding more after lots of removals still works
+        Assertions.assertNull(map.put(1, "back"));
+        for (int key = 10001; key <= 20000; key++) {
+            map.put(key, "v" + key);
+        }
+        Assertions.assertEquals("back", map.get(1));
+        Assertions.assertNull(map.get(3));
+        for (int key = 2; key <= 20000; key++) {
+            Assertions.assertEquals(key % 2 == 1 && key <= 10000 ? null : "v" + key, map.get(key));
+        }
+        Assertions.assertEquals(15001, map.values().size());
+        Assertions.assertEquals("v2", map.replace(2, "two"));
+        Assertions.assertEquals("two", map.get(2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(0, "zero"));
+
+        map.clear();
+        Assertions.assertEquals(0, map.size());
+        Assertions.assertNull(map.get(2));
+    }
+
+    @Test
+    @DisplayName("Reads During Writes")
+    public void concurrentReads() throws Exception {
+        // Readers keep looking up games that already exist while a writer adds
+        // enough new ones to grow every segment several times
+        MemoryGameDAO games = new MemoryGameDAO();
+        List<Integer> existing = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            existing.add(games.createGame(game("game " + i)));
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(pool.submit(() -> {
+                    int misses = 0;
+                    do {
+                        for (int gameID : existing) {
+                            GameData game = games.getGame(gameID);
+                            if (game == null || game.gameID != gameID) {
+                                misses++;
+                            }
+                        }
+                    } while (writing.get());
+                    return misses;
+                }));
+            }
+            Set<Integer> created = new HashSet<>();
+            for (int i = 0; i < 50000; i++) {
+                created.add(games.createGame(game("new " + i)));
+            }
+            writing.set(false);
+            for (Future<Integer> reader : readers) {
+                Assertions.assertEquals(0, reader.get(), "A reader missed a game");
+            }
+            Assertions.assertEquals(50000, created.size());
+            Assertions.assertEquals(50100, games.listGames().size());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.PackedMove;
+import chess.PositionCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MoveJournalTests {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    // Every batch the journal wrote, in order
+    private final List<List<MoveJournal.Entry>> batches = new ArrayList<>();
+    private final CountDownLatch firstBatch = new CountDownLatch(1);
+    private int failuresLeft;
+    private MoveJournal journal;
+
+    private MoveJournal journal(long flushMillis, int maxPendingMoves) {
+        journal = new MoveJournal(batch -> {
+            synchronized (batches) {
+                if (failuresLeft > 0) {
+                    failuresLeft--;
+                    throw new DataAccessException("Database is down");
+                }
+                batches.add(batch);
+            }
+            firstBatch.countDown();
+        }, flushMillis, maxPendingMoves);
+        return journal;
+    }
+
+    @AfterEach
+    public void closeJournal() throws DataAccessException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(new ChessPosition(from.charAt(1) - '0', from.charAt(0) - 'a' + 1),
+                new ChessPosition(to.charAt(1) - '0', to.charAt(0) - 'a' + 1), null);
+    }
+
+    // Makes the moves in game and records each one in the journal
+    private void play(int gameID, ChessGame game, String... moves) throws InvalidMoveException {
+        for (String move : moves) {
+            ChessMove parsed = move(move.substring(0, 2), move.substring(2));
+            game.makeMove(parsed);
+            journal.recordMove(gameID, game, parsed);
+        }
+    }
+
+    private static List<ChessMove> decodeMoves(byte[] moves) {
+        List<ChessMove> decoded = new ArrayList<>();
+        for (int move : MoveJournal.decodeMoves(moves)) {
+            decoded.add(PackedMove.toChessMove(move));
+        }
+        return decoded;
+    }
+
+    @Test
+    @DisplayName("One Row Per Game Per Flush")
+    public void coalesces() throws Exception {
+        journal(NEVER, 1000);
+        ChessGame first = new ChessGame();
+        ChessGame second = new ChessGame();
+        play(1, first, "e2e4", "e7e5", "g1f3", "b8c6", "f1b5");
+        play(2, second, "d2d4", "d7d5", "c2c4");
+        Assertions.assertTrue(batches.isEmpty(), "Moves were written before a flush");
+        Assertions.assertEquals(8, journal.metrics().pending());
+
+        journal.flush();
+        Assertions.assertEquals(1, batches.size());
+        List<MoveJournal.Entry> batch = batches.getFirst();
+        Assertions.assertEquals(2, batch.size());
+        MoveJournal.Entry firstEntry = batch.stream().filter(e -> e.gameID() == 1).findFirst().orElseThrow();
+        Assertions.assertEquals(5, firstEntry.moveCount());
+        Assertions.assertEquals(List.of(move("e2", "e4"), move("e7", "e5"), move("g1", "f3"), move("b8", "c6"),
+                move("f1", "b5")), decodeMoves(firstEntry.moves()));
+        Assertions.assertArrayEquals(PositionCodec.encode(first), firstEntry.position(),
+                "Entry doesn't hold the latest position");
+
+        MoveJournal.Metrics metrics = journal.metrics();
+        Assertions.assertEquals(8, metrics.recorded());
+        Assertions.assertEquals(8, metrics.written());
+        Assertions.assertEquals(2, metrics.rows());
+        Assertions.assertEquals(0, metrics.pending());
+
+        // Nothing new, nothing written
+        journal.flush();
+        Assertions.assertEquals(1, batches.size());
+    }
+
+    @Test
+    @DisplayName("Flush On Interval")
+    public void interval() throws Exception {
+        journal(20, 1000);
+        play(1, new ChessGame(), "e2e4");
+        Assertions.assertTrue(firstBatch.await(5, TimeUnit.SECONDS), "No flush after the interval");
+    }
+
+    @Test
+    @DisplayName("Flush On Size")
+    public void size() throws Exception {
+        journal(NEVER, 4);
+        ChessGame game = new ChessGame();
+        play(1, game, "e2e4", "e7e5", "g1f3");
+        play(2, new ChessGame(), "d2d4");
+        Assertions.assertTrue(firstBatch.await(5, TimeUnit.SECONDS), "No flush after reaching the size");
+        synchronized (batches) {
+            Assertions.assertEquals(4, batches.getFirst().stream().mapToInt(MoveJournal.Entry::moveCount).sum());
+        }
+    }
+
+    @Test
+    @DisplayName("Game End Writes Immediately")
+    public void endGame() throws Exception {
+        journal(NEVER, 1000);
+        play(1, new ChessGame(), "f2f3", "e7e5", "g2g4", "d8h4");
+        play(2, new ChessGame(), "e2e4");
+        journal.endGame(1);
+        Assertions.assertEquals(1, batches.size());
+        Assertions.assertEquals(1, batches.getFirst().size());
+        Assertions.assertEquals(1, batches.getFirst().getFirst().gameID());
+        Assertions.assertEquals(1, journal.metrics().pending(), "The other game was written too");
+        journal.endGame(3);
+        Assertions.assertEquals(1, batches.size());
+    }
+
+    @Test
+    @DisplayName("Failed Writes Are Retried In Order")
+    public void failedWrite() throws Exception {
+        journal(NEVER, 1000);
+        ChessGame game = new ChessGame();
+        play(1, game, "e2e4", "e7e5");
+        failuresLeft = 1;
+        Assertions.assertThrows(DataAccessException.class, journal::flush);
+        Assertions.assertEquals(2, journal.metrics().pending());
+        Assertions.assertEquals(1, journal.metrics().failures());
+
+        play(1, game, "g1f3");
+        journal.flush();
+        MoveJournal.Entry entry = batches.getFirst().getFirst();
+        Assertions.assertEquals(List.of(move("e2", "e4"), move("e7", "e5"), move("g1", "f3")),
+                decodeMoves(entry.moves()));
+        Assertions.assertArrayEquals(PositionCodec.encode(game), entry.position());
+    }
+
+    @Test
+    @DisplayName("A Bad Row Doesn't Hold Up The Others")
+    public void poisonedRow() throws Exception {
+        List<MoveJournal.Entry> written = new ArrayList<>();
+        journal = new MoveJournal(batch -> {
+            if (batch.stream().anyMatch(entry -> entry.gameID() == 2)) {
+                throw new DataAccessException("Data too long for column 'moves'");
+            }
+            written.addAll(batch);
+        }, NEVER, 1000);
+        ChessGame good = new ChessGame();
+        ChessGame bad = new ChessGame();
+        ChessMove move = move("e2", "e4");
+        good.makeMove(move);
+        bad.makeMove(move);
+        for (int i = 0; i < MoveJournal.MAX_FAILURES; i++) {
+            journal.recordMove(1, good, move);
+            journal.recordMove(2, bad, move);
+            Assertions.assertThrows(DataAccessException.class, journal::flush);
+            Assertions.assertEquals(i + 1, written.size(), "The good game wasn't written");
+        }
+        MoveJournal.Metrics metrics = journal.metrics();
+        Assertions.assertEquals(MoveJournal.MAX_FAILURES, metrics.written());
+        Assertions.assertEquals(MoveJournal.MAX_FAILURES, metrics.dropped(), "The bad game was never given up on");
+        Assertions.assertEquals(0, metrics.pending());
+
+        // With the database down nothing is given up on
+        journal.close();
+        failuresLeft = Integer.MAX_VALUE;
+        journal(NEVER, 1000);
+        journal.recordMove(1, good, move);
+        journal.recordMove(2, bad, move);
+        for (int i = 0; i < MoveJournal.MAX_FAILURES; i++) {
+            Assertions.assertThrows(DataAccessException.class, journal::flush);
+        }
+        Assertions.assertEquals(0, journal.metrics().dropped());
+        Assertions.assertEquals(2, journal.metrics().pending());
+        failuresLeft = 0;
+        journal.flush();
+        Assertions.assertEquals(2, journal.metrics().written());
+    }
+
+    @Test
+    @DisplayName("Flushing One Game Doesn't Wait On Others")
+    public void flushOneGame() throws Exception {
+        CountDownLatch writingFirst = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> written = new ArrayList<>();
+        journal = new MoveJournal(batch -> {
+            if (batch.getFirst().gameID() == 1) {
+                writingFirst.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (written) {
+                batch.forEach(entry -> written.add(entry.gameID()));
+            }
+        }, NEVER, 1000);
+        play(1, new ChessGame(), "e2e4");
+        Thread slow = new Thread(() -> {
+            try {
+                journal.flush(1);
+            }
+            catch (DataAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        slow.start();
+        Assertions.assertTrue(writingFirst.await(5, TimeUnit.SECONDS));
+        play(2, new ChessGame(), "d2d4");
+        try {
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> journal.flush(2));
+            synchronized (written) {
+                Assertions.assertEquals(List.of(2), written);
+            }
+        }
+        finally {
+            release.countDown();
+            slow.join();
+        }
+        Assertions.assertEquals(List.of(2, 1), written);
+    }
+
+    @Test
+    @DisplayName("Close Writes Everything")
+    public void close() throws Exception {
+        MoveJournal closing = journal(NEVER, 1000);
+        journal = null;
+        ChessGame game = new ChessGame();
+        ChessMove move = move("e2", "e4");
+        game.makeMove(move);
+        closing.recordMove(7, game, move);
+        closing.close();
+        Assertions.assertEquals(1, batches.size());
+        Assertions.assertArrayEquals(PositionCodec.encode(game), batches.getFirst().getFirst().position());
+        Assertions.assertThrows(IllegalStateException.class, () -> closing.recordMove(7, game, move));
+    }
+
+    @Test
+    @DisplayName("Moves Recorded While Closing Are Written")
+    public void closeRace() throws Exception {
+        MoveJournal closing = journal(NEVER, 1000);
+        journal = null;
+        ChessGame game = new ChessGame();
+        ChessMove move = move("e2", "e4");
+        game.makeMove(move);
+        int players = 4;
+        int[] recorded = new int[players];
+        CountDownLatch started = new CountDownLatch(players);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            int player = i;
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                try {
+                    while (true) {
+                        // Only reads the game, so sharing it between threads is fine here
+                        closing.recordMove(player, game, move);
+                        recorded[player]++;
+                    }
+                }
+                catch (IllegalStateException e) {
+                    // Closed
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        started.await();
+        Thread.sleep(20);
+        closing.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        int written = 0;
+        for (List<MoveJournal.Entry> batch : batches) {
+            written += batch.stream().mapToInt(MoveJournal.Entry::moveCount).sum();
+        }
+        Assertions.assertEquals(Arrays.stream(recorded).sum(), written, "Moves recorded before close were lost");
+        Assertions.assertEquals(0, closing.metrics().pending());
+    }
+
+    @Test
+    @DisplayName("Stored History Replays After A Reload")
+    public void historyRoundTrip() throws Exception {
+        journal(NEVER, 1000);
+        ChessGame game = new ChessGame();
+        byte[] start = game.getStartPosition();
+        // En passant (e5xd6), castling (O-O), then knights shuffling back to a position
+        // seen before
+        play(1, game, "e2e4", "a7a6", "e4e5", "d7d5", "e5d6", "c7d6", "g1f3", "b8c6", "f1c4", "g8f6", "e1g1");
+        journal.flush();
+        play(1, game, "f6g8", "f3e1", "g8f6", "e1f3");
+        journal.flush();
+
+        // What the moves column holds: every flush's moves added to the end
+        ByteArrayOutputStream moves = new ByteArrayOutputStream();
+        byte[] position = null;
+        for (List<MoveJournal.Entry> batch : batches) {
+            moves.write(batch.getFirst().moves());
+            position = batch.getFirst().position();
+        }
+        ChessGame reloaded = SqlGameDAO.decodeGame(position, start, moves.toByteArray());
+        Assertions.assertEquals(game, reloaded);
+        Assertions.assertEquals(game.toFen(), reloaded.toFen());
+        Assertions.assertEquals(game.getMoveHistory(), reloaded.getMoveHistory());
+        Assertions.assertEquals(game.toPgn(), reloaded.toPgn());
+        // The rook came across, and the pawn taken en passant is gone
+        Assertions.assertEquals("r1bqkb1r/1p2pppp/p1np1n2/8/2B5/5N2/PPPP1PPP/RNBQ1RK1 b kq - 9 8", reloaded.toFen());
+
+        // One more shuffle makes threefold repetition, counting positions from before the reload
+        for (String move : List.of("f6g8", "f3e1", "g8f6", "e1f3")) {
+            reloaded.makeMove(move(move.substring(0, 2), move.substring(2)));
+        }
+        Assertions.assertTrue(reloaded.isThreefoldRepetition());
+
+        // A history that doesn't lead to the stored position is ignored
+        byte[] partial = Arrays.copyOf(moves.toByteArray(), 6);
+        ChessGame positionOnly = SqlGameDAO.decodeGame(position, start, partial);
+        Assertions.assertEquals(game.toFen(), positionOnly.toFen());
+        Assertions.assertEquals(0, positionOnly.getHistorySize());
+    }
+
+    @Test
+    @DisplayName("Only The Game's Last Move Is Recorded")
+    public void wrongMove() throws Exception {
+        journal(NEVER, 1000);
+        ChessGame game = new ChessGame();
+        game.makeMove(move("e2", "e4"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> journal.recordMove(1, game, move("d2", "d4")));
+    }
+}
@@ -0,0 +1,132 @@
+package chess;
+
+/**
+ * Static helpers for the bitboard representation used inside ChessBoard.
+ * <p>
+ * Squares are numbered 0-63 starting at row 1, column 1 (a1) and going across
+ * each row before moving up, so square = (row - 1) * 8 + (column - 1).
+ * Bit n of a long is set when square n is part of the set.
+ */
+final class Bitboards {
+
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_8 = RANK_1 << 56;
+    // a1 is dark, so the light squares are the ones where row + column is odd
+    static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+    // Step attacks don't depend on anything else on the board, so build them once.
+    static final long[] KNIGHT_ATTACKS = new long[64];
+    static final long[] KING_ATTACKS = new long[64];
+    // Indexed by TeamColor.ordinal(), then square
+    static final long[][] PAWN_ATTACKS = new long[2][64];
+    // For two squares on the same row, column or diagonal: the squares strictly between
+    // them, and the whole line through both of them (edge to edge). Zero otherwise.
+    static final long[][] BETWEEN = new long[64][64];
+    static final long[][] LINE = new long[64][64];
+
+    static {
+        int[][] knightSteps = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+        int[][] kingSteps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+        for (int sq = 0; sq < 64; sq++) {
+            int row = row(sq);
+            int col = column(sq);
+            KNIGHT_ATTACKS[sq] = stepTargets(row, col, knightSteps);
+            KING_ATTACKS[sq] = stepTargets(row, col, kingSteps);
+            PAWN_ATTACKS[ChessGame.TeamColor.WHITE.ordinal()][sq] = stepTargets(row, col, new int[][]{{1, 1}, {1, -1}});
+            PAWN_ATTACKS[ChessGame.TeamColor.BLACK.ordinal()][sq] = stepTargets(row, col, new int[][]{{-1, 1}, {-1, -1}});
+        }
+
+        for (int from = 0; from < 64; from++) {
+            for (int[] step : kingSteps) {
+                // The full line in this direction and its opposite
+                long line = bit(from) | ray(from, step[0], step[1]) | ray(from, -step[0], -step[1]);
+                long between = 0;
+                int row = row(from) + step[0];
+                int col = column(from) + step[1];
+                while (onBoard(row, col)) {
+                    int to = square(row, col);
+                    BETWEEN[from][to] = between;
+                    LINE[from][to] = line;
+                    between |= bit(to);
+                    row += step[0];
+                    col += step[1];
+                }
+            }
+        }
+    }
+
+    // Every square from a starting square (not included) to the edge in one direction
+    private static long ray(int from, int rowStep, int colStep) {
+        long ray = 0;
+        int row = row(from) + rowStep;
+        int col = column(from) + colStep;
+        while (onBoard(row, col)) {
+            ray |= bit(square(row, col));
+            row += rowStep;
+            col += colStep;
+        }
+        return ray;
+    }
+
+    private Bitboards() {
+    }
+
+    private static long stepTargets(int row, int col, int[][] steps) {
+        long targets = 0;
+        for (int[] step : steps) {
+            if (onBoard(row + step[0], col + step[1])) {
+                targets |= bit(square(row + step[0], col + step[1]));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * @return true if the 1-based row and column are on the board
+     */
+    static boolean onBoard(int row, int col) {
+        return row >= 1 && row <= 8 && col >= 1 && col <= 8;
+    }
+
+    /**
+     * @return square index for a 1-based row and column
+     */
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    /**
+     * @return square index for a position
+     */
+    static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    /**
+     * @return 1-based row of a square index
+     */
+    static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    /**
+     * @return 1-based column of a square index
+     */
+    static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Index into ChessBoard's twelve piece sets: white pieces are 0-5, black are 6-11,
+     * in PieceType order.
+     */
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+}
@@ -0,0 +1,112 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Tables for castling. The rights are kept as a 4-bit mask, so checking or updating
+ * them after a move is a single AND with a per-square table entry.
+ */
+final class Castling {
+
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+    static final int ALL = 15;
+
+    // Rights that survive a move to or from each square: moving the king or a rook
+    // (or capturing a rook on its home square) loses the rights that depend on it.
+    static final int[] KEEP = new int[64];
+
+    // Indexed by bit position in the rights mask (0 = white kingside ... 3 = black queenside)
+    static final int[] KING_FROM = new int[4];
+    static final int[] KING_TO = new int[4];
+    static final int[] ROOK_FROM = new int[4];
+    static final int[] ROOK_TO = new int[4];
+    // Squares that have to be empty, and squares the king crosses that can't be attacked
+    static final long[] EMPTY = new long[4];
+    static final long[] SAFE = new long[4];
+
+    // Rook's start and end square for a castle, indexed by where the king ends up
+    static final int[] ROOK_FROM_FOR_KING_TO = new int[64];
+    static final int[] ROOK_TO_FOR_KING_TO = new int[64];
+
+    private static final char[] FEN_LETTERS = {'K', 'Q', 'k', 'q'};
+
+    static {
+        Arrays.fill(KEEP, ALL);
+        for (int i = 0; i < 4; i++) {
+            int row = i < 2 ? 1 : 8;
+            boolean kingside = i % 2 == 0;
+            KING_FROM[i] = Bitboards.square(row, 5);
+            KING_TO[i] = Bitboards.square(row, kingside ? 7 : 3);
+            ROOK_FROM[i] = Bitboards.square(row, kingside ? 8 : 1);
+            ROOK_TO[i] = Bitboards.square(row, kingside ? 6 : 4);
+            EMPTY[i] = Bitboards.BETWEEN[KING_FROM[i]][ROOK_FROM[i]];
+            SAFE[i] = Bitboards.BETWEEN[KING_FROM[i]][KING_TO[i]] | Bitboards.bit(KING_TO[i]);
+
+            KEEP[ROOK_FROM[i]] &= ~(1 << i);
+            KEEP[KING_FROM[i]] &= ~(1 << i);
+            ROOK_FROM_FOR_KING_TO[KING_TO[i]] = ROOK_FROM[i];
+            ROOK_TO_FOR_KING_TO[KING_TO[i]] = ROOK_TO[i];
+        }
+    }
+
+    private Castling() {
+    }
+
+    /**
+     * @return the two rights (kingside and queenside) that belong to a team
+     */
+    static int rightsOf(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? WHITE_KINGSIDE | WHITE_QUEENSIDE : BLACK_KINGSIDE | BLACK_QUEENSIDE;
+    }
+
+    /**
+     * Best guess at the rights for a board set up without a history: every king and
+     * rook still on its home square is assumed never to have moved.
+     */
+    static int fromBoard(ChessBoard board) {
+        int rights = 0;
+        for (int i = 0; i < 4; i++) {
+            ChessGame.TeamColor color = i < 2 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            if (board.pieceAt(KING_FROM[i]) == ChessPiece.of(color, ChessPiece.PieceType.KING)
+                    && board.pieceAt(ROOK_FROM[i]) == ChessPiece.of(color, ChessPiece.PieceType.ROOK)) {
+                rights |= 1 << i;
+            }
+        }
+        return rights;
+    }
+
+    /**
+     * @return the rights as a FEN castling field, e.g. "KQkq" or "-"
+     */
+    static String toFen(int rights) {
+        StringBuilder fen = new StringBuilder(4);
+        for (int i = 0; i < 4; i++) {
+            if ((rights & (1 << i)) != 0) {
+                fen.append(FEN_LETTERS[i]);
+            }
+        }
+        return fen.isEmpty() ? "-" : fen.toString();
+    }
+
+    /**
+     * @return the rights in a FEN castling field
+     * @throws IllegalArgumentException if the field has anything but "KQkq" letters or "-"
+     */
+    static int parseFen(String field) {
+        if (field.equals("-")) {
+            return 0;
+        }
+        int rights = 0;
+        for (char c : field.toCharArray()) {
+            int i = new String(FEN_LETTERS).indexOf(c);
+            if (i < 0) {
+                throw new IllegalArgumentException(String.format("Bad castling rights in FEN: %s", field));
+            }
+            rights |= 1 << i;
+        }
+        return rights;
+    }
+}
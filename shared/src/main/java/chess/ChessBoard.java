@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
@@ -11,11 +10,59 @@ import java.util.Objects;
  */
 public class ChessBoard {
 
-    ChessPiece[][] squares = new ChessPiece[8][8];
+    // Bitboard engine: one long per piece (color/type pair), indexed by Bitboards.pieceIndex.
+    // The occupancy masks are kept in sync so the calculators never have to look at pieces.
+    final long[] pieceSets = new long[12];
+    final long[] colorOccupancy = new long[2];
+    long occupied;
+    // Still keep which piece sits on each square (index = Bitboards.square) so getPiece
+    // doesn't have to search all twelve sets.
+    final ChessPiece[] squares = new ChessPiece[64];
+    // Zobrist key of the pieces, updated every time one is put down or picked up
+    long zobristKey;
+    // Middlegame and endgame material + piece-square scores (white's side) and the game
+    // phase, also updated piece by piece so the engine never has to rescan the board
+    int middlegameScore;
+    int endgameScore;
+    int phase;
 
     public ChessBoard() {
     }
 
+    /**
+     * Copies another board. Pieces are immutable, so copying the references is enough.
+     *
+     * @param other board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        System.arraycopy(other.pieceSets, 0, pieceSets, 0, pieceSets.length);
+        System.arraycopy(other.colorOccupancy, 0, colorOccupancy, 0, colorOccupancy.length);
+        occupied = other.occupied;
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        zobristKey = other.zobristKey;
+        middlegameScore = other.middlegameScore;
+        endgameScore = other.endgameScore;
+        phase = other.phase;
+    }
+
+    /**
+     * Builds a board from the piece placement field of a FEN string.
+     *
+     * @param placement piece placement, e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR"
+     * @return a board with those pieces on it
+     * @throws IllegalArgumentException if the placement is malformed
+     */
+    public static ChessBoard fromFen(String placement) {
+        return Fen.parseBoard(placement);
+    }
+
+    /**
+     * @return the pieces on this board as a FEN piece placement field
+     */
+    public String toFen() {
+        return Fen.boardToFen(this);
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -23,7 +70,12 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow() - 1][position.getColumn() - 1] = piece;
+        int square = Bitboards.square(position);
+        removePiece(square);
+        if (piece != null) {
+            // Keep the shared instance rather than holding on to the caller's object
+            putPiece(square, ChessPiece.of(piece.getTeamColor(), piece.getPieceType()));
+        }
     }
 
     /**
@@ -34,7 +86,183 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        return squares[position.getRow() - 1][position.getColumn() - 1];
+        return squares[Bitboards.square(position)];
+    }
+
+    /**
+     * Fast path for the calculators and the engine: piece on a square index (see
+     * PackedMove), or null.
+     */
+    public ChessPiece pieceAt(int square) {
+        return squares[square];
+    }
+
+    /**
+     * Puts a piece on an empty square and updates the bitboards.
+     */
+    void putPiece(int square, ChessPiece piece) {
+        long bit = Bitboards.bit(square);
+        int index = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+        pieceSets[index] |= bit;
+        colorOccupancy[piece.getTeamColor().ordinal()] |= bit;
+        occupied |= bit;
+        squares[square] = piece;
+        zobristKey ^= Zobrist.PIECE_SQUARE[index][square];
+        middlegameScore += PieceSquareTables.MIDDLEGAME[index][square];
+        endgameScore += PieceSquareTables.ENDGAME[index][square];
+        phase += PieceSquareTables.PHASE[index];
+    }
+
+    /**
+     * Takes whatever piece is on a square off the board.
+     *
+     * @return the piece that was removed, or null if the square was empty
+     */
+    ChessPiece removePiece(int square) {
+        ChessPiece piece = squares[square];
+        if (piece != null) {
+            long bit = Bitboards.bit(square);
+            int index = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+            pieceSets[index] &= ~bit;
+            colorOccupancy[piece.getTeamColor().ordinal()] &= ~bit;
+            occupied &= ~bit;
+            squares[square] = null;
+            zobristKey ^= Zobrist.PIECE_SQUARE[index][square];
+            middlegameScore -= PieceSquareTables.MIDDLEGAME[index][square];
+            endgameScore -= PieceSquareTables.ENDGAME[index][square];
+            phase -= PieceSquareTables.PHASE[index];
+        }
+        return piece;
+    }
+
+    /**
+     * 64-bit Zobrist key of the pieces on the board. Kept up to date as pieces are added,
+     * moved and removed, so reading it costs nothing. Equal boards always have equal keys.
+     *
+     * @return the board's key
+     */
+    public long zobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Material and piece-square score, blended between middlegame and endgame values by
+     * the material left (see PieceSquareTables). Like the Zobrist key it is kept up to
+     * date as pieces move, so reading it costs the same however many pieces there are.
+     *
+     * @return score from white's point of view, in centipawns
+     */
+    public int pieceSquareScore() {
+        return PieceSquareTables.taper(middlegameScore, endgameScore, phase);
+    }
+
+    /**
+     * @return set of squares holding this color's pieces of this type
+     */
+    public long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceSets[Bitboards.pieceIndex(color, type)];
+    }
+
+    /**
+     * @return set of squares holding any of this color's pieces
+     */
+    public long occupancy(ChessGame.TeamColor color) {
+        return colorOccupancy[color.ordinal()];
+    }
+
+    /**
+     * @return set of squares holding any piece
+     */
+    long occupancy() {
+        return occupied;
+    }
+
+    /**
+     * @return square index of this color's king, or -1 if it has none
+     */
+    int kingSquare(ChessGame.TeamColor color) {
+        long king = pieces(color, ChessPiece.PieceType.KING);
+        return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * Looks outward from a square for anything of the attacking color that hits it:
+     * pawns and knights and kings from their step tables, then sliders along the
+     * rook and bishop lines. Stops at the first attacker found.
+     *
+     * @param square   square index to test
+     * @param attacker color of the pieces that might be attacking it
+     * @return true if some piece of the attacking color attacks the square
+     */
+    boolean isAttacked(int square, ChessGame.TeamColor attacker) {
+        // A pawn attacks this square from wherever a defending pawn here would attack.
+        int defender = 1 - attacker.ordinal();
+        if ((Bitboards.PAWN_ATTACKS[defender][square] & pieces(attacker, ChessPiece.PieceType.PAWN)) != 0) {
+            return true;
+        }
+        if ((Bitboards.KNIGHT_ATTACKS[square] & pieces(attacker, ChessPiece.PieceType.KNIGHT)) != 0) {
+            return true;
+        }
+        if ((Bitboards.KING_ATTACKS[square] & pieces(attacker, ChessPiece.PieceType.KING)) != 0) {
+            return true;
+        }
+        long queens = pieces(attacker, ChessPiece.PieceType.QUEEN);
+        long diagonal = queens | pieces(attacker, ChessPiece.PieceType.BISHOP);
+        if ((SlidingAttacks.bishopAttacks(square, occupied) & diagonal) != 0) {
+            return true;
+        }
+        long straight = queens | pieces(attacker, ChessPiece.PieceType.ROOK);
+        return (SlidingAttacks.rookAttacks(square, occupied) & straight) != 0;
+    }
+
+    /**
+     * Like isAttacked, but collects every attacker instead of stopping at the first one.
+     *
+     * @param square    square index to test
+     * @param attacker  color of the pieces that might be attacking it
+     * @param occupancy pieces that block sliders
+     * @return set of squares holding pieces that attack the square
+     */
+    long attackersTo(int square, ChessGame.TeamColor attacker, long occupancy) {
+        int defender = 1 - attacker.ordinal();
+        long queens = pieces(attacker, ChessPiece.PieceType.QUEEN);
+        return (Bitboards.PAWN_ATTACKS[defender][square] & pieces(attacker, ChessPiece.PieceType.PAWN))
+                | (Bitboards.KNIGHT_ATTACKS[square] & pieces(attacker, ChessPiece.PieceType.KNIGHT))
+                | (Bitboards.KING_ATTACKS[square] & pieces(attacker, ChessPiece.PieceType.KING))
+                | (SlidingAttacks.bishopAttacks(square, occupancy)
+                        & (queens | pieces(attacker, ChessPiece.PieceType.BISHOP)))
+                | (SlidingAttacks.rookAttacks(square, occupancy)
+                        & (queens | pieces(attacker, ChessPiece.PieceType.ROOK)));
+    }
+
+    /**
+     * Every square the attacking color hits, as one bitmap. Sliders look straight through
+     * the other color's king, so the map also tells that king which squares it can't step to.
+     *
+     * @param attacker color whose attacks to collect
+     * @return set of attacked squares
+     */
+    long attackedSquares(ChessGame.TeamColor attacker) {
+        int color = attacker.ordinal();
+        long occupancy = occupied & ~pieceSets[Bitboards.pieceIndex(
+                attacker == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE,
+                ChessPiece.PieceType.KING)];
+        long attacked = 0;
+
+        long pieces = colorOccupancy[color];
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            switch (squares[square].getPieceType()) {
+                case PAWN -> attacked |= Bitboards.PAWN_ATTACKS[color][square];
+                case KNIGHT -> attacked |= Bitboards.KNIGHT_ATTACKS[square];
+                case KING -> attacked |= Bitboards.KING_ATTACKS[square];
+                case BISHOP -> attacked |= SlidingAttacks.bishopAttacks(square, occupancy);
+                case ROOK -> attacked |= SlidingAttacks.rookAttacks(square, occupancy);
+                case QUEEN -> attacked |= SlidingAttacks.queenAttacks(square, occupancy);
+            }
+        }
+        return attacked;
     }
 
     /**
@@ -42,49 +270,34 @@ public class ChessBoard {
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
+        // Wipe everything first; a board in the middle of a game has pieces off the home rows.
+        Arrays.fill(pieceSets, 0L);
+        Arrays.fill(colorOccupancy, 0L);
+        occupied = 0L;
+        Arrays.fill(squares, null);
+        zobristKey = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+
         // Pawn rows
         for (int n = 1; n <= 8; n++) {
             // Black row of pawns
-            squares[7-1][n-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN);
+            putPiece(Bitboards.square(7, n), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
             // White row of pawns
-            squares[2-1][n-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+            putPiece(Bitboards.square(2, n), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
         }
 
-        // Hm...for rooks, knights, and bishops, it's two along one row and two along another row.
-        // Could I do something with modulo arithmetic to do that? Would it be any better than
-        // just four lines? Probably not. Would need to add a line for the TeamColor, etc.
-
-        // Rooks
-        // Black pair of rooks
-        squares[8-1][1-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK);
-        squares[8-1][8-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK);
-        // White pair of rooks
-        squares[1-1][1-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK);
-        squares[1-1][8-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK);
-
-        // Bishops
-        // Black pair of bishops
-        squares[8-1][3-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP);
-        squares[8-1][6-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP);
-        // White pair of bishops
-        squares[1-1][3-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP);
-        squares[1-1][6-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP);
-
-        // Knights
-        // Black pair of knights
-        squares[8-1][2-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
-        squares[8-1][7-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
-        // White pair of knights
-        squares[1-1][2-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT);
-        squares[1-1][7-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT);
-
-        // Kings/Queens
-        // Black king/queen
-        squares[8-1][5-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING);
-        squares[8-1][4-1] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN);
-        // White king/queen
-        squares[1-1][5-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING);
-        squares[1-1][4-1] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN);
+        // The back rows are mirror images, so do both colors with the same piece order.
+        ChessPiece.PieceType[] backRow = {
+                ChessPiece.PieceType.ROOK, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+                ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING,
+                ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK
+        };
+        for (int n = 1; n <= 8; n++) {
+            putPiece(Bitboards.square(8, n), ChessPiece.of(ChessGame.TeamColor.BLACK, backRow[n - 1]));
+            putPiece(Bitboards.square(1, n), ChessPiece.of(ChessGame.TeamColor.WHITE, backRow[n - 1]));
+        }
     }
 
     @Override
@@ -93,32 +306,18 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(squares, that.squares);
+        // Different keys mean different boards, and that's the usual case, so check it first.
+        // Pieces are equal by color and type, so the twelve sets say everything about the board.
+        return zobristKey == that.zobristKey && Arrays.equals(pieceSets, that.pieceSets);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return Long.hashCode(zobristKey);
     }
 
     @Override
     protected Object clone() throws CloneNotSupportedException {
-        // Initialize board
-        ChessBoard returnedBoard = new ChessBoard();
-
-        for (int r = 1; r <= 8; r++){
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition addpos = new ChessPosition(r,c);
-                if (squares[r-1][c-1] != null) {
-                    returnedBoard.addPiece(addpos, squares[r - 1][c - 1].clone());
-
-//                    catch(CloneNotSupportedException err) {
-//                        returnedBoard.addPiece(addpos, null);
-//                    }
-                }
-            }
-        }
-
-        return returnedBoard;
+        return new ChessBoard(this);
     }
 }
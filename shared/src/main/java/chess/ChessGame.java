@@ -1,22 +1,109 @@
 package chess;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * For a class that can manage a chess game, making moves on a board
  * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
+ * <p>
+ * Not thread safe, not even for reads: validMoves and the other move queries share
+ * scratch buffers in the game, and some (tablebase probes, the engine's search) make
+ * moves on the board and take them back. A game shared between threads needs a lock
+ * around every use.
  */
 public class ChessGame {
 
 
     private TeamColor turn = TeamColor.WHITE;
     private ChessBoard board = new ChessBoard();
+    // Castling rights as a Castling mask, and the square a pawn could capture onto en
+    // passant (-1 if none). Only set when an enemy pawn is actually there to capture,
+    // so positions that can't differ don't get different keys.
+    private int castlingRights = Castling.ALL;
+    private int enPassantSquare = -1;
+    // Plies since the last capture or pawn move (for the fifty-move rule), and the
+    // FEN move number, which goes up after each black move
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+
+    // Undo stack for makeMove(int)/unmakeMove(). Entries are reused, so trying a move
+    // and taking it back doesn't allocate once the stack has grown deep enough.
+    private transient UndoEntry[] undoStack = new UndoEntry[0];
+    private transient int undoSize;
+    // Scratch buffer and generator for validMoves
+    private transient MoveList legalMoves = new MoveList();
+    private transient MoveGenerator moveGenerator = new MoveGenerator();
+    // Where this game started (in PositionCodec form) and every move made with
+    // makeMove(ChessMove) since, as packed moves, so any earlier ply can be rebuilt
+    private transient byte[] startPosition;
+    private transient int[] history = new int[16];
+    private transient int historySize;
+    // Keys of the positions reached so far, indexed by ply & KEY_RING_MASK. A repeat can
+    // only happen since the last capture or pawn move, so only the last halfmoveClock
+    // entries are ever scanned, and a ring this size covers the fifty-move window plus
+    // a deep search on top of it.
+    private static final int KEY_RING_SIZE = 256;
+    private static final int KEY_RING_MASK = KEY_RING_SIZE - 1;
+    private transient long[] keyRing = new long[KEY_RING_SIZE];
+    private transient int keyPly;
+    // Per-game trace logging, on top of whatever EngineLog's level is
+    private transient volatile boolean traceLogging;
 
     public ChessGame() {
         // Board won't set itself in its constructor...
         board.resetBoard();
+        startHistory();
+    }
+
+    ChessGame(TeamColor turn, ChessBoard board) {
+        // For clone() and Fen; skips resetting a board that would just get replaced
+        this.turn = turn;
+        this.board = board;
+        this.castlingRights = Castling.fromBoard(board);
+        startHistory();
+    }
+
+    /**
+     * Builds a game from a full FEN string.
+     *
+     * @param fen position to load
+     * @return a new game in that position
+     * @throws IllegalArgumentException if the string isn't valid FEN
+     */
+    public static ChessGame fromFen(String fen) {
+        return Fen.parse(fen);
+    }
+
+    /**
+     * @return this game's position as a FEN string
+     */
+    public String toFen() {
+        return Fen.toFen(this);
+    }
+
+    /**
+     * Appends every legal move for the team whose turn it is, encoded by PackedMove.
+     *
+     * @param moves buffer to append to
+     */
+    public void legalMoves(MoveList moves) {
+        moveGenerator.generateLegalMoves(board, turn, castlingRights, enPassantSquare, -1L, moves);
+    }
+
+    /**
+     * Everything unmakeMove needs to put the position back the way it was.
+     */
+    private static final class UndoEntry {
+        int move;
+        ChessPiece moved;
+        ChessPiece captured;
+        TeamColor turn;
+        int castlingRights;
+        int enPassantSquare;
+        int halfmoveClock;
     }
 
     /**
@@ -33,6 +120,9 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         turn = team;
+        // A different side to move is a different position; record from here
+        enPassantSquare = -1;
+        startHistory();
     }
 
     /**
@@ -45,6 +135,8 @@ public class ChessGame {
 
     /**
      * Gets a valid moves for a piece at the given location
+     * <p>
+     * Moves come straight from the legal move generator, so the board isn't touched.
      *
      * @param startPosition the piece to get valid moves for
      * @return Set of valid moves for requested piece, or null if no piece at
@@ -53,49 +145,157 @@ public class ChessGame {
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
         // Get piece and initialize stuff
         ChessPiece piece = getBoard().getPiece(startPosition);
+        if (piece == null) {
+            return null;
+        }
+
+        // The generator only produces legal moves, so there's nothing to remove afterward.
+        MoveList legal = legalMoves;
+        legal.clear();
+        // The generator only uses the castling rights of the piece's own team. En passant
+        // is only possible right after the double move, so only for the side to move.
         TeamColor color = piece.getTeamColor();
-        ArrayList<ChessMove> returnedMoves; // = (ArrayList<ChessMove>) piece.pieceMoves(board, startPosition);
-        if (piece != null) {
-            returnedMoves = (ArrayList<ChessMove>) piece.pieceMoves(board, startPosition);
+        moveGenerator.generateLegalMoves(board, color, castlingRights, color == turn ? enPassantSquare : -1,
+                Bitboards.bit(PackedMove.square(startPosition)), legal);
+
+        ArrayList<ChessMove> returnedMoves = legal.toChessMoves();
+        if (isTracing()) {
+            trace(() -> String.format("validMoves %s: %s", startPosition, returnedMoves));
         }
-        else {
-            return new ArrayList<ChessMove>();
-        }
-
-        // Remove invalid moves
-        // Loop through entire thing. Make every move.
-        // For EVERY SINGLE MOVE! create a copy of the board.
-        ChessMove move = null;
-        System.out.println(String.format("First move: %s",move));
-        boolean first = true;
-        boolean removeFirst = false;
-        for (Iterator<ChessMove> moves = returnedMoves.iterator(); moves.hasNext();) {
-            move = moves.next();
-
-            System.out.println(String.format("Pdebug l_74, vMoves/CG, current move: %s", move));
-            try {
-
-                ChessGame testGame = (ChessGame) clone();
-                testGame.setTeamTurn(color);
-                testGame.setBoard(testGame.makeMoveForced(testGame.board, move));
-                boolean checked = testGame.isInCheck(testGame.getTeamTurn());
-                if (checked) {
-                    //System.out.println("Print debugging, move results in check. Line 87, validMoves, ChessGame");
-                    //ChessMove tmpMove = moves.next();
-                    //System.out.println(String.format("Removing move %s",move));
-                    moves.remove();
-                }
-            }
-            catch (InvalidMoveException e) {
-                System.out.println("Invalid move in makeMoveForced...off board.");
-            }
-            catch (Exception e) {
-                System.out.println("Pdebug l_95, vMoves/CG. Cloning error?");
+        return returnedMoves;
+    }
+
+    /**
+     * Makes a packed move (see PackedMove) on the board in place and switches the turn.
+     * The move is not checked for legality. Whatever is needed to take it back is pushed
+     * on the undo stack, so every call should be paired with unmakeMove.
+     *
+     * @param move packed move to make
+     */
+    public void makeMove(int move) {
+        if (undoSize == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, Math.max(16, undoStack.length * 2));
+            for (int i = undoSize; i < undoStack.length; i++) {
+                undoStack[i] = new UndoEntry();
             }
+        }
+        UndoEntry undo = undoStack[undoSize++];
+        undo.move = move;
+        undo.moved = board.pieceAt(PackedMove.from(move));
+        undo.captured = board.pieceAt(capturedSquare(move));
+        undo.turn = turn;
+        undo.castlingRights = castlingRights;
+        undo.enPassantSquare = enPassantSquare;
+        undo.halfmoveClock = halfmoveClock;
+
+        applyMove(move);
+    }
 
+    /**
+     * Takes back the last move made with makeMove(int).
+     */
+    public void unmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to unmake");
         }
+        UndoEntry undo = undoStack[--undoSize];
+        int move = undo.move;
+        int to = PackedMove.to(move);
+        board.removePiece(to);
+        if (undo.captured != null) {
+            board.putPiece(capturedSquare(move), undo.captured);
+        }
+        board.putPiece(PackedMove.from(move), undo.moved);
+        if (PackedMove.hasFlags(move, PackedMove.CASTLE)) {
+            // Put the rook back in its corner
+            board.putPiece(Castling.ROOK_FROM_FOR_KING_TO[to], board.removePiece(Castling.ROOK_TO_FOR_KING_TO[to]));
+        }
+        turn = undo.turn;
+        castlingRights = undo.castlingRights;
+        enPassantSquare = undo.enPassantSquare;
+        halfmoveClock = undo.halfmoveClock;
+        if (turn == TeamColor.BLACK) {
+            fullmoveNumber--;
+        }
+        // The newer ring entry is simply overwritten by the next move
+        keyPly--;
+    }
 
-        return returnedMoves;
+    // Where a move's captured piece stands; only different from the end square for en passant
+    private static int capturedSquare(int move) {
+        int to = PackedMove.to(move);
+        if (!PackedMove.hasFlags(move, PackedMove.EN_PASSANT)) {
+            return to;
+        }
+        // The taken pawn is one row back from the end square, toward the mover
+        return PackedMove.from(move) < to ? to - 8 : to + 8;
+    }
+
+    // Moves the piece (promoting it if needed), updates castling and en passant,
+    // and hands the turn to the other side
+    private void applyMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece piece = board.removePiece(from);
+        ChessPiece captured = board.removePiece(capturedSquare(move));
+
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        if (promotion != null) {
+            piece = ChessPiece.of(piece.getTeamColor(), promotion);
+        }
+        board.putPiece(to, piece);
+        if (PackedMove.hasFlags(move, PackedMove.CASTLE)) {
+            // The rook jumps over to the king's other side
+            board.putPiece(Castling.ROOK_TO_FOR_KING_TO[to], board.removePiece(Castling.ROOK_FROM_FOR_KING_TO[to]));
+        }
+
+        // Moving a king or rook, or capturing a rook at home, loses those rights
+        castlingRights &= Castling.KEEP[from] & Castling.KEEP[to];
+        enPassantSquare = -1;
+        if (PackedMove.hasFlags(move, PackedMove.DOUBLE_PUSH)) {
+            setEnPassantSquare((from + to) / 2, piece.getTeamColor());
+        }
+
+        // Captures and pawn moves can't be undone, so no earlier position can come back
+        if (captured != null || piece.getPieceType() == ChessPiece.PieceType.PAWN || promotion != null) {
+            halfmoveClock = 0;
+        }
+        else {
+            halfmoveClock++;
+        }
+        if (piece.getTeamColor() == TeamColor.BLACK) {
+            fullmoveNumber++;
+        }
+
+        turn = other(piece.getTeamColor());
+        keyRing[++keyPly & KEY_RING_MASK] = positionKey();
+    }
+
+    // Sets the en-passant square behind a pawn that just moved two rows, but only if
+    // an enemy pawn could capture onto it
+    private void setEnPassantSquare(int square, TeamColor mover) {
+        // A mover's pawn on the square would attack exactly where the enemy's capturers stand
+        long capturers = Bitboards.PAWN_ATTACKS[mover.ordinal()][square]
+                & board.pieces(other(mover), ChessPiece.PieceType.PAWN);
+        enPassantSquare = capturers != 0 ? square : -1;
+    }
+
+    // Whether the board looks like the mover's pawn just went two rows past square: the
+    // square is on the right row and empty, the pawn is in front of it and the square it
+    // came from is empty. Loaded positions can claim anything, and en passant would
+    // otherwise take whatever stands in front of the square.
+    private boolean justDoublePushed(int square, TeamColor mover) {
+        int forward = mover == TeamColor.WHITE ? 8 : -8;
+        int row = mover == TeamColor.WHITE ? 3 : 6;
+        if (square >= 64 || Bitboards.row(square) != row) {
+            return false;
+        }
+        return board.pieceAt(square) == null && board.pieceAt(square - forward) == null
+                && ChessPiece.of(mover, ChessPiece.PieceType.PAWN).equals(board.pieceAt(square + forward));
+    }
+
+    private static TeamColor other(TeamColor color) {
+        return color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
     }
 
     /**
@@ -106,57 +306,133 @@ public class ChessGame {
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
         ChessPosition startPosition = move.getStartPosition();
-        ChessPosition endPosition = move.getEndPosition();
-        ChessPiece piece;
-        if (move.getPromotionPiece() == null)
-            piece = board.getPiece(startPosition);
-        else
-            piece = new ChessPiece(turn, move.getPromotionPiece());
+        ChessPiece piece = board.getPiece(startPosition);
 
-        if (piece == null)
+        if (piece == null) {
             throw new InvalidMoveException("No piece at start");
-        if (piece.getTeamColor() != turn)
+        }
+        if (piece.getTeamColor() != turn) {
             throw new InvalidMoveException("Not the piece's turn!");
-        Collection<ChessMove> validMoves;
-
-        // Add in the moves
-        validMoves = validMoves(startPosition);
+        }
 
-//        catch (InvalidMoveException e) {
-//            throw new InvalidMoveException("makeMove error: likely that board clone failed");
-//        }
+        // Check validity against the generated moves, which also carry the flags
+        int from = PackedMove.square(startPosition);
+        int requested = PackedMove.fromChessMove(move);
+        MoveList legal = legalMoves;
+        legal.clear();
+        moveGenerator.generateLegalMoves(board, turn, castlingRights, enPassantSquare, Bitboards.bit(from), legal);
+        for (int i = 0; i < legal.size(); i++) {
+            int packed = legal.get(i);
+            if (PackedMove.sameMove(packed, requested)) {
+                // Make the move; this also sets the new color for turn
+                applyMove(packed);
+                recordMove(packed);
+                if (isTracing()) {
+                    trace(() -> String.format("makeMove %s; %s to move", move, turn));
+                }
+                return;
+            }
+        }
+        throw new InvalidMoveException(String.format("Invalid move: %s",move));
+    }
 
-        // Check validity
-        boolean valid;
-        try {
-            valid = validMoves.contains(move);
+    private void recordMove(int move) {
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
         }
-        catch (Error e) {
-            System.out.println("uh oh. Line 133 print debugging ChessGame");
+        history[historySize++] = move;
+    }
+
+    // Forgets the recorded moves and starts recording again from the current position.
+    // The constructors call this, so it only reads fields, never overridable methods.
+    private void startHistory() {
+        startPosition = PositionCodec.encode(board, turn, castlingRights, enPassantSquare,
+                halfmoveClock, fullmoveNumber);
+        historySize = 0;
+        keyPly = 0;
+        keyRing[0] = key();
+    }
+
+    /**
+     * @return number of moves made with makeMove(ChessMove) since the game started
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * @return every move made with makeMove(ChessMove) since the game started, oldest first
+     */
+    public List<ChessMove> getMoveHistory() {
+        List<ChessMove> moves = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            moves.add(PackedMove.toChessMove(history[i]));
         }
-        if (validMoves.contains(move)) {
-            // Make the move
-            // Remove the piece that moves
-            board.addPiece(startPosition, null);
+        return Collections.unmodifiableList(moves);
+    }
 
-            // Replace the piece that's getting taken
-            // ...if not null at endPosition, maybe save the taken piece?
-            board.addPiece(endPosition,piece);
+    /**
+     * @return the moves made since the game started, in PackedMove form
+     */
+    public int[] getPackedHistory() {
+        return Arrays.copyOf(history, historySize);
+    }
+
+    /**
+     * @return the last move made with makeMove(ChessMove), in PackedMove form with its
+     * flags, or 0 if there hasn't been one
+     */
+    public int getLastPackedMove() {
+        return historySize == 0 ? 0 : history[historySize - 1];
+    }
 
-            // Set new color for turn
-            if (turn == TeamColor.WHITE)
-                turn = TeamColor.BLACK;
-            else
-                turn = TeamColor.WHITE;
+    /**
+     * @return the position the recorded moves start from, in PositionCodec form
+     */
+    public byte[] getStartPosition() {
+        return startPosition.clone();
+    }
+
+    /**
+     * Rebuilds the game as it was after the first ply moves. The moves were checked
+     * when they were first made, so they are replayed without generating anything.
+     *
+     * @param ply number of moves to replay, from 0 (the start) to getHistorySize()
+     * @return a new game at that point, with the history up to it
+     */
+    public ChessGame replay(int ply) {
+        if (ply < 0 || ply > historySize) {
+            throw new IllegalArgumentException(String.format("No ply %d in a game of %d moves", ply, historySize));
         }
-        else {
-            throw new InvalidMoveException(String.format("Invalid move: %s",move));
+        return fromHistory(startPosition, Arrays.copyOf(history, ply));
+    }
+
+    /**
+     * Rebuilds a game from a start position and its moves, e.g. an archived game.
+     *
+     * @param startPosition position the game started from, in PositionCodec form
+     * @param moves         packed moves made from there, oldest first
+     * @return a new game with those moves made and recorded
+     */
+    public static ChessGame fromHistory(byte[] startPosition, int[] moves) {
+        ChessGame game = PositionCodec.decode(startPosition);
+        for (int move : moves) {
+            game.applyMove(move);
+            game.recordMove(move);
         }
+        return game;
     }
 
     /**
-     * Makes a move, as long as the piece is on the board.
-     * Used in validMoves to see if a move puts the player in check.
+     * @return the recorded game in PGN, with moves in standard algebraic notation
+     */
+    public String toPgn() {
+        return Pgn.write(this);
+    }
+
+    /**
+     * Makes a move on the given board, as long as the piece is on the board.
+     * Doesn't touch this game's turn or undo stack.
      *
      * @param move chess move to perform
      * @throws InvalidMoveException if move is off the board
@@ -185,7 +461,6 @@ public class ChessGame {
             // Replace the piece that's getting taken
             // ...if not null at endPosition, maybe save the taken piece?
             board.addPiece(endPosition,piece);
-            //System.out.println("Print Debugging, line 186 of ChessGame, makeMoveForced()");
         }
         else {
             throw new InvalidMoveException(String.format("Move is off board: %s",move));
@@ -203,52 +478,116 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        // Iterate and find king
-        ChessPosition kingSpot = null;
-        List<ChessMove> allmoves = new ArrayList<>();
-
-        // Iterate through the chessboard.
-        // Add all (potentially invalid) moves from other team.
-        // Add king position
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition currPos = new ChessPosition(r,c);
-                ChessPiece currPiece = board.getPiece(currPos);
-                if (currPiece != null) {
-                    if (currPiece.getTeamColor() != teamColor) {
-                        allmoves.addAll(currPiece.pieceMoves(board, currPos));
-                    } else {
-                        // System.out.println(String.format("Print debugging, line 234, isInCheck; piece pos: %s",currPos));
-                        if (currPiece.getPieceType() == ChessPiece.PieceType.KING) {
-                            kingSpot = currPos;
-                        }
-                    }
-                }
-            }
-        }
+        // Look outward from the king for any attacker instead of listing every enemy move
+        int kingSpot = board.kingSquare(teamColor);
+        return kingSpot >= 0 && board.isAttacked(kingSpot, other(teamColor));
+    }
+
+    /**
+     * Every square the given team attacks, as a bitmap where bit n is square n
+     * (squares are numbered as in PackedMove). Sliding pieces see through the other
+     * team's king, so it also marks every square that king can't step to.
+     *
+     * @param teamColor team whose attacks to collect
+     * @return bitmap of attacked squares
+     */
+    public long attackedSquares(TeamColor teamColor) {
+        return board.attackedSquares(teamColor);
+    }
+
+    /**
+     * @return plies since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
 
-        // Iterate through moves; find if any endPosition hits the king
-        ChessMove move = allmoves.getFirst();
-        //System.out.println(String.format("Print debugging isInCheck (line 244). King spot: %s",kingSpot));
-        for (Iterator<ChessMove> moves = allmoves.iterator(); moves.hasNext();) {
-            //System.out.println(move);
-            if (move.getEndPosition().equals(kingSpot)) {
-                // At least one piece has the king in sight.
-                //System.out.println(String.format("Pdebug, line 267, loop 2 of isInCheck, ChessGame, %s",move));
-                return true;
+    /**
+     * @return FEN move number: starts at 1 and goes up after each black move
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Counts how many times the current position has come up, this time included.
+     * Only the positions since the last capture or pawn move are looked at, two plies
+     * at a time (same side to move), by comparing keys.
+     *
+     * @return number of times this position has occurred
+     */
+    public int repetitionCount() {
+        long key = keyRing[keyPly & KEY_RING_MASK];
+        // Don't look past the start of the recorded positions or the oldest ring entry
+        int lookBack = Math.min(halfmoveClock, Math.min(keyPly, KEY_RING_SIZE - 1));
+        int count = 1;
+        for (int back = 4; back <= lookBack; back += 2) {
+            if (keyRing[(keyPly - back) & KEY_RING_MASK] == key) {
+                count++;
             }
-            move = moves.next();
         }
+        return count;
+    }
 
-        // Need to check that last move...I should really improve my loop.
-        if (move.getEndPosition().equals(kingSpot)) {
-            //System.out.println(String.format("Print debugging, line 280, lastmove of isInCheck, ChessGame, %s", move));
+    /**
+     * @return true if the current position has occurred three times
+     */
+    public boolean isThreefoldRepetition() {
+        return repetitionCount() >= 3;
+    }
+
+    /**
+     * @return true if fifty moves by each side have gone by without a capture or pawn
+     * move (a checkmate on the last move still counts as a win)
+     */
+    public boolean isFiftyMoveDraw() {
+        return halfmoveClock >= 100 && !isInCheckmate(turn);
+    }
+
+    /**
+     * Neither side has enough pieces left to ever checkmate: bare kings, a single
+     * knight or bishop against a bare king, or only bishops that all stand on the
+     * same color of square.
+     *
+     * @return true if checkmate is impossible
+     */
+    public boolean isInsufficientMaterial() {
+        long heavy = 0;
+        long knights = 0;
+        long bishops = 0;
+        for (TeamColor color : TeamColor.values()) {
+            heavy |= board.pieces(color, ChessPiece.PieceType.PAWN) | board.pieces(color, ChessPiece.PieceType.ROOK)
+                    | board.pieces(color, ChessPiece.PieceType.QUEEN);
+            knights |= board.pieces(color, ChessPiece.PieceType.KNIGHT);
+            bishops |= board.pieces(color, ChessPiece.PieceType.BISHOP);
+        }
+        if (heavy != 0) {
+            return false;
+        }
+        int minors = Long.bitCount(knights | bishops);
+        if (minors <= 1) {
             return true;
         }
+        // Any number of bishops, all on light squares or all on dark squares
+        return knights == 0 && ((bishops & Bitboards.LIGHT_SQUARES) == 0 || (bishops & ~Bitboards.LIGHT_SQUARES) == 0);
+    }
 
+    /**
+     * @return true if the game is drawn for the side to move: stalemate, threefold
+     * repetition, the fifty-move rule or insufficient material
+     */
+    public boolean isDraw() {
+        return isInsufficientMaterial() || isThreefoldRepetition() || isFiftyMoveDraw() || isInStalemate(turn);
+    }
 
-        // Never found a piece move that hits the king
-        return false;
+    /**
+     * Result for the side to move with perfect play, from the endgame tablebases (see
+     * Tablebases) when one covers this position.
+     *
+     * @return win, draw or loss for the side to move, or empty if no table covers it
+     */
+    public Optional<Tablebases.Wdl> getTablebaseResult() {
+        return Tablebases.probeWdl(this);
     }
 
     /**
@@ -269,10 +608,6 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-//        if (isInCheck(teamColor)) {
-//            return false;
-//        }
-
         return !isInCheck(teamColor) && isTrapped(teamColor);
     }
 
@@ -283,26 +618,86 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isTrapped(TeamColor teamColor) {
-        ArrayList<ChessMove> allmoves = new ArrayList<>();
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r,c);
-                ChessPiece piece = board.getPiece(pos);
-                if (piece != null) {
-                    if (teamColor == piece.getTeamColor()) {
-                        // Add new moves
-                        allmoves.addAll(validMoves(pos));
-                    }
-                }
-            }
-        }
-        if (allmoves.isEmpty()) {
-            // No valid moves...
-            return true;
+        // Stops as soon as any legal move turns up
+        return !moveGenerator.hasLegalMove(board, teamColor, castlingRights, teamColor == turn ? enPassantSquare : -1);
+    }
+
+    /**
+     * Turns trace logging on or off for just this game, regardless of EngineLog's level.
+     *
+     * @param enabled whether to trace this game's moves
+     */
+    public void setTraceLogging(boolean enabled) {
+        traceLogging = enabled;
+    }
+
+    /**
+     * @return true if this game's trace messages will be logged
+     */
+    public boolean isTracing() {
+        return traceLogging || EngineLog.isEnabled(EngineLog.Level.TRACE);
+    }
+
+    private void trace(Supplier<String> message) {
+        EngineLog.logAlways(EngineLog.Level.TRACE, () -> String.format("game %08x: %s", System.identityHashCode(this), message.get()));
+    }
+
+    /**
+     * @return castling rights still available, as a Castling mask
+     */
+    int castlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * @return square the side to move can capture onto en passant, or -1
+     */
+    int enPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * Sets the castling rights, en-passant square and move counters, for loading a
+     * position (Fen, PositionCodec). Starts a new history from here.
+     *
+     * @param castlingRights  rights as a Castling mask
+     * @param enPassantSquare square a pawn may capture onto en passant, or -1
+     * @param halfmoveClock   plies since the last capture or pawn move
+     * @param fullmoveNumber  FEN move number
+     */
+    void setSpecialMoveState(int castlingRights, int enPassantSquare, int halfmoveClock, int fullmoveNumber) {
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.castlingRights = castlingRights & Castling.fromBoard(board);
+        this.enPassantSquare = -1;
+        if (enPassantSquare >= 0 && justDoublePushed(enPassantSquare, other(turn))) {
+            setEnPassantSquare(enPassantSquare, other(turn));
         }
+        startHistory();
+    }
 
-        // Has valid moves left
-        return false;
+    /**
+     * 64-bit Zobrist key of the position: the board's key plus the side to move,
+     * castling rights and en-passant file.
+     * Updated as moves are made, so it is cheap enough to use for transposition tables,
+     * repetition checks and cache keys. Equal positions always have equal keys.
+     *
+     * @return the position's key
+     */
+    public long positionKey() {
+        return key();
+    }
+
+    private long key() {
+        long key = board.zobristKey();
+        if (turn == TeamColor.BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        key ^= Zobrist.CASTLING[castlingRights];
+        if (enPassantSquare >= 0) {
+            key ^= Zobrist.EN_PASSANT_FILE[Bitboards.column(enPassantSquare) - 1];
+        }
+        return key;
     }
 
     /**
@@ -312,6 +707,13 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        // Anything on the undo stack or in the history belonged to the old board.
+        // There's no telling what moved before, so kings and rooks at home keep their rights.
+        undoSize = 0;
+        castlingRights = Castling.fromBoard(board);
+        enPassantSquare = -1;
+        halfmoveClock = 0;
+        startHistory();
     }
 
     /**
@@ -329,20 +731,39 @@ public class ChessGame {
             return false;
         }
         ChessGame chessGame = (ChessGame) o;
-        return turn == chessGame.turn && Objects.equals(board, chessGame.board);
+        return turn == chessGame.turn && castlingRights == chessGame.castlingRights
+                && enPassantSquare == chessGame.enPassantSquare && Objects.equals(board, chessGame.board);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(turn, board);
+        return Long.hashCode(positionKey());
+    }
+
+    /**
+     * @return a copy of this game with its own board, for running on another thread
+     */
+    public ChessGame copy() {
+        return new ChessGame(this);
+    }
+
+    private ChessGame(ChessGame other) {
+        turn = other.turn;
+        board = new ChessBoard(other.board);
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        keyRing = other.keyRing.clone();
+        keyPly = other.keyPly;
+        // The start position is never changed in place, so it can be shared
+        startPosition = other.startPosition;
+        history = Arrays.copyOf(other.history, Math.max(other.historySize, 16));
+        historySize = other.historySize;
     }
 
     @Override
     protected Object clone() throws CloneNotSupportedException {
-        ChessGame gameCopy = new ChessGame();
-        gameCopy.setTeamTurn(turn);
-        gameCopy.setBoard((ChessBoard) board.clone());
-
-        return gameCopy;
+        return copy();
     }
 }
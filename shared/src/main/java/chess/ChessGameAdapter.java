@@ -0,0 +1,42 @@
+package chess;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter that writes a game as its FEN string instead of reflecting over the
+ * whole board, e.g. {@code "game": "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1"}.
+ * <p>
+ * Use it with {@code @JsonAdapter(ChessGameAdapter.class)} on a field, or register it
+ * with a GsonBuilder.
+ */
+public class ChessGameAdapter extends TypeAdapter<ChessGame> {
+
+    @Override
+    public void write(JsonWriter out, ChessGame game) throws IOException {
+        if (game == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(game.toFen());
+    }
+
+    @Override
+    public ChessGame read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return ChessGame.fromFen(in.nextString());
+        }
+        catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException(e.getMessage(), e);
+        }
+    }
+}
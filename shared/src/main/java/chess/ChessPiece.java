@@ -20,6 +20,32 @@ public class ChessPiece {
         this.type = type;
     }
 
+    /**
+     * Gets the shared instance for a color and type. Pieces never change, so there
+     * only ever needs to be twelve of them.
+     *
+     * @param pieceColor which team the piece belongs to
+     * @param type       which type of piece it is
+     * @return the piece
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return Flyweights.PIECES[Bitboards.pieceIndex(pieceColor, type)];
+    }
+
+    // Holder class, so the table is built the first time of() is called
+    private static final class Flyweights {
+        // Same indexing as ChessBoard's piece sets
+        static final ChessPiece[] PIECES = new ChessPiece[12];
+
+        static {
+            for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+                for (PieceType type : PieceType.values()) {
+                    PIECES[Bitboards.pieceIndex(color, type)] = new ChessPiece(color, type);
+                }
+            }
+        }
+    }
+
     /**
      * The various different chess piece options
      */
@@ -46,6 +72,17 @@ public class ChessPiece {
         return type;
     }
 
+    // The calculators don't keep any state, so one of each is shared by every piece.
+    // Indexed by PieceType.ordinal().
+    private static final PieceMovesCalculator[] CALCULATORS = {
+            new KingMovesCalculator(),
+            new QueenMovesCalculator(),
+            new BishopMovesCalculator(),
+            new KnightMovesCalculator(),
+            new RookMovesCalculator(),
+            new PawnMovesCalculator()
+    };
+
     /**
      * Calculates all the positions a chess piece can move to
      * Does not take into account moves that are illegal due to leaving the king in
@@ -55,42 +92,34 @@ public class ChessPiece {
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
         ChessPiece piece = board.getPiece(myPosition);
-        switch (piece.getPieceType()) {
-            // Bishop moves
-            case PieceType.BISHOP -> {
-                BishopMovesCalculator bishop = new BishopMovesCalculator();
-                return bishop.pieceMoves(board, myPosition);
-            }
-            // Rook moves
-            case PieceType.ROOK -> {
-                RookMovesCalculator rook = new RookMovesCalculator();
-                return rook.pieceMoves(board, myPosition);
-                // Testing...
-            }
-            // Queen moves
-            case PieceType.QUEEN -> {
-                QueenMovesCalculator queen = new QueenMovesCalculator();
-                return queen.pieceMoves(board, myPosition);
-            }
-            // Knight moves
-            case PieceType.KNIGHT -> {
-                KnightMovesCalculator knight = new KnightMovesCalculator();
-                return knight.pieceMoves(board, myPosition);
-            }
-            // Pawn moves
-            case PieceType.PAWN -> {
-                PawnMovesCalculator pawn = new PawnMovesCalculator();
-                return pawn.pieceMoves(board, myPosition);
-            }
-            // King moves
-            case PieceType.KING -> {
-                KingMovesCalculator king = new KingMovesCalculator();
-                return king.pieceMoves(board, myPosition);
-            }
+        if (piece == null) {
+            EngineLog.debug(() -> String.format("pieceMoves: no piece at %s", myPosition));
+            return List.of();
         }
+        // Thin adapter over generateMoves; only here do the moves become objects.
+        MoveList moves = new MoveList();
+        generateMoves(board, Bitboards.square(myPosition), moves);
+        return moves.toChessMoves();
+    }
 
-        System.out.println("Pdebug l_92, pMoves/CP...unknown error");
-        return List.of();
+    /**
+     * Allocation-free version of pieceMoves. Appends the moves for the piece on a square
+     * to a caller-owned buffer, encoded by PackedMove.
+     *
+     * @param board  board the piece is on
+     * @param square square index of the piece (see PackedMove)
+     * @param moves  buffer to append to
+     */
+    public static void generateMoves(ChessBoard board, int square, MoveList moves) {
+        generateMoves(board, square, -1L, moves);
+    }
+
+    // Same, limited to moves ending on the allowed squares
+    static void generateMoves(ChessBoard board, int square, long allowed, MoveList moves) {
+        ChessPiece piece = board.pieceAt(square);
+        if (piece != null) {
+            CALCULATORS[piece.getPieceType().ordinal()].generateMoves(board, square, allowed, moves);
+        }
     }
 
     @Override
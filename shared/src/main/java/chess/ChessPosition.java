@@ -13,11 +13,38 @@ public class ChessPosition {
     private final int row;
     private final int col;
 
+    // Positions never change, so every square on the board gets one shared instance.
+    // Indexed by (row - 1) * 8 + (col - 1).
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+
+    static {
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                POSITIONS[(r - 1) * 8 + (c - 1)] = new ChessPosition(r, c);
+            }
+        }
+    }
+
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * Gets the shared instance for a square instead of allocating a new one.
+     * Off-board coordinates still get a fresh object, same as the constructor.
+     *
+     * @param row 1-based row
+     * @param col 1-based column
+     * @return position for that row and column
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return POSITIONS[(row - 1) * 8 + (col - 1)];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
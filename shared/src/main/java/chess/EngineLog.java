@@ -0,0 +1,117 @@
+package chess;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Level-gated diagnostics for the chess engine.
+ * <p>
+ * Messages are passed as suppliers, so nothing gets formatted unless the level is on.
+ * In hot paths, check {@link #isEnabled} (or a game's {@code isTracing()}) first so not
+ * even the supplier gets created. At the default WARN level the engine does no
+ * formatting and no I/O.
+ * <p>
+ * Output goes to a pluggable {@link Sink}; by default that's standard error. The server
+ * plugs in SLF4J. The starting level can be set with the {@code chess.log.level}
+ * system property and changed at runtime with {@link #setLevel}.
+ */
+public final class EngineLog {
+
+    public enum Level {
+        TRACE,
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR,
+        OFF
+    }
+
+    /**
+     * Where messages end up once they've passed the level check.
+     */
+    public interface Sink {
+        void log(Level level, String message);
+    }
+
+    private static final Sink STANDARD_ERROR = (level, message) -> System.err.printf("[chess %s] %s%n", level, message);
+
+    private static volatile Sink sink = STANDARD_ERROR;
+    private static volatile Level level = parseLevel(System.getProperty("chess.log.level"));
+
+    private EngineLog() {
+    }
+
+    /**
+     * Reads a level name in any case. A bad name mustn't stop the engine from loading,
+     * so it falls back to WARN with a warning.
+     *
+     * @param name level name, or null for the default
+     * @return the level, or WARN if name is null or not a level
+     */
+    static Level parseLevel(String name) {
+        if (name == null || name.isBlank()) {
+            return Level.WARN;
+        }
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            sink.log(Level.WARN, String.format("Unknown chess.log.level '%s', using WARN", name));
+            return Level.WARN;
+        }
+    }
+
+    /**
+     * @param newLevel lowest level that gets logged from now on
+     */
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @param newSink where messages go from now on, or null for standard error
+     */
+    public static void setSink(Sink newSink) {
+        sink = newSink == null ? STANDARD_ERROR : newSink;
+    }
+
+    /**
+     * @return true if messages at this level are logged
+     */
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 && messageLevel != Level.OFF;
+    }
+
+    /**
+     * Logs a message if its level is on. The supplier is only called if it is.
+     */
+    public static void log(Level messageLevel, Supplier<String> message) {
+        if (isEnabled(messageLevel)) {
+            sink.log(messageLevel, message.get());
+        }
+    }
+
+    /**
+     * Logs a message no matter what the level is set to. For callers that have already
+     * decided it should be logged, like a game with tracing turned on.
+     */
+    static void logAlways(Level messageLevel, Supplier<String> message) {
+        sink.log(messageLevel, message.get());
+    }
+
+    public static void trace(Supplier<String> message) {
+        log(Level.TRACE, message);
+    }
+
+    public static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    public static void warn(Supplier<String> message) {
+        log(Level.WARN, message);
+    }
+}
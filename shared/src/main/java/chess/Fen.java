@@ -0,0 +1,167 @@
+package chess;
+
+import java.util.Map;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g. the starting position:
+ * <pre>rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1</pre>
+ * Rows are listed from row 8 down to row 1, upper case is white, and digits count
+ * empty squares.
+ */
+public final class Fen {
+
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final Map<Character, ChessPiece.PieceType> CHAR_TO_TYPE = Map.of(
+            'p', ChessPiece.PieceType.PAWN,
+            'n', ChessPiece.PieceType.KNIGHT,
+            'b', ChessPiece.PieceType.BISHOP,
+            'r', ChessPiece.PieceType.ROOK,
+            'q', ChessPiece.PieceType.QUEEN,
+            'k', ChessPiece.PieceType.KING);
+    // Black's letter for each piece, indexed by PieceType.ordinal()
+    private static final char[] TYPE_TO_CHAR = {'k', 'q', 'b', 'n', 'r', 'p'};
+
+    private Fen() {
+    }
+
+    /**
+     * Builds a game from a FEN string. Castling and en passant default to none, and
+     * the move counters to "0 1", if left out.
+     *
+     * @param fen position to load
+     * @return a new game in that position
+     * @throws IllegalArgumentException if the string isn't valid FEN
+     */
+    public static ChessGame parse(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException(String.format("FEN needs at least a board and a side to move: %s", fen));
+        }
+        ChessBoard board = parseBoard(fields[0]);
+
+        ChessGame.TeamColor turn = switch (fields[1]) {
+            case "w" -> ChessGame.TeamColor.WHITE;
+            case "b" -> ChessGame.TeamColor.BLACK;
+            default -> throw new IllegalArgumentException(String.format("Bad side to move in FEN: %s", fen));
+        };
+        int castlingRights = fields.length > 2 ? Castling.parseFen(fields[2]) : 0;
+        int enPassantSquare = fields.length > 3 ? parseSquare(fields[3]) : -1;
+        int halfmoveClock = fields.length > 4 ? parseCounter(fields[4], fen) : 0;
+        int fullmoveNumber = fields.length > 5 ? Math.max(1, parseCounter(fields[5], fen)) : 1;
+
+        ChessGame game = new ChessGame(turn, board);
+        game.setSpecialMoveState(castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+        return game;
+    }
+
+    private static int parseCounter(String field, String fen) {
+        try {
+            int counter = Integer.parseInt(field);
+            if (counter >= 0) {
+                return counter;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(String.format("Bad move counter in FEN: %s", fen));
+    }
+
+    // A square name like "e3", or -1 for "-"
+    private static int parseSquare(String name) {
+        if (name.equals("-")) {
+            return -1;
+        }
+        if (name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h'
+                || name.charAt(1) < '1' || name.charAt(1) > '8') {
+            throw new IllegalArgumentException(String.format("Bad square in FEN: %s", name));
+        }
+        return Bitboards.square(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+
+    /**
+     * Reads just the piece placement field of a FEN string.
+     *
+     * @param placement piece placement, e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR"
+     * @return a board with those pieces on it
+     * @throws IllegalArgumentException if the placement is malformed
+     */
+    public static ChessBoard parseBoard(String placement) {
+        ChessBoard board = new ChessBoard();
+        String[] rows = placement.split("/");
+        if (rows.length != 8) {
+            throw new IllegalArgumentException(String.format("FEN board needs 8 rows: %s", placement));
+        }
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    col += c - '0';
+                    continue;
+                }
+                ChessPiece.PieceType type = CHAR_TO_TYPE.get(Character.toLowerCase(c));
+                if (type == null || col > 8) {
+                    throw new IllegalArgumentException(String.format("Bad FEN row %d: %s", row, rows[i]));
+                }
+                ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE
+                        : ChessGame.TeamColor.BLACK;
+                board.putPiece(Bitboards.square(row, col), ChessPiece.of(color, type));
+                col++;
+            }
+            if (col != 9) {
+                throw new IllegalArgumentException(String.format("FEN row %d doesn't cover 8 squares: %s", row, rows[i]));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Writes a game as FEN.
+     *
+     * @param game game to write
+     * @return the game's position as a FEN string
+     */
+    public static String toFen(ChessGame game) {
+        int enPassantSquare = game.enPassantSquare();
+        String enPassant = enPassantSquare < 0 ? "-"
+                : String.valueOf((char) ('a' + Bitboards.column(enPassantSquare) - 1)) + Bitboards.row(enPassantSquare);
+        return String.format("%s %s %s %s %d %d", boardToFen(game.getBoard()),
+                game.getTeamTurn() == ChessGame.TeamColor.WHITE ? "w" : "b",
+                Castling.toFen(game.castlingRights()), enPassant, game.getHalfmoveClock(), game.getFullmoveNumber());
+    }
+
+    /**
+     * Writes just the piece placement field of a FEN string.
+     *
+     * @param board board to write
+     * @return piece placement, e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR"
+     */
+    public static String boardToFen(ChessBoard board) {
+        StringBuilder placement = new StringBuilder(72);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.pieceAt(Bitboards.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    placement.append(empty);
+                    empty = 0;
+                }
+                char c = TYPE_TO_CHAR[piece.getPieceType().ordinal()];
+                placement.append(piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(c) : c);
+            }
+            if (empty > 0) {
+                placement.append(empty);
+            }
+            if (row > 1) {
+                placement.append('/');
+            }
+        }
+        return placement.toString();
+    }
+}
@@ -0,0 +1,236 @@
+package chess;
+
+/**
+ * Generates only legal moves, without trying each one on the board.
+ * <p>
+ * Before generating, the position is looked at once: which enemy pieces give check,
+ * which of our pieces are pinned to the king (and along which line), and which squares
+ * the enemy attacks. Those become masks of squares each piece is allowed to move to, so
+ * every move that comes out is already legal.
+ * <p>
+ * A generator keeps scratch state between calls, so each thread (or game) needs its own.
+ */
+public final class MoveGenerator {
+
+    private final MoveList scratch = new MoveList();
+
+    // Position analysis, filled in by analyze()
+    private ChessBoard board;
+    private ChessGame.TeamColor color;
+    private ChessGame.TeamColor enemy;
+    // Castling rights (Castling mask) and en-passant square (-1 for none) for this call
+    private int castlingRights;
+    private int enPassantSquare = -1;
+    private int kingSquare;
+    private long checkers;
+    private long enemyAttacks;
+    // Squares a non-king move has to end on: everywhere, or blocking/capturing a single checker
+    private long checkMask;
+    private long pinned;
+    // For each pinned piece, the line it is pinned along
+    private final long[] pinLines = new long[64];
+
+    /**
+     * Appends every legal move for one team to moves, encoded by PackedMove.
+     * Without a game there's no castling or en passant; use the other overload for those.
+     *
+     * @param board board to generate moves on
+     * @param color team to move
+     * @param moves buffer to append to
+     */
+    public void generateLegalMoves(ChessBoard board, ChessGame.TeamColor color, MoveList moves) {
+        generateLegalMoves(board, color, 0, -1, -1L, moves);
+    }
+
+    /**
+     * Appends the legal moves of the given team's pieces that start on one of the
+     * squares in fromSquares, again without castling or en passant.
+     *
+     * @param board       board to generate moves on
+     * @param color       team to move
+     * @param fromSquares set of starting squares to generate for
+     * @param moves       buffer to append to
+     */
+    public void generateLegalMoves(ChessBoard board, ChessGame.TeamColor color, long fromSquares, MoveList moves) {
+        generateLegalMoves(board, color, 0, -1, fromSquares, moves);
+    }
+
+    /**
+     * Appends the legal moves of the given team's pieces that start on one of the
+     * squares in fromSquares, including castling and en passant.
+     *
+     * @param board           board to generate moves on
+     * @param color           team to move
+     * @param castlingRights  castling rights still available (see Castling)
+     * @param enPassantSquare square a pawn can capture onto en passant, or -1
+     * @param fromSquares     set of starting squares to generate for
+     * @param moves           buffer to append to
+     */
+    void generateLegalMoves(ChessBoard board, ChessGame.TeamColor color, int castlingRights, int enPassantSquare,
+                            long fromSquares, MoveList moves) {
+        analyze(board, color, castlingRights, enPassantSquare);
+        long pieces = board.occupancy(color) & fromSquares;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            addMoves(from, moves);
+        }
+    }
+
+    /**
+     * Stops at the first legal move found, so this is much cheaper than generating
+     * everything when all that matters is whether the team can move at all.
+     *
+     * @param board board to look at
+     * @param color team to move
+     * @return true if the team has at least one legal move
+     */
+    public boolean hasLegalMove(ChessBoard board, ChessGame.TeamColor color) {
+        return hasLegalMove(board, color, 0, -1);
+    }
+
+    /**
+     * hasLegalMove, counting castling and en passant too.
+     *
+     * @param board           board to look at
+     * @param color           team to move
+     * @param castlingRights  castling rights still available (see Castling)
+     * @param enPassantSquare square a pawn can capture onto en passant, or -1
+     * @return true if the team has at least one legal move
+     */
+    boolean hasLegalMove(ChessBoard board, ChessGame.TeamColor color, int castlingRights, int enPassantSquare) {
+        analyze(board, color, castlingRights, enPassantSquare);
+        // Try the king first; when in check it is the piece most likely to have a move.
+        long pieces = board.occupancy(color);
+        if (kingSquare >= 0) {
+            if (hasMoves(kingSquare)) {
+                return true;
+            }
+            pieces &= ~Bitboards.bit(kingSquare);
+        }
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            if (hasMoves(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasMoves(int from) {
+        scratch.clear();
+        addMoves(from, scratch);
+        return !scratch.isEmpty();
+    }
+
+    private void analyze(ChessBoard board, ChessGame.TeamColor color, int castlingRights, int enPassantSquare) {
+        this.board = board;
+        this.color = color;
+        this.enemy = color == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        this.castlingRights = castlingRights & Castling.rightsOf(color);
+        this.enPassantSquare = enPassantSquare;
+        kingSquare = board.kingSquare(color);
+        enemyAttacks = board.attackedSquares(enemy);
+        checkMask = -1L;
+        checkers = 0;
+        pinned = 0;
+        if (kingSquare < 0) {
+            // No king (only happens on test boards); nothing can be pinned or checked
+            return;
+        }
+
+        long occupied = board.occupancy();
+        checkers = board.attackersTo(kingSquare, enemy, occupied);
+        if (Long.bitCount(checkers) == 1) {
+            // Capture the checker, or step in between if it's a slider
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | Bitboards.BETWEEN[kingSquare][checker];
+        }
+
+        // Enemy sliders that would see the king if our pieces weren't there
+        long enemyQueens = board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        long enemyOnly = board.occupancy(enemy);
+        long snipers = (SlidingAttacks.rookAttacks(kingSquare, enemyOnly)
+                & (enemyQueens | board.pieces(enemy, ChessPiece.PieceType.ROOK)))
+                | (SlidingAttacks.bishopAttacks(kingSquare, enemyOnly)
+                & (enemyQueens | board.pieces(enemy, ChessPiece.PieceType.BISHOP)));
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.BETWEEN[kingSquare][sniper] & occupied;
+            // Exactly one piece in the way, and it's ours: it's pinned
+            if (Long.bitCount(blockers) == 1 && (blockers & board.occupancy(color)) != 0) {
+                pinned |= blockers;
+                pinLines[Long.numberOfTrailingZeros(blockers)] = Bitboards.LINE[kingSquare][sniper];
+            }
+        }
+    }
+
+    private void addMoves(int from, MoveList moves) {
+        if (from == kingSquare) {
+            // The king can go anywhere the enemy doesn't attack
+            ChessPiece.generateMoves(board, from, ~enemyAttacks, moves);
+            if (castlingRights != 0 && checkers == 0) {
+                addCastles(moves);
+            }
+            return;
+        }
+        if (Long.bitCount(checkers) > 1) {
+            // Double check; only the king can do anything about it
+            return;
+        }
+        long allowed = checkMask;
+        if ((pinned & Bitboards.bit(from)) != 0) {
+            allowed &= pinLines[from];
+        }
+        ChessPiece.generateMoves(board, from, allowed, moves);
+        if (enPassantSquare >= 0 && board.pieceAt(from) == ChessPiece.of(color, ChessPiece.PieceType.PAWN)) {
+            addEnPassant(from, moves);
+        }
+    }
+
+    // Castling: the right is still there, nothing is in the way, and the king doesn't
+    // cross or land on an attacked square (being in check was ruled out already)
+    private void addCastles(MoveList moves) {
+        long occupied = board.occupancy();
+        for (int i = 0; i < 4; i++) {
+            if ((castlingRights & (1 << i)) == 0 || kingSquare != Castling.KING_FROM[i]) {
+                continue;
+            }
+            if ((occupied & Castling.EMPTY[i]) == 0 && (enemyAttacks & Castling.SAFE[i]) == 0
+                    && board.pieceAt(Castling.ROOK_FROM[i]) == ChessPiece.of(color, ChessPiece.PieceType.ROOK)) {
+                moves.add(PackedMove.encode(kingSquare, Castling.KING_TO[i], null, PackedMove.CASTLE));
+            }
+        }
+    }
+
+    private void addEnPassant(int from, MoveList moves) {
+        if ((Bitboards.PAWN_ATTACKS[color.ordinal()][from] & Bitboards.bit(enPassantSquare)) == 0) {
+            return;
+        }
+        // The pawn being taken sits beside us, not on the square we move to
+        int captured = color == ChessGame.TeamColor.WHITE ? enPassantSquare - 8 : enPassantSquare + 8;
+        // Pin lines only cover where we land; the check mask may name the taken pawn instead
+        long pinLine = (pinned & Bitboards.bit(from)) != 0 ? pinLines[from] : -1L;
+        if ((pinLine & Bitboards.bit(enPassantSquare)) == 0
+                || (checkMask & (Bitboards.bit(enPassantSquare) | Bitboards.bit(captured))) == 0) {
+            return;
+        }
+        if (kingSquare >= 0) {
+            // Two pawns leave the same row at once, which can open a line to the king that
+            // no pin covered, so look again from the king with the board as it would be
+            long after = (board.occupancy() ^ Bitboards.bit(from) ^ Bitboards.bit(captured))
+                    | Bitboards.bit(enPassantSquare);
+            long enemyQueens = board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+            if ((SlidingAttacks.rookAttacks(kingSquare, after)
+                    & (enemyQueens | board.pieces(enemy, ChessPiece.PieceType.ROOK))) != 0
+                    || (SlidingAttacks.bishopAttacks(kingSquare, after)
+                    & (enemyQueens | board.pieces(enemy, ChessPiece.PieceType.BISHOP))) != 0) {
+                return;
+            }
+        }
+        moves.add(PackedMove.encode(from, enPassantSquare, null, PackedMove.CAPTURE | PackedMove.EN_PASSANT));
+    }
+}
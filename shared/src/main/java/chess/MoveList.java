@@ -0,0 +1,98 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of moves in PackedMove form.
+ * <p>
+ * Callers own the list and can clear() and refill it as often as they like, so
+ * generating moves doesn't create any garbage once the buffer is big enough.
+ */
+public final class MoveList {
+
+    // No legal chess position has more than 218 moves, so this rarely has to grow.
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+    }
+
+    /**
+     * Adds a packed move to the end of the list
+     */
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * @return the packed move at index
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for size %d", index, size));
+        }
+        return moves[index];
+    }
+
+    /**
+     * @return number of moves in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Swaps two moves in the list, e.g. for sorting in place
+     */
+    public void swap(int i, int j) {
+        if (i >= size || j >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for size %d", Math.max(i, j), size));
+        }
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+    }
+
+    /**
+     * Drops every move from newSize on
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException(String.format("Can't truncate size %d to %d", size, newSize));
+        }
+        size = newSize;
+    }
+
+    /**
+     * Empties the list without giving up the buffer
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Wraps every move as a ChessMove. Only for callers that really need the objects.
+     */
+    public ArrayList<ChessMove> toChessMoves() {
+        ArrayList<ChessMove> chessMoves = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            chessMoves.add(PackedMove.toChessMove(moves[i]));
+        }
+        return chessMoves;
+    }
+}
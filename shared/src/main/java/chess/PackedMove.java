@@ -0,0 +1,106 @@
+package chess;
+
+/**
+ * Encodes a move as a single int so move generation doesn't have to allocate
+ * ChessMove and ChessPosition objects.
+ * <p>
+ * Squares are numbered 0-63, starting at row 1, column 1 and going across each row
+ * before moving up (square = (row - 1) * 8 + (column - 1)).
+ * <pre>
+ * bits  0-5   start square
+ * bits  6-11  end square
+ * bits 12-14  promotion piece (0 = none, otherwise PieceType.ordinal() + 1)
+ * bits 15-18  flags (CAPTURE, DOUBLE_PUSH, EN_PASSANT, CASTLE)
+ * </pre>
+ */
+public final class PackedMove {
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int DOUBLE_PUSH = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+    public static final int CASTLE = 1 << 18;
+
+    // Start, end and promotion; everything that identifies the move without its flags
+    private static final int MOVE_BITS = 0x7FFF;
+
+    private static final ChessPiece.PieceType[] PIECE_TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    /**
+     * @param from      start square
+     * @param to        end square
+     * @param promotion piece a pawn promotes to, or null
+     * @param flags     any of the flag constants, OR'd together
+     * @return the packed move
+     */
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        int promotionBits = promotion == null ? 0 : promotion.ordinal() + 1;
+        return from | (to << 6) | (promotionBits << 12) | flags;
+    }
+
+    /**
+     * @return start square of a packed move
+     */
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    /**
+     * @return end square of a packed move
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return piece type a pawn promotes to, or null if the move isn't a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int promotionBits = (move >>> 12) & 0x7;
+        return promotionBits == 0 ? null : PIECE_TYPES[promotionBits - 1];
+    }
+
+    /**
+     * @return true if every flag in flags is set on the move
+     */
+    public static boolean hasFlags(int move, int flags) {
+        return (move & flags) == flags;
+    }
+
+    /**
+     * @return true if both moves have the same start, end and promotion, whatever their flags
+     */
+    public static boolean sameMove(int move, int other) {
+        return (move & MOVE_BITS) == (other & MOVE_BITS);
+    }
+
+    /**
+     * Wraps a packed move as a ChessMove, for callers that need the object form.
+     */
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(position(from(move)), position(to(move)), promotion(move));
+    }
+
+    /**
+     * Packs a ChessMove. Flags can't be recovered from the object form, so none are set.
+     */
+    public static int fromChessMove(ChessMove move) {
+        return encode(square(move.getStartPosition()), square(move.getEndPosition()), move.getPromotionPiece(), 0);
+    }
+
+    /**
+     * @return square index for a position
+     */
+    public static int square(ChessPosition position) {
+        return Bitboards.square(position);
+    }
+
+    /**
+     * @return position for a square index
+     */
+    public static ChessPosition position(int square) {
+        return ChessPosition.of(Bitboards.row(square), Bitboards.column(square));
+    }
+}
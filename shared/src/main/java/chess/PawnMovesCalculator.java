@@ -1,79 +1,73 @@
 package chess;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.ArrayList;
-
 public class PawnMovesCalculator implements PieceMovesCalculator {
 
-    public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition position) {
-        // Can move 2 at the start of the board (move on OPEN)
-        // Can move 1 unless another piece is there (move on OPEN)
-        // Can move diagonal 1 unless NO piece is there. (move on TAKE)
+    // Same order the old calculator added them in
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.QUEEN
+    };
+
+    public void generateMoves(ChessBoard board, int from, long allowed, MoveList moves) {
+        // Can move 2 at the start of the board (only onto empty squares)
+        // Can move 1 unless another piece is there
+        // Can move diagonal 1 only if an enemy piece is there
 
         // Initialize some things
-        int curr_row = position.getRow();
-        int curr_col = position.getColumn();
-        ChessGame.TeamColor curr_color = board.getPiece(position).getTeamColor();
-        List<ChessMove> returnedMoves = new ArrayList<>();
+        ChessGame.TeamColor curr_color = board.pieceAt(from).getTeamColor();
+        long empty = ~board.occupancy();
 
-        // Constant for white or black; "color-determined direction"
+        // Square offset for white or black; "color-determined direction" (one row = 8 squares)
         int cdd;
-        if (curr_color == ChessGame.TeamColor.WHITE)
-            cdd = 1;
-        else
-            cdd = -1;
-
+        int startRow;
+        if (curr_color == ChessGame.TeamColor.WHITE) {
+            cdd = 8;
+            startRow = 2;
+        }
+        else {
+            cdd = -8;
+            startRow = 7;
+        }
 
-        // 1 move forward
-        // Prep for 2 moves forward with this "forward path clear" boolean:
-        boolean fpclear = false;
-        {
-            // No promotion
-            ChessPosition addpos = new ChessPosition(curr_row + cdd, curr_col);
-            if (moveValidityType(board, addpos, curr_color) == OpenTakeBlock.OPEN) {
-                if (curr_row + cdd != 1 && curr_row + cdd != 8) {
-                    // No promotion
-                    fpclear = true;
-                    returnedMoves.add(new ChessMove(position, addpos, null));
-                }
-                else {
-                    // Promotion
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.ROOK));
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.KNIGHT));
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.BISHOP));
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.QUEEN));
-                }
+        // 1 move forward, then 2 if the pawn hasn't moved and the path is clear
+        int oneStep = from + cdd;
+        if (oneStep < 0 || oneStep > 63) {
+            // Pawn is already on the far row; nowhere to go
+            return;
+        }
+        if ((empty & Bitboards.bit(oneStep)) != 0) {
+            if ((allowed & Bitboards.bit(oneStep)) != 0) {
+                addPawnMove(from, oneStep, 0, moves);
+            }
+            int twoStep = oneStep + cdd;
+            if (Bitboards.row(from) == startRow && (empty & allowed & Bitboards.bit(twoStep)) != 0) {
+                moves.add(PackedMove.encode(from, twoStep, null, PackedMove.DOUBLE_PUSH));
             }
         }
 
         // Diagonal take-moves
-        for (int i = 0; i < 2; i++) {
-            // i=0: go left/west. i=1: go right/east.
-            int coladd = 2*i - 1;
-            ChessPosition addpos = new ChessPosition(curr_row + cdd, curr_col + coladd);
-            if (moveValidityType(board, addpos, curr_color) == OpenTakeBlock.TAKE) {
-                if (curr_row + cdd != 1 && curr_row + cdd != 8)
-                    // No promotion
-                    returnedMoves.add(new ChessMove(position, addpos, null));
-                else {
-                    // Promotion
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.ROOK));
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.KNIGHT));
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.BISHOP));
-                    returnedMoves.add(new ChessMove(position, addpos, ChessPiece.PieceType.QUEEN));
-                }
-            }
+        ChessGame.TeamColor other = curr_color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK
+                : ChessGame.TeamColor.WHITE;
+        long takes = Bitboards.PAWN_ATTACKS[curr_color.ordinal()][from] & board.occupancy(other) & allowed;
+        while (takes != 0) {
+            int to = Long.numberOfTrailingZeros(takes);
+            takes &= takes - 1;
+            addPawnMove(from, to, PackedMove.CAPTURE, moves);
         }
+    }
 
-        // 2 move forward
-        boolean white_unmoved = (curr_row == 2 && curr_color == ChessGame.TeamColor.WHITE);
-        boolean black_unmoved = (curr_row == 7 && curr_color == ChessGame.TeamColor.BLACK);
-        if ((white_unmoved || black_unmoved) && fpclear) {
-            ChessPosition addpos = new ChessPosition(curr_row + 2*cdd, curr_col);
-            if (moveValidityType(board, addpos, curr_color) == OpenTakeBlock.OPEN)
-                returnedMoves.add(new ChessMove(position, addpos, null));
+    // Adds one move, or all four promotions if the pawn lands on the last row
+    private static void addPawnMove(int from, int to, int flags, MoveList moves) {
+        int endRow = Bitboards.row(to);
+        if (endRow != 1 && endRow != 8) {
+            // No promotion
+            moves.add(PackedMove.encode(from, to, null, flags));
+        }
+        else {
+            // Promotion
+            for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                moves.add(PackedMove.encode(from, to, promotion, flags));
+            }
         }
-        return returnedMoves;
     }
 }
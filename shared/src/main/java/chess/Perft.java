@@ -0,0 +1,206 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Perft ("performance test"): counts every leaf of the legal move tree to a fixed depth.
+ * <p>
+ * The counts for well-known positions are published, so any difference means the move
+ * generator is wrong, and the time it takes is a direct measure of generator speed.
+ * "Divide" splits the count by root move, which is how a wrong count gets narrowed down.
+ * <p>
+ * Run with no arguments for the reference suite, or with a FEN and a depth:
+ * <pre>
+ * java chess.Perft
+ * java chess.Perft "FEN" depth [--divide] [--threads N]
+ * </pre>
+ */
+public final class Perft {
+
+    /**
+     * A position with its published node counts, starting at depth 1.
+     */
+    public record ReferencePosition(String name, String fen, long... nodes) {
+    }
+
+    public static final List<ReferencePosition> REFERENCE_POSITIONS = List.of(
+            new ReferencePosition("Start position", Fen.START_POSITION,
+                    20, 400, 8902, 197281, 4865609, 119060324),
+            new ReferencePosition("Kiwipete",
+                    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2039, 97862, 4085603, 193690690),
+            new ReferencePosition("Position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2812, 43238, 674624, 11030083),
+            new ReferencePosition("Position 4",
+                    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9467, 422333, 15833292),
+            new ReferencePosition("Position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1486, 62379, 2103487, 89941194),
+            new ReferencePosition("Position 6",
+                    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2079, 89890, 3894594, 164075551)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * Counts the leaves of the legal move tree under the game's current position.
+     * The game is changed while counting but is back where it started afterward.
+     *
+     * @param game  game to count from
+     * @param depth number of plies to look ahead
+     * @return number of positions at that depth
+     */
+    public static long perft(ChessGame game, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        // One buffer per ply, so counting doesn't allocate
+        MoveList[] buffers = new MoveList[depth];
+        for (int i = 0; i < depth; i++) {
+            buffers[i] = new MoveList();
+        }
+        return perft(game, depth, buffers);
+    }
+
+    private static long perft(ChessGame game, int depth, MoveList[] buffers) {
+        MoveList moves = buffers[depth - 1];
+        moves.clear();
+        game.legalMoves(moves);
+        if (depth == 1) {
+            // Every legal move is a leaf; no need to make them
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            nodes += perft(game, depth - 1, buffers);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Perft split by root move.
+     *
+     * @param game  game to count from
+     * @param depth number of plies to look ahead (at least 1)
+     * @return node count under each root move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        Map<ChessMove, Long> counts = new LinkedHashMap<>();
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            counts.put(PackedMove.toChessMove(moves.get(i)), perft(game, depth - 1));
+            game.unmakeMove();
+        }
+        return counts;
+    }
+
+    /**
+     * Perft with the root moves split across a ForkJoinPool. Every task works on its
+     * own copy of the game, so the game passed in is never touched by other threads.
+     *
+     * @param game  game to count from
+     * @param depth number of plies to look ahead (at least 1)
+     * @param pool  pool to run the root moves on
+     * @return number of positions at that depth
+     */
+    public static long parallelPerft(ChessGame game, int depth, ForkJoinPool pool) {
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        List<ForkJoinTask<Long>> tasks = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            ChessGame copy = game.copy();
+            tasks.add(pool.submit(() -> {
+                copy.makeMove(move);
+                return perft(copy, depth - 1);
+            }));
+        }
+        long nodes = 0;
+        for (ForkJoinTask<Long> task : tasks) {
+            nodes += task.join();
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            runReferenceSuite();
+            return;
+        }
+        if (args.length < 2) {
+            System.out.println("Usage: Perft [\"FEN\" depth [--divide] [--threads N]]");
+            return;
+        }
+
+        ChessGame game = Fen.parse(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        boolean divide = false;
+        int threads = 1;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--divide")) {
+                divide = true;
+            }
+            else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        long nodes;
+        if (divide) {
+            nodes = 0;
+            for (Map.Entry<ChessMove, Long> entry : divide(game, depth).entrySet()) {
+                System.out.printf("%s: %d%n", entry.getKey(), entry.getValue());
+                nodes += entry.getValue();
+            }
+        }
+        else if (threads > 1) {
+            try (ForkJoinPool pool = new ForkJoinPool(threads)) {
+                nodes = parallelPerft(game, depth, pool);
+            }
+        }
+        else {
+            nodes = perft(game, depth);
+        }
+        report(depth, nodes, System.nanoTime() - start);
+    }
+
+    private static void runReferenceSuite() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        try (ForkJoinPool pool = new ForkJoinPool(threads)) {
+            for (ReferencePosition position : REFERENCE_POSITIONS) {
+                System.out.printf("%s (%s)%n", position.name(), position.fen());
+                // The deepest counts take a while; stop where a run still finishes quickly.
+                int maxDepth = Math.min(position.nodes().length, 5);
+                for (int depth = 1; depth <= maxDepth; depth++) {
+                    long start = System.nanoTime();
+                    long nodes = parallelPerft(Fen.parse(position.fen()), depth, pool);
+                    long expected = position.nodes()[depth - 1];
+                    System.out.printf("  %s ", nodes == expected ? "ok  " : "FAIL");
+                    report(depth, nodes, System.nanoTime() - start);
+                    if (nodes != expected) {
+                        System.out.printf("  expected %d%n", expected);
+                    }
+                }
+            }
+        }
+        System.out.printf("(%d threads)%n", threads);
+    }
+
+    private static void report(int depth, long nodes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("depth %d: %d nodes in %.3f s (%.0f nodes/s)%n", depth, nodes, seconds,
+                seconds > 0 ? nodes / seconds : 0);
+    }
+}
@@ -0,0 +1,201 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes games in Portable Game Notation, with moves in standard algebraic notation
+ * (SAN), e.g. "Nbd7", "exd5", "e8=Q+".
+ */
+public final class Pgn {
+
+    private static final byte[] STANDARD_START = PositionCodec.encode(new ChessGame());
+    // Letters used for each piece in SAN, indexed by PieceType.ordinal(); pawns have none
+    private static final String[] PIECE_LETTERS = {"K", "Q", "B", "N", "R", ""};
+    private static final int LINE_LENGTH = 80;
+
+    private Pgn() {
+    }
+
+    /**
+     * Writes a game's recorded moves as PGN, with "?" for the tags nobody knows.
+     *
+     * @param game game to write
+     * @return the game in PGN
+     */
+    public static String write(ChessGame game) {
+        return write(game, Map.of());
+    }
+
+    /**
+     * Writes a game's recorded moves as PGN.
+     *
+     * @param game game to write
+     * @param tags tags to add or replace, e.g. "White" and "Black" with the players' names
+     * @return the game in PGN
+     */
+    public static String write(ChessGame game, Map<String, String> tags) {
+        ChessGame replay = game.replay(0);
+        int[] moves = game.getPackedHistory();
+
+        // Work out the SAN for every move while stepping through the game
+        String[] sanMoves = new String[moves.length];
+        ChessGame.TeamColor firstMover = replay.getTeamTurn();
+        for (int i = 0; i < moves.length; i++) {
+            sanMoves[i] = toSan(replay, moves[i]);
+            replay.makeMove(moves[i]);
+        }
+        String result = result(replay);
+
+        Map<String, String> allTags = new LinkedHashMap<>();
+        allTags.put("Event", "?");
+        allTags.put("Site", "?");
+        allTags.put("Date", "????.??.??");
+        allTags.put("Round", "?");
+        allTags.put("White", "?");
+        allTags.put("Black", "?");
+        allTags.put("Result", result);
+        byte[] start = game.getStartPosition();
+        if (!Arrays.equals(start, STANDARD_START)) {
+            allTags.put("SetUp", "1");
+            allTags.put("FEN", PositionCodec.decode(start).toFen());
+        }
+        allTags.putAll(tags);
+
+        StringBuilder pgn = new StringBuilder();
+        for (Map.Entry<String, String> tag : allTags.entrySet()) {
+            pgn.append(String.format("[%s \"%s\"]%n", tag.getKey(), tag.getValue().replace("\"", "\\\"")));
+        }
+        pgn.append(System.lineSeparator());
+
+        StringBuilder line = new StringBuilder();
+        // Ply 0 is white's first move; a game that starts with black to move skips it
+        int ply = firstMover == ChessGame.TeamColor.WHITE ? 0 : 1;
+        for (int i = 0; i < sanMoves.length; i++, ply++) {
+            String token = sanMoves[i];
+            if (ply % 2 == 0) {
+                token = String.format("%d. %s", ply / 2 + 1, token);
+            }
+            else if (i == 0) {
+                token = String.format("%d... %s", ply / 2 + 1, token);
+            }
+            appendToken(pgn, line, token);
+        }
+        appendToken(pgn, line, result);
+        pgn.append(line).append(System.lineSeparator());
+        return pgn.toString();
+    }
+
+    // Adds a token to the movetext, starting a new line when it would run past 80 characters
+    private static void appendToken(StringBuilder pgn, StringBuilder line, String token) {
+        if (!line.isEmpty() && line.length() + 1 + token.length() > LINE_LENGTH) {
+            pgn.append(line).append(System.lineSeparator());
+            line.setLength(0);
+        }
+        if (!line.isEmpty()) {
+            line.append(' ');
+        }
+        line.append(token);
+    }
+
+    private static String result(ChessGame game) {
+        ChessGame.TeamColor toMove = game.getTeamTurn();
+        if (game.isInCheckmate(toMove)) {
+            return toMove == ChessGame.TeamColor.WHITE ? "0-1" : "1-0";
+        }
+        if (game.isInStalemate(toMove)) {
+            return "1/2-1/2";
+        }
+        return "*";
+    }
+
+    /**
+     * Writes one move in standard algebraic notation.
+     *
+     * @param game game in the position before the move, with the mover's turn
+     * @param move legal packed move, as generated (so its flags are set)
+     * @return the move in SAN, with "+" or "#" if it gives check or mate
+     */
+    public static String toSan(ChessGame game, int move) {
+        ChessBoard board = game.getBoard();
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece piece = board.pieceAt(from);
+        boolean capture = PackedMove.hasFlags(move, PackedMove.CAPTURE) || PackedMove.hasFlags(move, PackedMove.EN_PASSANT);
+
+        StringBuilder san = new StringBuilder(8);
+        if (PackedMove.hasFlags(move, PackedMove.CASTLE)) {
+            san.append(to > from ? "O-O" : "O-O-O");
+        }
+        else if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            if (capture) {
+                san.append(fileLetter(from)).append('x');
+            }
+            san.append(squareName(to));
+            ChessPiece.PieceType promotion = PackedMove.promotion(move);
+            if (promotion != null) {
+                san.append('=').append(PIECE_LETTERS[promotion.ordinal()]);
+            }
+        }
+        else {
+            san.append(PIECE_LETTERS[piece.getPieceType().ordinal()]);
+            san.append(disambiguation(game, move, piece));
+            if (capture) {
+                san.append('x');
+            }
+            san.append(squareName(to));
+        }
+
+        // Check or mate
+        game.makeMove(move);
+        ChessGame.TeamColor defender = game.getTeamTurn();
+        if (game.isInCheck(defender)) {
+            san.append(game.isTrapped(defender) ? '#' : '+');
+        }
+        game.unmakeMove();
+        return san.toString();
+    }
+
+    /**
+     * When another piece of the same kind could also move to the same square, SAN adds
+     * the start file, or the start row if the file doesn't tell them apart, or both.
+     */
+    private static String disambiguation(ChessGame game, int move, ChessPiece piece) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRow = false;
+        for (int i = 0; i < moves.size(); i++) {
+            int other = PackedMove.from(moves.get(i));
+            if (other == from || PackedMove.to(moves.get(i)) != to || game.getBoard().pieceAt(other) != piece) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= Bitboards.column(other) == Bitboards.column(from);
+            sameRow |= Bitboards.row(other) == Bitboards.row(from);
+        }
+        if (!ambiguous) {
+            return "";
+        }
+        if (!sameFile) {
+            return String.valueOf(fileLetter(from));
+        }
+        if (!sameRow) {
+            return String.valueOf(Bitboards.row(from));
+        }
+        return squareName(from);
+    }
+
+    private static char fileLetter(int square) {
+        return (char) ('a' + Bitboards.column(square) - 1);
+    }
+
+    private static String squareName(int square) {
+        return String.valueOf(fileLetter(square)) + Bitboards.row(square);
+    }
+}
@@ -3,41 +3,49 @@ package chess;
 import java.util.Collection;
 
 public interface PieceMovesCalculator {
-    Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition position);
 
-    enum OpenTakeBlock {
-        OPEN, // Position does not have a piece occupying it
-        TAKE, // Position has a piece of the opposite color to take
-        BLOCK // Position is off board or same color; cannot take
+    /**
+     * Writes every move for the piece on square from into moves, encoded by PackedMove.
+     * Like pieceMoves, this doesn't care whether a move leaves the king in danger.
+     *
+     * @param board board the piece is on
+     * @param from  square index of the piece
+     * @param moves caller-owned buffer to append to
+     */
+    default void generateMoves(ChessBoard board, int from, MoveList moves) {
+        generateMoves(board, from, -1L, moves);
     }
 
+    /**
+     * Same as generateMoves, but only for moves that end on one of the allowed squares.
+     * MoveGenerator uses this to apply its pin and check masks while generating.
+     *
+     * @param board   board the piece is on
+     * @param from    square index of the piece
+     * @param allowed set of squares moves may end on
+     * @param moves   caller-owned buffer to append to
+     */
+    void generateMoves(ChessBoard board, int from, long allowed, MoveList moves);
+
+    /**
+     * Object version of generateMoves, for callers that need ChessMoves.
+     */
+    default Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition position) {
+        MoveList moves = new MoveList();
+        generateMoves(board, Bitboards.square(position), moves);
+        return moves.toChessMoves();
+    }
 
-    default OpenTakeBlock moveValidityType(ChessBoard board, ChessPosition position, ChessGame.TeamColor color) {
-        // Within rows of chess board?
-        if (position.getRow() < 1 || position.getRow() > 8) {
-            return OpenTakeBlock.BLOCK;
-        }
-
-        // Within columns of chess board?
-        if (position.getColumn() < 1 || position.getColumn() > 8) {
-            return OpenTakeBlock.BLOCK;
-        }
-
-        // Another piece at the spot being moved to?
-        if (board.getPiece(position) != null) {
-            // Check if it's the same color or not
-            if (board.getPiece(position).getTeamColor() == color) {
-                // System.out.println("blocked via color; OpenTakeBlock mvt PieceMovesCalculator");
-                // Other position is same color; it is blocked
-                return OpenTakeBlock.BLOCK;
-            } else {
-                // Other position is opposite color; can take
-                return OpenTakeBlock.TAKE;
-            }
-
+    /**
+     * Turns a set of target squares into plain (non-promotion) moves from a square.
+     * Targets with a piece on them get the CAPTURE flag.
+     */
+    default void addTargets(ChessBoard board, int from, long targets, MoveList moves) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int flags = (board.occupancy() & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : 0;
+            moves.add(PackedMove.encode(from, to, null, flags));
         }
-
-        // Last option. No other pieces have blocked the move, and it is on the board.
-        return OpenTakeBlock.OPEN;
     }
 }
@@ -0,0 +1,112 @@
+package chess;
+
+/**
+ * Compact binary form of a position, for storing and sending games.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * byte 0     bit 0: side to move (1 = black), bits 1-4: castling rights
+ * byte 1     en-passant square, or 0xFF for none
+ * byte 2     halfmove clock (plies since a capture or pawn move, up to 255)
+ * bytes 3-4  fullmove number (up to 65535)
+ * bytes 5-12 occupied squares as a bitboard
+ * bytes 13-  one nibble per occupied square, in square order, high nibble first:
+ *            the piece's index (white king 0 ... black pawn 11)
+ * </pre>
+ * A full starting position takes 29 bytes, and fewer pieces take fewer bytes,
+ * versus a few kilobytes for the reflective JSON of a board.
+ */
+public final class PositionCodec {
+
+    private static final int HEADER_BYTES = 13;
+    private static final int NO_EN_PASSANT = 0xFF;
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PositionCodec() {
+    }
+
+    /**
+     * @param game game to encode
+     * @return the game's position in the compact format
+     */
+    public static byte[] encode(ChessGame game) {
+        return encode(game.getBoard(), game.getTeamTurn(), game.castlingRights(), game.enPassantSquare(),
+                game.getHalfmoveClock(), game.getFullmoveNumber());
+    }
+
+    // The same, from a game's fields, for ChessGame's constructors
+    static byte[] encode(ChessBoard board, ChessGame.TeamColor turn, int castlingRights, int enPassantSquare,
+                         int halfmoveClock, int fullmoveNumber) {
+        long occupied = board.occupancy();
+        int pieceCount = Long.bitCount(occupied);
+        byte[] bytes = new byte[HEADER_BYTES + (pieceCount + 1) / 2];
+
+        bytes[0] = (byte) ((turn == ChessGame.TeamColor.BLACK ? 1 : 0) | castlingRights << 1);
+        bytes[1] = (byte) (enPassantSquare < 0 ? NO_EN_PASSANT : enPassantSquare);
+        bytes[2] = (byte) Math.min(halfmoveClock, 255);
+        int moveNumber = Math.min(fullmoveNumber, 0xFFFF);
+        bytes[3] = (byte) (moveNumber >>> 8);
+        bytes[4] = (byte) moveNumber;
+        for (int i = 0; i < 8; i++) {
+            bytes[5 + i] = (byte) (occupied >>> (56 - 8 * i));
+        }
+
+        int nibble = 0;
+        long remaining = occupied;
+        while (remaining != 0) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            ChessPiece piece = board.pieceAt(square);
+            int index = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+            // Even nibbles go in the high half of the byte
+            bytes[HEADER_BYTES + nibble / 2] |= (byte) (nibble % 2 == 0 ? index << 4 : index);
+            nibble++;
+        }
+        return bytes;
+    }
+
+    /**
+     * @param bytes a position written by encode
+     * @return a new game in that position
+     * @throws IllegalArgumentException if the bytes aren't a valid encoding
+     */
+    public static ChessGame decode(byte[] bytes) {
+        if (bytes.length < HEADER_BYTES) {
+            throw new IllegalArgumentException(String.format("Encoded position too short: %d bytes", bytes.length));
+        }
+        long occupied = 0;
+        for (int i = 0; i < 8; i++) {
+            occupied = (occupied << 8) | (bytes[5 + i] & 0xFF);
+        }
+        int pieceCount = Long.bitCount(occupied);
+        if (bytes.length != HEADER_BYTES + (pieceCount + 1) / 2) {
+            throw new IllegalArgumentException(String.format("Encoded position has %d bytes for %d pieces",
+                    bytes.length, pieceCount));
+        }
+
+        ChessBoard board = new ChessBoard();
+        int nibble = 0;
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int packed = bytes[HEADER_BYTES + nibble / 2] & 0xFF;
+            int index = nibble % 2 == 0 ? packed >>> 4 : packed & 0xF;
+            if (index >= 12) {
+                throw new IllegalArgumentException(String.format("Bad piece %d on square %d", index, square));
+            }
+            board.putPiece(square, ChessPiece.of(COLORS[index / 6], TYPES[index % 6]));
+            nibble++;
+        }
+        ChessGame.TeamColor turn = (bytes[0] & 1) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        int enPassantSquare = bytes[1] & 0xFF;
+        if (enPassantSquare != NO_EN_PASSANT && enPassantSquare >= 64) {
+            throw new IllegalArgumentException(String.format("Bad en-passant square %d", enPassantSquare));
+        }
+        int fullmoveNumber = Math.max(1, (bytes[3] & 0xFF) << 8 | bytes[4] & 0xFF);
+        ChessGame game = new ChessGame(turn, board);
+        game.setSpecialMoveState((bytes[0] >>> 1) & Castling.ALL, enPassantSquare == NO_EN_PASSANT ? -1 : enPassantSquare,
+                bytes[2] & 0xFF, fullmoveNumber);
+        return game;
+    }
+}
@@ -1,20 +1,13 @@
 package chess;
 
-import java.util.Collection;
-import java.util.ArrayList;
-import java.util.stream.Stream;
-
 public class QueenMovesCalculator implements PieceMovesCalculator {
 
-    public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition position) {
-        // Fairly simple. Just add both bishop and rook moves.
-        BishopMovesCalculator bishop = new BishopMovesCalculator();
-        Collection<ChessMove> bmoves = bishop.pieceMoves(board, position);
-        RookMovesCalculator rook = new RookMovesCalculator();
-        Collection<ChessMove> rmoves = rook.pieceMoves(board, position);
+    public void generateMoves(ChessBoard board, int from, long allowed, MoveList moves) {
+        // SlidingAttacks already knows where every ray stops for this arrangement of pieces,
+        // including the square of the first piece hit. Only our own pieces need removing.
+        ChessGame.TeamColor curr_color = board.pieceAt(from).getTeamColor();
 
-        // Hm. Just learned about Stream concatenation. Cool utility.
-        return new ArrayList<>(Stream.concat(bmoves.stream(),rmoves.stream()).toList());
+        long targets = SlidingAttacks.queenAttacks(from, board.occupancy()) & ~board.occupancy(curr_color) & allowed;
+        addTargets(board, from, targets, moves);
     }
-
 }
@@ -0,0 +1,846 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One Syzygy endgame table (a material combination such as KRPvKR), read straight out
+ * of its memory-mapped WDL (.rtbw) and DTZ (.rtbz) files.
+ * <p>
+ * A position is turned into an index by putting its pieces in the order the table was
+ * built with and folding away the board's symmetries, then the value at that index is
+ * decompressed out of the file. The files are Huffman coded blocks of "Recursive Pairing"
+ * symbols; a sparse index finds the block holding a given index without reading the
+ * blocks before it.
+ * <p>
+ * Files are mapped the first time they are probed. The parsed layout never changes after
+ * that and is published with a compare-and-set, so probing takes no locks: two threads
+ * that both get there first each map the file, one wins, and the other's mapping is
+ * simply dropped. Reads only use absolute gets, which don't touch the buffers' state.
+ * <p>
+ * The format and the indexing follow the reference prober by Ronald de Man (as found in
+ * Stockfish and Fathom).
+ */
+final class SyzygyTable {
+
+    static final int MAX_PIECES = 7;
+
+    enum Kind {
+        WDL(".rtbw", new byte[]{0x71, (byte) 0xE8, 0x23, 0x5D}),
+        DTZ(".rtbz", new byte[]{(byte) 0xD7, 0x66, 0x0C, (byte) 0xA5});
+
+        final String suffix;
+        final byte[] magic;
+
+        Kind(String suffix, byte[] magic) {
+            this.suffix = suffix;
+            this.magic = magic;
+        }
+    }
+
+    // Probe outcomes besides a plain value (see Tablebases)
+    static final int OK = 0;
+    static final int FAIL = 1;
+    static final int CHANGE_STM = 2;
+
+    // Per-table flags
+    private static final int STM = 1;
+    private static final int MAPPED = 2;
+    private static final int WIN_PLIES = 4;
+    private static final int LOSS_PLIES = 8;
+    private static final int WIDE = 16;
+    private static final int SINGLE_VALUE = 128;
+
+    // Syzygy piece codes by PieceType.ordinal() (KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN);
+    // black pieces add 8
+    private static final int[] PIECE_CODES = {6, 5, 3, 2, 4, 1};
+
+    // Index tables shared by every table, built the same way the generator built them
+    // MapB1H1H7: squares below the a1-h8 diagonal, numbered 0-27
+    private static final int[] MAP_B1H1H7 = new int[64];
+    // MapA1D1D4: squares of the a1-d1-d4 triangle, 0-9, with the diagonal last
+    private static final int[] MAP_A1D1D4 = new int[64];
+    // The 462 legal ways to place two kings with the first in the a1-d1-d4 triangle
+    private static final int[][] MAP_KK = new int[10][64];
+    // BINOMIAL[k][n]: ways to choose k squares out of n
+    private static final long[][] BINOMIAL = new long[MAX_PIECES][64];
+    // Pawn squares a2-h7 numbered 0-47, highest nearest the a/h edge and lowest rank
+    private static final int[] MAP_PAWNS = new int[64];
+    private static final int[][] LEAD_PAWN_IDX = new int[6][64];
+    private static final int[][] LEAD_PAWNS_SIZE = new int[6][4];
+
+    static {
+        int code = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (offDiagonal(sq) < 0) {
+                MAP_B1H1H7[sq] = code++;
+            }
+        }
+
+        code = 0;
+        int[] diagonal = new int[4];
+        int diagonalCount = 0;
+        for (int sq = 0; sq <= 27; sq++) {
+            if (offDiagonal(sq) < 0 && (sq & 7) <= 3) {
+                MAP_A1D1D4[sq] = code++;
+            }
+            else if (offDiagonal(sq) == 0 && (sq & 7) <= 3) {
+                diagonal[diagonalCount++] = sq;
+            }
+        }
+        for (int i = 0; i < diagonalCount; i++) {
+            MAP_A1D1D4[diagonal[i]] = code++;
+        }
+
+        // If the first king is on the diagonal, the second can't be above it; positions
+        // with both on the diagonal come last
+        code = 0;
+        int[][] bothOnDiagonal = new int[64][];
+        int bothCount = 0;
+        for (int idx = 0; idx < 10; idx++) {
+            for (int s1 = 0; s1 <= 27; s1++) {
+                // Every square off the triangle also maps to 0, so only b1 counts for 0
+                if (MAP_A1D1D4[s1] != idx || (idx == 0 && s1 != 1)) {
+                    continue;
+                }
+                for (int s2 = 0; s2 < 64; s2++) {
+                    if (((Bitboards.KING_ATTACKS[s1] | Bitboards.bit(s1)) & Bitboards.bit(s2)) != 0) {
+                        continue;
+                    }
+                    if (offDiagonal(s1) == 0 && offDiagonal(s2) > 0) {
+                        continue;
+                    }
+                    if (offDiagonal(s1) == 0 && offDiagonal(s2) == 0) {
+                        bothOnDiagonal[bothCount++] = new int[]{idx, s2};
+                    }
+                    else {
+                        MAP_KK[idx][s2] = code++;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < bothCount; i++) {
+            MAP_KK[bothOnDiagonal[i][0]][bothOnDiagonal[i][1]] = code++;
+        }
+
+        BINOMIAL[0][0] = 1;
+        for (int n = 1; n < 64; n++) {
+            for (int k = 0; k < MAX_PIECES && k <= n; k++) {
+                BINOMIAL[k][n] = (k > 0 ? BINOMIAL[k - 1][n - 1] : 0) + (k < n ? BINOMIAL[k][n - 1] : 0);
+            }
+        }
+
+        int availableSquares = 47;
+        for (int leadPawns = 1; leadPawns <= 5; leadPawns++) {
+            for (int file = 0; file < 4; file++) {
+                int idx = 0;
+                for (int rank = 1; rank <= 6; rank++) {
+                    int sq = rank * 8 + file;
+                    if (leadPawns == 1) {
+                        MAP_PAWNS[sq] = availableSquares--;
+                        MAP_PAWNS[sq ^ 7] = availableSquares--;
+                    }
+                    LEAD_PAWN_IDX[leadPawns][sq] = idx;
+                    idx += (int) BINOMIAL[leadPawns - 1][MAP_PAWNS[sq]];
+                }
+                LEAD_PAWNS_SIZE[leadPawns][file] = idx;
+            }
+        }
+    }
+
+    /**
+     * Where the values for one side to move (and, with pawns, one file of the leading
+     * pawn) live in the file, and how to decode them.
+     */
+    static final class Pairs {
+        int flags;
+        long sizeofBlock;
+        long span;
+        int numBlocks;
+        int maxSymLen;
+        int minSymLen;
+        int lowestSym;
+        long[] base64;
+        int[] symlen;
+        int btree;
+        int blockLength;
+        int blockLengthSize;
+        int sparseIndex;
+        long sparseIndexSize;
+        int data;
+        final int[] pieces = new int[MAX_PIECES];
+        final long[] groupIdx = new long[MAX_PIECES + 1];
+        final int[] groupLen = new int[MAX_PIECES + 1];
+        // DTZ only: where each WDL result's value map starts
+        final int[] mapIdx = new int[4];
+    }
+
+    private record Layout(ByteBuffer little, ByteBuffer big, Pairs[][] pairs, int map) {
+    }
+
+    // Published in place of a layout when a file is missing or can't be read, so the
+    // failure is only logged once
+    private static final Layout MISSING = new Layout(null, null, null, 0);
+
+    final String name;
+    final int pieceCount;
+    final boolean hasPawns;
+    final boolean hasUniquePieces;
+    // Both sides have the same pieces, so only white to move is stored
+    final boolean symmetric;
+    // Pawns of the leading color (the one whose pawns are encoded first), then the other
+    private final int[] pawnCount = new int[2];
+    private final List<Path> directories;
+    private final AtomicReference<Layout> wdl = new AtomicReference<>();
+    private final AtomicReference<Layout> dtz = new AtomicReference<>();
+
+    /**
+     * @param name        material, strongest side first, e.g. "KRPvKR"
+     * @param directories where to look for the files
+     */
+    SyzygyTable(String name, List<Path> directories) {
+        this.name = name;
+        this.directories = directories;
+        int split = name.indexOf('v');
+        String white = name.substring(0, split);
+        String black = name.substring(split + 1);
+        pieceCount = white.length() + black.length();
+        symmetric = white.equals(black);
+
+        int whitePawns = count(white, 'P');
+        int blackPawns = count(black, 'P');
+        hasPawns = whitePawns + blackPawns > 0;
+        boolean unique = false;
+        for (char type : "QRBNP".toCharArray()) {
+            unique |= count(white, type) == 1 || count(black, type) == 1;
+        }
+        hasUniquePieces = unique;
+        // With pawns on both sides, the side with fewer pawns leads (it compresses better)
+        boolean whiteLeads = blackPawns == 0 || (whitePawns > 0 && blackPawns >= whitePawns);
+        pawnCount[0] = whiteLeads ? whitePawns : blackPawns;
+        pawnCount[1] = whiteLeads ? blackPawns : whitePawns;
+    }
+
+    private static int count(String pieces, char type) {
+        int count = 0;
+        for (int i = 0; i < pieces.length(); i++) {
+            if (pieces.charAt(i) == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Rows above the a1-h8 diagonal are positive, below are negative, on it is 0
+    private static int offDiagonal(int sq) {
+        return (sq >>> 3) - (sq & 7);
+    }
+
+    /**
+     * Looks up the position in one of the table's files.
+     *
+     * @param kind          which file
+     * @param board         position to look up; its material has to be this table's
+     * @param blackToMove   side to move
+     * @param blackStronger true if black has the pieces named first in the table name
+     * @param wdl           for DTZ, the position's WDL result (-2 to 2)
+     * @param state         state[0] is set to OK, FAIL or CHANGE_STM
+     * @return WDL result from -2 (loss) to 2 (win), or the DTZ in plies
+     */
+    int probe(Kind kind, ChessBoard board, boolean blackToMove, boolean blackStronger, int wdl, int[] state) {
+        Layout layout = layout(kind);
+        if (layout == MISSING) {
+            state[0] = FAIL;
+            return 0;
+        }
+        Pairs[] found = new Pairs[1];
+        long idx = index(layout, kind, board, blackToMove, blackStronger, state, found);
+        if (idx < 0) {
+            return 0;
+        }
+        state[0] = OK;
+        Pairs d = found[0];
+        int value = decompress(layout, d, idx);
+        return kind == Kind.WDL ? value - 2 : mapDtz(layout, d, value, wdl);
+    }
+
+    /**
+     * The table index of a position, or -1 (with state[0] set) if it isn't stored here.
+     * Package-private so tests can check the encoding.
+     */
+    long index(Kind kind, ChessBoard board, boolean blackToMove, boolean blackStronger, int[] state) {
+        Layout layout = layout(kind);
+        if (layout == MISSING) {
+            state[0] = FAIL;
+            return -1;
+        }
+        return index(layout, kind, board, blackToMove, blackStronger, state, new Pairs[1]);
+    }
+
+    /**
+     * @return number of distinct indexes for the table of the given file (0 for pawnless)
+     */
+    long size(Kind kind, int file) {
+        Layout layout = layout(kind);
+        if (layout == MISSING) {
+            return 0;
+        }
+        Pairs d = layout.pairs[0][hasPawns ? file : 0];
+        int n = 0;
+        while (d.groupLen[n] != 0) {
+            n++;
+        }
+        return d.groupIdx[n];
+    }
+
+    // Puts the leading color's pawns first, the leading pawn (highest MAP_PAWNS) at [0]
+    private int leadPawns(Layout layout, ChessBoard board, boolean flip, int[] squares) {
+        int leadCode = layout.pairs[0][0].pieces[0] ^ (flip ? 8 : 0);
+        ChessGame.TeamColor color = leadCode >= 8 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long pawns = board.pieces(color, ChessPiece.PieceType.PAWN);
+        int count = 0;
+        while (pawns != 0) {
+            squares[count++] = Long.numberOfTrailingZeros(pawns) ^ (flip ? 56 : 0);
+            pawns &= pawns - 1;
+        }
+        int lead = 0;
+        for (int i = 1; i < count; i++) {
+            if (MAP_PAWNS[squares[i]] > MAP_PAWNS[squares[lead]]) {
+                lead = i;
+            }
+        }
+        swap(squares, 0, lead);
+        return count;
+    }
+
+    private static int toQueenside(int file) {
+        return Math.min(file, 7 - file);
+    }
+
+    // found[0] is set to the part of the table the position is in
+    private long index(Layout layout, Kind kind, ChessBoard board, boolean blackToMove, boolean blackStronger,
+                       int[] state, Pairs[] found) {
+        // Tables are built with white as the side named first, and symmetric ones only
+        // with white to move; anything else gets its colors swapped and board flipped
+        boolean flip = (symmetric && blackToMove) || blackStronger;
+        int flipColor = flip ? 8 : 0;
+        int flipSquares = flip ? 56 : 0;
+        int stm = (flip ? 1 : 0) ^ (blackToMove ? 1 : 0);
+
+        int[] squares = new int[MAX_PIECES];
+        int[] pieces = new int[MAX_PIECES];
+        int size = 0;
+        int leadPawnCount = 0;
+        long leadPawns = 0;
+        int tbFile = 0;
+        if (hasPawns) {
+            // Pawn tables are split by the file of the leading pawn
+            leadPawnCount = leadPawns(layout, board, flip, squares);
+            size = leadPawnCount;
+            int leadCode = layout.pairs[0][0].pieces[0] ^ flipColor;
+            leadPawns = board.pieces(leadCode >= 8 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE,
+                    ChessPiece.PieceType.PAWN);
+            tbFile = toQueenside(squares[0] & 7);
+        }
+
+        Pairs d = layout.pairs[stm % layout.pairs.length][tbFile];
+        found[0] = d;
+        // DTZ files only store one side to move
+        if (kind == Kind.DTZ && (d.flags & STM) != stm && !(symmetric && !hasPawns)) {
+            state[0] = CHANGE_STM;
+            return -1;
+        }
+
+        long rest = (board.occupancy(ChessGame.TeamColor.WHITE) | board.occupancy(ChessGame.TeamColor.BLACK))
+                ^ leadPawns;
+        while (rest != 0) {
+            int sq = Long.numberOfTrailingZeros(rest);
+            rest &= rest - 1;
+            squares[size] = sq ^ flipSquares;
+            pieces[size++] = pieceCode(board.pieceAt(sq)) ^ flipColor;
+        }
+        if (size != pieceCount) {
+            state[0] = FAIL;
+            return -1;
+        }
+
+        // Same piece order as the table
+        for (int i = leadPawnCount; i < size - 1; i++) {
+            for (int j = i + 1; j < size; j++) {
+                if (d.pieces[i] == pieces[j]) {
+                    swap(pieces, i, j);
+                    swap(squares, i, j);
+                    break;
+                }
+            }
+        }
+
+        // Mirror so the leading piece is on files a-d
+        if ((squares[0] & 7) > 3) {
+            for (int i = 0; i < size; i++) {
+                squares[i] ^= 7;
+            }
+        }
+
+        long idx;
+        if (hasPawns) {
+            idx = LEAD_PAWN_IDX[leadPawnCount][squares[0]];
+            sortBy(squares, 1, leadPawnCount, MAP_PAWNS);
+            for (int i = 1; i < leadPawnCount; i++) {
+                idx += BINOMIAL[i][MAP_PAWNS[squares[i]]];
+            }
+        }
+        else {
+            idx = pawnlessLeadIndex(d, squares, size);
+        }
+
+        // The other groups, each as a combination of the squares left over
+        idx *= d.groupIdx[0];
+        int groupStart = d.groupLen[0];
+        boolean remainingPawns = hasPawns && pawnCount[1] > 0;
+        int next = 0;
+        while (d.groupLen[++next] != 0) {
+            int length = d.groupLen[next];
+            Arrays.sort(squares, groupStart, groupStart + length);
+            long n = 0;
+            for (int i = 0; i < length; i++) {
+                int sq = squares[groupStart + i];
+                // Squares taken by earlier groups don't count
+                int adjust = 0;
+                for (int j = 0; j < groupStart; j++) {
+                    if (sq > squares[j]) {
+                        adjust++;
+                    }
+                }
+                n += BINOMIAL[i + 1][sq - adjust - (remainingPawns ? 8 : 0)];
+            }
+            remainingPawns = false;
+            idx += n * d.groupIdx[next];
+            groupStart += length;
+        }
+        return idx;
+    }
+
+    private long pawnlessLeadIndex(Pairs d, int[] squares, int size) {
+        // Flip so the leading piece is on rows 1-4...
+        if ((squares[0] >>> 3) > 3) {
+            for (int i = 0; i < size; i++) {
+                squares[i] ^= 56;
+            }
+        }
+        // ...and so the first leading piece off the a1-h8 diagonal is below it
+        for (int i = 0; i < d.groupLen[0]; i++) {
+            if (offDiagonal(squares[i]) == 0) {
+                continue;
+            }
+            if (offDiagonal(squares[i]) > 0) {
+                for (int j = i; j < size; j++) {
+                    squares[j] = ((squares[j] >>> 3) | (squares[j] << 3)) & 63;
+                }
+            }
+            break;
+        }
+
+        if (!hasUniquePieces) {
+            // Just the two kings
+            return MAP_KK[MAP_A1D1D4[squares[0]]][squares[1]];
+        }
+        // Three unique pieces (kings included) are encoded together
+        int adjust1 = squares[1] > squares[0] ? 1 : 0;
+        int adjust2 = (squares[2] > squares[0] ? 1 : 0) + (squares[2] > squares[1] ? 1 : 0);
+        if (offDiagonal(squares[0]) != 0) {
+            return (MAP_A1D1D4[squares[0]] * 63L + (squares[1] - adjust1)) * 62 + squares[2] - adjust2;
+        }
+        if (offDiagonal(squares[1]) != 0) {
+            return (6 * 63L + (squares[0] >>> 3) * 28 + MAP_B1H1H7[squares[1]]) * 62 + squares[2] - adjust2;
+        }
+        if (offDiagonal(squares[2]) != 0) {
+            return 6 * 63 * 62 + 4 * 28 * 62 + (squares[0] >>> 3) * 7 * 28
+                    + ((squares[1] >>> 3) - adjust1) * 28 + MAP_B1H1H7[squares[2]];
+        }
+        return 6 * 63 * 62 + 4 * 28 * 62 + 4 * 7 * 28 + (squares[0] >>> 3) * 7 * 6
+                + ((squares[1] >>> 3) - adjust1) * 6 + ((squares[2] >>> 3) - adjust2);
+    }
+
+    private static int pieceCode(ChessPiece piece) {
+        return (piece.getTeamColor() == ChessGame.TeamColor.BLACK ? 8 : 0) + PIECE_CODES[piece.getPieceType().ordinal()];
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    // Insertion sort of values[from, to) by key[value]; at most five pawns
+    private static void sortBy(int[] values, int from, int to, int[] key) {
+        for (int i = from + 1; i < to; i++) {
+            int value = values[i];
+            int j = i - 1;
+            while (j >= from && key[values[j]] > key[value]) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    // DTZ values may go through a per-result map, and may be stored in moves, not plies
+    private static int mapDtz(Layout layout, Pairs d, int value, int wdl) {
+        // Index into mapIdx by WDL result: loss, blessed loss, draw, cursed win, win
+        int[] wdlMap = {1, 3, 0, 2, 0};
+        if ((d.flags & MAPPED) != 0) {
+            int start = d.mapIdx[wdlMap[wdl + 2]] + value;
+            value = (d.flags & WIDE) != 0
+                    ? Short.toUnsignedInt(layout.little.getShort(layout.map + 2 * start))
+                    : Byte.toUnsignedInt(layout.little.get(layout.map + start));
+        }
+        if ((wdl == 2 && (d.flags & WIN_PLIES) == 0) || (wdl == -2 && (d.flags & LOSS_PLIES) == 0)
+                || wdl == 1 || wdl == -1) {
+            value *= 2;
+        }
+        return value + 1;
+    }
+
+    private static int decompress(Layout layout, Pairs d, long idx) {
+        if ((d.flags & SINGLE_VALUE) != 0) {
+            // Every position in the table has the same value
+            return d.minSymLen;
+        }
+        ByteBuffer little = layout.little;
+
+        // The sparse index points near idx; walk the block lengths from there to the
+        // block that holds it
+        int k = (int) (idx / d.span);
+        int entry = d.sparseIndex + 6 * k;
+        int block = little.getInt(entry);
+        int offset = Short.toUnsignedInt(little.getShort(entry + 4));
+        offset += (int) (idx % d.span - d.span / 2);
+        while (offset < 0) {
+            offset += blockLength(little, d, --block) + 1;
+        }
+        while (offset > blockLength(little, d, block)) {
+            offset -= blockLength(little, d, block++) + 1;
+        }
+
+        // Read canonical Huffman symbols until the one covering our offset. Symbols of
+        // the same length are consecutive numbers, and longer ones are smaller, so
+        // base64 finds the length and lowestSym the symbol
+        ByteBuffer big = layout.big;
+        int ptr = (int) (d.data + block * d.sizeofBlock);
+        long buf64 = big.getLong(ptr);
+        ptr += 8;
+        int buf64Size = 64;
+        int sym;
+        while (true) {
+            int len = 0;
+            while (Long.compareUnsigned(buf64, d.base64[len]) < 0) {
+                len++;
+            }
+            sym = (int) ((buf64 - d.base64[len]) >>> (64 - len - d.minSymLen));
+            sym += Short.toUnsignedInt(little.getShort(d.lowestSym + 2 * len));
+            if (offset < d.symlen[sym] + 1) {
+                break;
+            }
+            offset -= d.symlen[sym] + 1;
+            len += d.minSymLen;
+            buf64 <<= len;
+            buf64Size -= len;
+            if (buf64Size <= 32) {
+                buf64Size += 32;
+                buf64 |= Integer.toUnsignedLong(big.getInt(ptr)) << (64 - buf64Size);
+                ptr += 4;
+            }
+        }
+
+        // The symbol stands for a run of values built by pairing; go down the pairs to
+        // the single value at our offset
+        while (d.symlen[sym] != 0) {
+            int left = leftSymbol(little, d, sym);
+            if (offset < d.symlen[left] + 1) {
+                sym = left;
+            }
+            else {
+                offset -= d.symlen[left] + 1;
+                sym = rightSymbol(little, d, sym);
+            }
+        }
+        return leftSymbol(little, d, sym);
+    }
+
+    private static int blockLength(ByteBuffer little, Pairs d, int block) {
+        return Short.toUnsignedInt(little.getShort(d.blockLength + 2 * block));
+    }
+
+    // Each pair is 3 bytes: a 12-bit left symbol and a 12-bit right symbol
+    private static int leftSymbol(ByteBuffer little, Pairs d, int sym) {
+        int at = d.btree + 3 * sym;
+        return ((little.get(at + 1) & 0xF) << 8) | (little.get(at) & 0xFF);
+    }
+
+    private static int rightSymbol(ByteBuffer little, Pairs d, int sym) {
+        int at = d.btree + 3 * sym;
+        return ((little.get(at + 2) & 0xFF) << 4) | ((little.get(at + 1) & 0xFF) >>> 4);
+    }
+
+    private Layout layout(Kind kind) {
+        AtomicReference<Layout> slot = kind == Kind.WDL ? wdl : dtz;
+        Layout layout = slot.get();
+        if (layout == null) {
+            slot.compareAndSet(null, load(kind));
+            layout = slot.get();
+        }
+        return layout;
+    }
+
+    private Layout load(Kind kind) {
+        Path file = null;
+        for (Path directory : directories) {
+            Path candidate = directory.resolve(name + kind.suffix);
+            if (Files.isReadable(candidate)) {
+                file = candidate;
+                break;
+            }
+        }
+        if (file == null) {
+            return MISSING;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // The files end in a 16-byte checksum after 64-byte aligned data
+            if (size % 64 != 16 || size < 16) {
+                throw new IllegalStateException("unexpected file size " + size);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("files over 2 GB aren't supported");
+            }
+            // Stays mapped after the channel is closed
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int i = 0; i < kind.magic.length; i++) {
+                if (mapped.get(i) != kind.magic[i]) {
+                    throw new IllegalStateException("not a Syzygy " + kind + " file");
+                }
+            }
+            return parse(kind, mapped);
+        }
+        catch (IOException | RuntimeException e) {
+            Path bad = file;
+            EngineLog.warn(() -> String.format("Ignoring tablebase file %s: %s", bad, e.getMessage()));
+            return MISSING;
+        }
+    }
+
+    private Layout parse(Kind kind, ByteBuffer mapped) {
+        ByteBuffer little = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer big = mapped.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int data = kind.magic.length;
+        int header = u8(little, data++);
+        if (((header & 2) != 0) != hasPawns || ((header & 1) != 0) == symmetric) {
+            throw new IllegalStateException("header doesn't match the table name");
+        }
+
+        int sides = kind == Kind.WDL && !symmetric ? 2 : 1;
+        int files = hasPawns ? 4 : 1;
+        boolean pawnsOnBothSides = hasPawns && pawnCount[1] > 0;
+        Pairs[][] pairs = new Pairs[sides][files];
+        for (int f = 0; f < files; f++) {
+            for (int i = 0; i < sides; i++) {
+                pairs[i][f] = new Pairs();
+            }
+            int first = u8(little, data);
+            int second = pawnsOnBothSides ? u8(little, data + 1) : 0;
+            int[][] order = {
+                    {first & 0xF, pawnsOnBothSides ? second & 0xF : 0xF},
+                    {first >>> 4, pawnsOnBothSides ? second >>> 4 : 0xF}
+            };
+            data += pawnsOnBothSides ? 2 : 1;
+            for (int k = 0; k < pieceCount; k++, data++) {
+                for (int i = 0; i < sides; i++) {
+                    pairs[i][f].pieces[k] = i == 0 ? u8(little, data) & 0xF : u8(little, data) >>> 4;
+                }
+            }
+            for (int i = 0; i < sides; i++) {
+                setGroups(pairs[i][f], order[i], f);
+            }
+        }
+        data += data & 1;
+
+        for (int f = 0; f < files; f++) {
+            for (int i = 0; i < sides; i++) {
+                data = setSizes(pairs[i][f], little, data);
+            }
+        }
+        int map = data;
+        if (kind == Kind.DTZ) {
+            data = setDtzMap(pairs[0], little, data, map);
+        }
+        for (int f = 0; f < files; f++) {
+            for (int i = 0; i < sides; i++) {
+                pairs[i][f].sparseIndex = data;
+                data = Math.toIntExact(data + pairs[i][f].sparseIndexSize * 6);
+            }
+        }
+        for (int f = 0; f < files; f++) {
+            for (int i = 0; i < sides; i++) {
+                pairs[i][f].blockLength = data;
+                data += pairs[i][f].blockLengthSize * 2;
+            }
+        }
+        // Compressed data starts 64-byte aligned; a single-value table has none, so the
+        // padding only counts once something is actually read past it
+        int end = data;
+        for (int f = 0; f < files; f++) {
+            for (int i = 0; i < sides; i++) {
+                data = (data + 0x3F) & ~0x3F;
+                pairs[i][f].data = data;
+                data = Math.toIntExact(data + pairs[i][f].numBlocks * pairs[i][f].sizeofBlock);
+                if (pairs[i][f].numBlocks > 0) {
+                    end = data;
+                }
+            }
+        }
+        if (end > mapped.capacity()) {
+            throw new IllegalStateException("file is truncated");
+        }
+        return new Layout(little, big, pairs, map);
+    }
+
+    // Splits the pieces into groups (pieces of a kind are placed together) and works out
+    // how many index values each group's placements take up
+    private void setGroups(Pairs d, int[] order, int file) {
+        int n = 0;
+        int firstLen = hasPawns ? 0 : hasUniquePieces ? 3 : 2;
+        d.groupLen[n] = 1;
+        for (int i = 1; i < pieceCount; i++) {
+            if (--firstLen > 0 || d.pieces[i] == d.pieces[i - 1]) {
+                d.groupLen[n]++;
+            }
+            else {
+                d.groupLen[++n] = 1;
+            }
+        }
+        d.groupLen[++n] = 0;
+
+        // The order the groups are multiplied in is part of the table: order[0] is the
+        // leading group's place and order[1] the other side's pawns'
+        boolean pawnsOnBothSides = hasPawns && pawnCount[1] > 0;
+        int next = pawnsOnBothSides ? 2 : 1;
+        int freeSquares = 64 - d.groupLen[0] - (pawnsOnBothSides ? d.groupLen[1] : 0);
+        long idx = 1;
+        for (int k = 0; next < n || k == order[0] || k == order[1]; k++) {
+            if (k == order[0]) {
+                d.groupIdx[0] = idx;
+                idx *= hasPawns ? LEAD_PAWNS_SIZE[d.groupLen[0]][file] : hasUniquePieces ? 31332 : 462;
+            }
+            else if (k == order[1]) {
+                d.groupIdx[1] = idx;
+                idx *= BINOMIAL[d.groupLen[1]][48 - d.groupLen[0]];
+            }
+            else {
+                d.groupIdx[next] = idx;
+                idx *= BINOMIAL[d.groupLen[next]][freeSquares];
+                freeSquares -= d.groupLen[next++];
+            }
+        }
+        d.groupIdx[n] = idx;
+    }
+
+    private static int setSizes(Pairs d, ByteBuffer little, int data) {
+        d.flags = u8(little, data++);
+        if ((d.flags & SINGLE_VALUE) != 0) {
+            d.minSymLen = u8(little, data++);
+            return data;
+        }
+
+        int n = 0;
+        while (d.groupLen[n] != 0) {
+            n++;
+        }
+        long tableSize = d.groupIdx[n];
+        d.sizeofBlock = 1L << u8(little, data++);
+        d.span = 1L << u8(little, data++);
+        d.sparseIndexSize = (tableSize + d.span - 1) / d.span;
+        int padding = u8(little, data++);
+        d.numBlocks = little.getInt(data);
+        data += 4;
+        d.blockLengthSize = d.numBlocks + padding;
+        d.maxSymLen = u8(little, data++);
+        d.minSymLen = u8(little, data++);
+        d.lowestSym = data;
+
+        // base64[i] is the smallest code of length minSymLen + i, padded out to 64 bits
+        int lengths = d.maxSymLen - d.minSymLen + 1;
+        d.base64 = new long[lengths];
+        for (int i = lengths - 2; i >= 0; i--) {
+            d.base64[i] = (d.base64[i + 1] + Short.toUnsignedInt(little.getShort(d.lowestSym + 2 * i))
+                    - Short.toUnsignedInt(little.getShort(d.lowestSym + 2 * (i + 1)))) / 2;
+        }
+        for (int i = 0; i < lengths; i++) {
+            d.base64[i] <<= 64 - i - d.minSymLen;
+        }
+        data += lengths * 2;
+
+        int symbols = Short.toUnsignedInt(little.getShort(data));
+        data += 2;
+        d.btree = data;
+        d.symlen = new int[symbols];
+        boolean[] visited = new boolean[symbols];
+        for (int sym = 0; sym < symbols; sym++) {
+            if (!visited[sym]) {
+                d.symlen[sym] = setSymlen(d, little, sym, visited);
+            }
+        }
+        return data + symbols * 3 + (symbols & 1);
+    }
+
+    // How many values (minus one) a symbol expands to; leaves have 0xFFF on the right
+    private static int setSymlen(Pairs d, ByteBuffer little, int sym, boolean[] visited) {
+        visited[sym] = true;
+        int right = rightSymbol(little, d, sym);
+        if (right == 0xFFF) {
+            return 0;
+        }
+        int left = leftSymbol(little, d, sym);
+        if (!visited[left]) {
+            d.symlen[left] = setSymlen(d, little, left, visited);
+        }
+        if (!visited[right]) {
+            d.symlen[right] = setSymlen(d, little, right, visited);
+        }
+        return d.symlen[left] + d.symlen[right] + 1;
+    }
+
+    private static int setDtzMap(Pairs[] pairs, ByteBuffer little, int data, int map) {
+        for (Pairs d : pairs) {
+            if ((d.flags & MAPPED) == 0) {
+                continue;
+            }
+            if ((d.flags & WIDE) != 0) {
+                data += data & 1;
+                for (int i = 0; i < 4; i++) {
+                    d.mapIdx[i] = (data - map) / 2 + 1;
+                    data += 2 * Short.toUnsignedInt(little.getShort(data)) + 2;
+                }
+            }
+            else {
+                for (int i = 0; i < 4; i++) {
+                    d.mapIdx[i] = data - map + 1;
+                    data += u8(little, data) + 1;
+                }
+            }
+        }
+        return data + (data & 1);
+    }
+
+    private static int u8(ByteBuffer buffer, int at) {
+        return buffer.get(at) & 0xFF;
+    }
+}
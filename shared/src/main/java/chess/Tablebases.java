@@ -0,0 +1,373 @@
+package chess;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Perfect endgame results from Syzygy tablebases on the local disk.
+ * <p>
+ * Point {@link #setPath} (or the {@code chess.syzygy.path} system property) at one or more
+ * directories of .rtbw/.rtbz files, separated like a class path. Each file is
+ * memory-mapped the first time a position with its material is probed; after that a
+ * probe is a few array reads with no locks, so the search and any number of games can
+ * probe at once.
+ * <p>
+ * Everything degrades to "don't know": with no path, a missing or damaged file, too many
+ * pieces, or castling rights still on the board, probes come back empty and callers go
+ * on as if there were no tables.
+ * <p>
+ * Probes make and unmake moves on the game passed in (to look at captures, which the
+ * tables don't always store the right value for), so the game has to be one the caller
+ * isn't using on another thread. It is back where it started afterward.
+ */
+public final class Tablebases {
+
+    /**
+     * Result for the side to move. A cursed win is a win that takes too long for the
+     * fifty-move rule, and a blessed loss is the other side of one; both are draws in
+     * practice.
+     */
+    public enum Wdl {
+        LOSS,
+        BLESSED_LOSS,
+        DRAW,
+        CURSED_WIN,
+        WIN;
+
+        /**
+         * @return -2 (loss) to 2 (win)
+         */
+        public int score() {
+            return ordinal() - 2;
+        }
+    }
+
+    // Probe results are one of five values, so they are never allocated
+    private static final List<Optional<Wdl>> RESULTS = Arrays.stream(Wdl.values()).map(Optional::of).toList();
+
+    // Table names look like KRPvKR: the stronger side first, pieces in QRBNP order
+    private static final Pattern TABLE_NAME = Pattern.compile("K[QRBNP]*vK[QRBNP]*");
+    private static final String PIECE_ORDER = "KQRBNP";
+    private static final ChessPiece.PieceType[] PIECE_ORDER_TYPES = {
+            ChessPiece.PieceType.KING, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.PAWN
+    };
+
+    /**
+     * Every table found, under its own name and the name with the colors swapped, so a
+     * position's material finds it either way round.
+     */
+    private record Catalog(Map<String, SyzygyTable> tables, int maxPieces) {
+    }
+
+    private static volatile Catalog catalog = scan(System.getProperty("chess.syzygy.path", ""));
+
+    private Tablebases() {
+    }
+
+    /**
+     * Replaces the set of tables with the ones found in these directories. Files are
+     * only opened when first probed.
+     *
+     * @param path directories separated by File.pathSeparator, or "" for no tables
+     */
+    public static void setPath(String path) {
+        catalog = scan(path);
+    }
+
+    /**
+     * @return most pieces (kings included) of any table found, or 0 with no tables
+     */
+    public static int maxPieces() {
+        return catalog.maxPieces();
+    }
+
+    private static Catalog scan(String path) {
+        List<Path> directories = new ArrayList<>();
+        for (String entry : path.split(Pattern.quote(File.pathSeparator))) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            Path directory = Path.of(entry.trim());
+            if (Files.isDirectory(directory)) {
+                directories.add(directory);
+            }
+            else {
+                EngineLog.warn(() -> String.format("Tablebase directory %s not found", directory));
+            }
+        }
+
+        Map<String, SyzygyTable> tables = new HashMap<>();
+        int maxPieces = 0;
+        for (Path directory : directories) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String fileName = file.getFileName().toString();
+                    if (!fileName.endsWith(SyzygyTable.Kind.WDL.suffix)) {
+                        continue;
+                    }
+                    String name = fileName.substring(0, fileName.length() - SyzygyTable.Kind.WDL.suffix.length());
+                    if (!TABLE_NAME.matcher(name).matches() || name.length() - 1 > SyzygyTable.MAX_PIECES
+                            || tables.containsKey(name)) {
+                        continue;
+                    }
+                    SyzygyTable table = new SyzygyTable(name, directories);
+                    tables.put(name, table);
+                    tables.put(swapColors(name), table);
+                    maxPieces = Math.max(maxPieces, table.pieceCount);
+                }
+            }
+            catch (IOException e) {
+                EngineLog.warn(() -> String.format("Can't list tablebase directory %s: %s", directory, e.getMessage()));
+            }
+        }
+        int found = maxPieces;
+        EngineLog.debug(() -> String.format("%d tablebases, up to %d pieces",
+                tables.values().stream().distinct().count(), found));
+        return new Catalog(Map.copyOf(tables), maxPieces);
+    }
+
+    private static String swapColors(String name) {
+        int split = name.indexOf('v');
+        return name.substring(split + 1) + "v" + name.substring(0, split);
+    }
+
+    // Material of one side in table-name form, e.g. "KRP"
+    private static void appendMaterial(StringBuilder name, ChessBoard board, ChessGame.TeamColor color) {
+        for (int i = 0; i < PIECE_ORDER.length(); i++) {
+            int count = Long.bitCount(board.pieces(color, PIECE_ORDER_TYPES[i]));
+            for (int n = 0; n < count; n++) {
+                name.append(PIECE_ORDER.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Win, draw or loss for the side to move, with perfect play.
+     *
+     * @param game position to look up; changed while probing but put back afterward
+     * @return the result, or empty if no installed table covers the position
+     */
+    public static Optional<Wdl> probeWdl(ChessGame game) {
+        Catalog current = catalog;
+        if (!canProbe(game, current)) {
+            return Optional.empty();
+        }
+        Probe probe = new Probe(current);
+        try {
+            int wdl = probe.searchCaptures(game, false);
+            return probe.state == SyzygyTable.FAIL ? Optional.empty() : RESULTS.get(wdl + 2);
+        }
+        catch (RuntimeException e) {
+            EngineLog.warn(() -> String.format("Tablebase probe failed for %s: %s", game.toFen(), e));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Distance to zeroing: plies until the next capture or pawn move on the way to the
+     * result, with perfect play. Positive when the side to move wins, negative when it
+     * loses, 0 for a draw. Cursed wins and blessed losses are reported 100 plies further
+     * out, so anything beyond 100 is a draw under the fifty-move rule. The count can be
+     * one ply more than the exact distance.
+     *
+     * @param game position to look up; changed while probing but put back afterward
+     * @return the distance, or empty if no installed table covers the position
+     */
+    public static OptionalInt probeDtz(ChessGame game) {
+        Catalog current = catalog;
+        if (!canProbe(game, current)) {
+            return OptionalInt.empty();
+        }
+        Probe probe = new Probe(current);
+        try {
+            int dtz = probe.dtz(game);
+            return probe.state == SyzygyTable.FAIL ? OptionalInt.empty() : OptionalInt.of(dtz);
+        }
+        catch (RuntimeException e) {
+            EngineLog.warn(() -> String.format("Tablebase probe failed for %s: %s", game.toFen(), e));
+            return OptionalInt.empty();
+        }
+    }
+
+    private static boolean canProbe(ChessGame game, Catalog current) {
+        ChessBoard board = game.getBoard();
+        int pieces = Long.bitCount(board.occupancy());
+        // The tables know nothing about castling
+        return pieces <= current.maxPieces() && game.castlingRights() == 0
+                && board.kingSquare(ChessGame.TeamColor.WHITE) >= 0 && board.kingSquare(ChessGame.TeamColor.BLACK) >= 0;
+    }
+
+    /**
+     * State of one probe. The tables can hold a "don't care" value where the best move is
+     * a capture (and know nothing of en passant), so captures are always tried first.
+     */
+    private static final class Probe {
+        private final Catalog catalog;
+        private final int[] tableState = new int[1];
+        int state = SyzygyTable.OK;
+        // The best move found by searchCaptures was a capture or pawn move
+        private boolean zeroingBest;
+
+        Probe(Catalog catalog) {
+            this.catalog = catalog;
+        }
+
+        private int probeTable(ChessGame game, SyzygyTable.Kind kind, int wdl) {
+            ChessBoard board = game.getBoard();
+            tableState[0] = SyzygyTable.OK;
+            if (Long.bitCount(board.occupancy()) == 2) {
+                // Bare kings
+                return 0;
+            }
+            StringBuilder name = new StringBuilder();
+            appendMaterial(name, board, ChessGame.TeamColor.WHITE);
+            name.append('v');
+            appendMaterial(name, board, ChessGame.TeamColor.BLACK);
+            SyzygyTable table = catalog.tables().get(name.toString());
+            if (table == null) {
+                tableState[0] = SyzygyTable.FAIL;
+                return 0;
+            }
+            return table.probe(kind, board, game.getTeamTurn() == ChessGame.TeamColor.BLACK,
+                    !table.name.contentEquals(name), wdl, tableState);
+        }
+
+        /**
+         * WDL of the position: the best of its captures (and, with zeroing, pawn moves)
+         * and what the table says about the rest.
+         */
+        int searchCaptures(ChessGame game, boolean zeroing) {
+            MoveList moves = new MoveList();
+            game.legalMoves(moves);
+            zeroingBest = false;
+            if (moves.isEmpty()) {
+                return game.isInCheck(game.getTeamTurn()) ? -2 : 0;
+            }
+            int best = -2;
+            int tried = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                boolean capture = PackedMove.hasFlags(move, PackedMove.CAPTURE);
+                if (!capture && (!zeroing || game.getBoard().pieceAt(PackedMove.from(move)).getPieceType()
+                        != ChessPiece.PieceType.PAWN)) {
+                    continue;
+                }
+                tried++;
+                int value;
+                game.makeMove(move);
+                try {
+                    value = -searchCaptures(game, false);
+                }
+                finally {
+                    game.unmakeMove();
+                }
+                if (state == SyzygyTable.FAIL) {
+                    return 0;
+                }
+                if (value > best) {
+                    best = value;
+                    if (value >= 2) {
+                        zeroingBest = true;
+                        return value;
+                    }
+                }
+            }
+
+            // With every move already tried, the table has nothing to add
+            boolean allTried = tried == moves.size();
+            int value;
+            if (allTried) {
+                value = best;
+            }
+            else {
+                value = probeTable(game, SyzygyTable.Kind.WDL, 0);
+                if (tableState[0] == SyzygyTable.FAIL) {
+                    state = SyzygyTable.FAIL;
+                    return 0;
+                }
+            }
+            if (best >= value) {
+                zeroingBest = best > 0 || allTried;
+                return best;
+            }
+            zeroingBest = false;
+            return value;
+        }
+
+        int dtz(ChessGame game) {
+            int wdl = searchCaptures(game, true);
+            if (state == SyzygyTable.FAIL || wdl == 0) {
+                // DTZ tables don't store draws
+                return 0;
+            }
+            if (zeroingBest) {
+                return dtzBeforeZeroing(wdl);
+            }
+
+            int dtz = probeTable(game, SyzygyTable.Kind.DTZ, wdl);
+            if (tableState[0] == SyzygyTable.FAIL) {
+                state = SyzygyTable.FAIL;
+                return 0;
+            }
+            if (tableState[0] != SyzygyTable.CHANGE_STM) {
+                return (dtz + (wdl == -1 || wdl == 1 ? 100 : 0)) * Integer.signum(wdl);
+            }
+
+            // The file only has the other side to move; look one ply ahead for the move
+            // that keeps the result and gets to zeroing soonest
+            MoveList moves = new MoveList();
+            game.legalMoves(moves);
+            int minDtz = 0xFFFF;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                boolean zeroingMove = PackedMove.hasFlags(move, PackedMove.CAPTURE)
+                        || game.getBoard().pieceAt(PackedMove.from(move)).getPieceType() == ChessPiece.PieceType.PAWN;
+                game.makeMove(move);
+                try {
+                    // A zeroing move's distance is the one before it; after it, only the
+                    // sign of the result matters
+                    dtz = zeroingMove ? -dtzBeforeZeroing(searchCaptures(game, false)) : -dtz(game);
+                    if (dtz == 1 && game.isInCheckmate(game.getTeamTurn())) {
+                        minDtz = 1;
+                    }
+                }
+                finally {
+                    game.unmakeMove();
+                }
+                if (!zeroingMove) {
+                    dtz += Integer.signum(dtz);
+                }
+                if (dtz < minDtz && Integer.signum(dtz) == Integer.signum(wdl)) {
+                    minDtz = dtz;
+                }
+                if (state == SyzygyTable.FAIL) {
+                    return 0;
+                }
+            }
+            // No legal moves: mated
+            return minDtz == 0xFFFF ? -1 : minDtz;
+        }
+
+        private static int dtzBeforeZeroing(int wdl) {
+            return switch (wdl) {
+                case 2 -> 1;
+                case 1 -> 101;
+                case -1 -> -101;
+                case -2 -> -1;
+                default -> 0;
+            };
+        }
+    }
+}
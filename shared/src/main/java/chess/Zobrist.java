@@ -0,0 +1,50 @@
+package chess;
+
+/**
+ * Random keys for Zobrist hashing.
+ * <p>
+ * A position's key is the XOR of one key per piece on its square, plus keys for the
+ * side to move, the castling rights and the en-passant file. Because XOR undoes itself,
+ * moving a piece only takes two XORs to update the key instead of rehashing the board.
+ * <p>
+ * The keys come from a fixed seed, so the same position hashes the same on every run
+ * and every server.
+ */
+final class Zobrist {
+
+    // Indexed by Bitboards.pieceIndex, then square
+    static final long[][] PIECE_SQUARE = new long[12][64];
+    // XOR'd in when black is to move
+    static final long BLACK_TO_MOVE;
+    // Indexed by the 4-bit castling rights mask
+    static final long[] CASTLING = new long[16];
+    // Indexed by the column (0-7) of the en-passant square
+    static final long[] EN_PASSANT_FILE = new long[8];
+
+    static {
+        long[] seed = {0x9E3779B97F4A7C15L};
+        for (long[] squares : PIECE_SQUARE) {
+            for (int sq = 0; sq < 64; sq++) {
+                squares[sq] = nextRandom(seed);
+            }
+        }
+        BLACK_TO_MOVE = nextRandom(seed);
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = nextRandom(seed);
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = nextRandom(seed);
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    // splitmix64
+    private static long nextRandom(long[] seed) {
+        long z = (seed[0] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
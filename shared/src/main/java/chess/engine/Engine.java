@@ -0,0 +1,198 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.EngineLog;
+import chess.MoveList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computer opponent: picks a move with negamax alpha-beta search.
+ * <p>
+ * The search deepens one ply at a time (iterative deepening) until it runs out of depth,
+ * time or nodes, and answers with the best move of the last iteration that finished.
+ * Each iteration searches the previous best line first, which together with MVV-LVA,
+ * killer and history ordering is what lets alpha-beta cut most of the tree. At the
+ * horizon a capture-only quiescence search settles any trades in progress.
+ * <p>
+ * The game passed in is never changed; the search runs on a copy using the allocation
+ * free makeMove(int)/unmakeMove path. Results are kept in a TranspositionTable, which
+ * can be shared by every engine (and every game) on a server.
+ * <p>
+ * With more than one thread the search is "Lazy SMP": helper threads search the same
+ * root alongside the main thread, half of them one ply ahead and each with its own move
+ * ordering, and all of them write to the same table. They never report a move; they just
+ * fill the table with results the main thread then finds instead of searching. Helpers
+ * come out of the process-wide budget in SearchThreads, so an engine may get fewer than
+ * it asks for when other games are searching too.
+ */
+public class Engine {
+
+    private static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    private final TranspositionTable table;
+    private final int threads;
+
+    /**
+     * A single-threaded engine with its own 16 MB transposition table.
+     */
+    public Engine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * @param table table to keep search results in; may be shared with other engines
+     */
+    public Engine(TranspositionTable table) {
+        this(table, 1);
+    }
+
+    /**
+     * @param table   table to keep search results in; may be shared with other engines
+     * @param threads threads to search with, counting the caller's, if SearchThreads allows
+     */
+    public Engine(TranspositionTable table, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("An engine needs at least one thread: " + threads);
+        }
+        this.table = table;
+        this.threads = threads;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return threads this engine asks for; a search may get fewer
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Searches for the best move for the side to move.
+     *
+     * @param game   game to search; not modified
+     * @param limits when to stop
+     * @return the best move found, with its score and search statistics
+     */
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        long start = System.nanoTime();
+        table.newSearch();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong searchNodes = new AtomicLong();
+        int helperCount = SearchThreads.reserve(threads - 1);
+        Searcher[] helpers = new Searcher[helperCount];
+        List<Future<?>> running = new ArrayList<>(helperCount);
+        SearchResult result;
+        try {
+            for (int i = 0; i < helperCount; i++) {
+                // Copy here, not on the helper thread; the caller's game isn't thread safe
+                Searcher helper = new Searcher(game.copy(), table, limits, start, stop, searchNodes, i + 1);
+                helpers[i] = helper;
+                // Odd helpers run one ply ahead of the main thread
+                int firstDepth = 1 + ((i + 1) & 1);
+                running.add(SearchThreads.helpers().submit(() -> deepen(helper, firstDepth, limits.depth())));
+            }
+            result = mainSearch(game, new Searcher(game.copy(), table, limits, start, stop, searchNodes, 0), limits, start);
+        }
+        finally {
+            stop.set(true);
+            try {
+                awaitHelpers(running);
+            }
+            finally {
+                SearchThreads.release(helperCount);
+            }
+        }
+
+        long[] threadNodes = new long[helperCount + 1];
+        threadNodes[0] = result.nodes();
+        for (int i = 0; i < helperCount; i++) {
+            threadNodes[i + 1] = helpers[i].nodes();
+        }
+        long nodes = Arrays.stream(threadNodes).sum();
+        if (helperCount > 0) {
+            EngineLog.debug(() -> String.format("depth %d, %d threads, nodes per thread %s",
+                    result.depth(), threadNodes.length, Arrays.toString(threadNodes)));
+        }
+        return new SearchResult(result.move(), result.score(), result.depth(), nodes,
+                System.nanoTime() - start, result.pv(), threadNodes);
+    }
+
+    private static SearchResult mainSearch(ChessGame game, Searcher searcher, SearchLimits limits, long start) {
+        SearchResult result = new SearchResult(0, 0, 0, 0, 0, new int[0], new long[0]);
+        for (int depth = 1; depth <= limits.depth(); depth++) {
+            int score = searcher.searchRoot(depth);
+            if (searcher.stopped() && depth > 1) {
+                // Unfinished iteration; keep the last one that completed
+                break;
+            }
+            int[] pv = searcher.principalVariation();
+            result = new SearchResult(pv.length > 0 ? pv[0] : 0, score, depth, searcher.nodes(),
+                    System.nanoTime() - start, pv, new long[0]);
+            if (pv.length == 0 || searcher.stopped() || Math.abs(score) >= SearchResult.MATE - depth) {
+                // No moves at all, out of budget, or a mate that deeper search can't improve
+                break;
+            }
+        }
+        int move = result.move();
+        if (move == 0) {
+            // Stopped before the first root move was done; any legal move beats none
+            MoveList moves = new MoveList();
+            game.legalMoves(moves);
+            move = moves.isEmpty() ? 0 : moves.get(0);
+        }
+        return new SearchResult(move, result.score(), result.depth(), searcher.nodes(),
+                System.nanoTime() - start, result.pv(), new long[0]);
+    }
+
+    // A helper's whole job: deepen until the main thread says stop
+    private static void deepen(Searcher helper, int firstDepth, int maxDepth) {
+        for (int depth = firstDepth; depth <= maxDepth; depth++) {
+            helper.searchRoot(depth);
+            if (helper.stopped()) {
+                return;
+            }
+        }
+    }
+
+    private static void awaitHelpers(List<Future<?>> running) {
+        boolean interrupted = false;
+        for (Future<?> helper : running) {
+            while (true) {
+                try {
+                    helper.get();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    // The helpers are stopping anyway; finish waiting, then pass it on
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    throw new IllegalStateException("Search helper failed", e.getCause());
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param game   game to search; not modified
+     * @param limits when to stop
+     * @return the best move found, or null if the side to move has no legal moves
+     */
+    public ChessMove bestMove(ChessGame game, SearchLimits limits) {
+        return search(game, limits).bestMove();
+    }
+}
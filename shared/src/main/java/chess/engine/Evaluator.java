@@ -0,0 +1,29 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+/**
+ * Static evaluation: how good the position looks for the side to move, in centipawns,
+ * without looking at any moves.
+ * <p>
+ * The board keeps a tapered material + piece-square score up to date as moves are made
+ * and unmade (see PieceSquareTables), so evaluating a leaf is a read and a blend, not a
+ * scan of the board.
+ */
+final class Evaluator {
+
+    // Indexed by PieceType.ordinal(); the king is never traded, so it's worth nothing here.
+    // Only used to order captures; the evaluation itself uses PieceSquareTables.
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    private Evaluator() {
+    }
+
+    /**
+     * @return material and placement score from the point of view of the side to move
+     */
+    static int evaluate(ChessGame game) {
+        int score = game.getBoard().pieceSquareScore();
+        return game.getTeamTurn() == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+}
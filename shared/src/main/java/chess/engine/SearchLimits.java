@@ -0,0 +1,56 @@
+package chess.engine;
+
+/**
+ * How long a search may run. Whichever limit is hit first ends it; a limit of 0 means
+ * no limit of that kind (but depth is always capped at MAX_DEPTH).
+ *
+ * @param depth      deepest iteration to search, in plies
+ * @param moveMillis wall-clock time for the whole search, in milliseconds
+ * @param nodes      number of positions to visit
+ */
+public record SearchLimits(int depth, long moveMillis, long nodes) {
+
+    public static final int MAX_DEPTH = 64;
+
+    public SearchLimits {
+        if (depth < 0 || moveMillis < 0 || nodes < 0) {
+            throw new IllegalArgumentException("Search limits can't be negative");
+        }
+        if (depth == 0 || depth > MAX_DEPTH) {
+            depth = MAX_DEPTH;
+        }
+    }
+
+    /**
+     * @return limits that stop after a fixed depth
+     */
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    /**
+     * @return limits that stop after a fixed time
+     */
+    public static SearchLimits time(long moveMillis) {
+        return new SearchLimits(0, moveMillis, 0);
+    }
+
+    /**
+     * @return limits that stop after a fixed number of nodes
+     */
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(0, 0, nodes);
+    }
+
+    public SearchLimits withDepth(int depth) {
+        return new SearchLimits(depth, moveMillis, nodes);
+    }
+
+    public SearchLimits withTime(long moveMillis) {
+        return new SearchLimits(depth, moveMillis, nodes);
+    }
+
+    public SearchLimits withNodes(long nodes) {
+        return new SearchLimits(depth, moveMillis, nodes);
+    }
+}
@@ -0,0 +1,61 @@
+package chess.engine;
+
+import chess.ChessMove;
+import chess.PackedMove;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a search found.
+ *
+ * @param move        best move in PackedMove form, or 0 if the side to move has no moves
+ *                    (0 can't be a real move, since it would start and end on a1)
+ * @param score       score of the best move in centipawns, from the mover's side; mates are
+ *                    reported as MATE minus the number of plies to mate
+ * @param depth       deepest iteration that finished
+ * @param nodes       positions visited, by all threads together
+ * @param nanos       time the search took
+ * @param pv          principal variation (expected line of play), in PackedMove form
+ * @param threadNodes positions visited by each thread, the main thread first
+ */
+public record SearchResult(int move, int score, int depth, long nodes, long nanos, int[] pv, long[] threadNodes) {
+
+    public static final int MATE = 32000;
+
+    /**
+     * @return the best move, or null if the side to move has no legal moves
+     */
+    public ChessMove bestMove() {
+        return move == 0 ? null : PackedMove.toChessMove(move);
+    }
+
+    /**
+     * @return the principal variation as ChessMoves
+     */
+    public List<ChessMove> principalVariation() {
+        List<ChessMove> moves = new ArrayList<>(pv.length);
+        for (int move : pv) {
+            moves.add(PackedMove.toChessMove(move));
+        }
+        return moves;
+    }
+
+    /**
+     * @return true if the score is a forced mate for either side
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= MATE - SearchLimits.MAX_DEPTH * 2;
+    }
+
+    /**
+     * @return number of threads that searched
+     */
+    public int threads() {
+        return threadNodes.length;
+    }
+
+    public long nodesPerSecond() {
+        return nanos > 0 ? nodes * 1_000_000_000L / nanos : 0;
+    }
+}
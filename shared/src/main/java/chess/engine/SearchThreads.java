@@ -0,0 +1,84 @@
+package chess.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The budget of search threads shared by every engine in the process.
+ * <p>
+ * A multi-threaded search counts its own (calling) thread plus its helpers, and only gets
+ * helpers while the total number of threads searching stays within the limit. So with
+ * many games searching at once each one falls back to a single thread, and with only one
+ * game it gets the whole machine. The calling thread always searches, even when the
+ * budget is used up, so a search never waits for a thread.
+ * <p>
+ * The limit starts at the {@code chess.search.threads} system property, or the number of
+ * processors, and can be changed at runtime with {@link #setLimit}.
+ */
+public final class SearchThreads {
+
+    private static volatile int limit = Integer.getInteger("chess.search.threads",
+            Runtime.getRuntime().availableProcessors());
+    private static final AtomicInteger searching = new AtomicInteger();
+
+    // Helpers are daemon threads, so a search in progress never keeps the JVM alive
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService HELPERS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "search-helper-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SearchThreads() {
+    }
+
+    /**
+     * @param threads most threads that may search at once across all games (at least 1)
+     */
+    public static void setLimit(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search thread limit must be at least 1: " + threads);
+        }
+        limit = threads;
+    }
+
+    public static int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return number of threads searching right now, across all games
+     */
+    public static int searching() {
+        return searching.get();
+    }
+
+    /**
+     * Counts the calling thread as searching and reserves up to wantedHelpers more.
+     * Every call has to be matched by a release() with the number it returned.
+     *
+     * @param wantedHelpers helper threads the search would like
+     * @return helper threads it may start (possibly 0)
+     */
+    static int reserve(int wantedHelpers) {
+        while (true) {
+            int current = searching.get();
+            int helpers = Math.max(0, Math.min(wantedHelpers, limit - current - 1));
+            if (searching.compareAndSet(current, current + 1 + helpers)) {
+                return helpers;
+            }
+        }
+    }
+
+    /**
+     * @param helpers the number reserve() returned
+     */
+    static void release(int helpers) {
+        searching.addAndGet(-1 - helpers);
+    }
+
+    static ExecutorService helpers() {
+        return HELPERS;
+    }
+}
@@ -0,0 +1,420 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.MoveList;
+import chess.PackedMove;
+import chess.Tablebases;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One thread's alpha-beta search. Holds everything the search reuses between nodes
+ * (move buffers, killer moves, history scores, the PV table), so searching doesn't
+ * allocate. Not thread safe; every thread needs its own, though they can all share
+ * one TranspositionTable.
+ * <p>
+ * In a Lazy SMP search the helpers' Searchers start with slightly different history
+ * scores, so they order quiet moves differently and spread out over the tree instead of
+ * all searching the same nodes in the same order.
+ */
+final class Searcher {
+
+    static final int MATE = SearchResult.MATE;
+    static final int INFINITY = MATE + 1;
+    private static final int MAX_PLY = SearchLimits.MAX_DEPTH * 2;
+    // Limits are checked once every this many nodes (minus one), not at every node
+    private static final int CHECK_INTERVAL = 2047;
+
+    // Move ordering: hash/PV move, then captures and promotions (MVV-LVA), then the
+    // two killers for this ply, then everything else by history score
+    private static final int PV_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    private static final int HISTORY_MAX = 1 << 26;
+
+    // A tablebase win: above any evaluation, below any mate the search finds itself
+    static final int TABLEBASE_WIN = MATE - 2 * MAX_PLY;
+    // Scores above this (mates and tablebase wins) count plies to the result
+    private static final int DISTANCE_SCORES = TABLEBASE_WIN - MAX_PLY;
+
+    private final ChessGame game;
+    private final TranspositionTable table;
+    private final SearchLimits limits;
+    private final long deadline;
+    // Set by whoever decides the whole search is over (the main thread, for helpers)
+    private final AtomicBoolean stopSignal;
+    // Nodes visited by all of the search's threads, for the node limit
+    private final AtomicLong searchNodes;
+    // Most pieces any installed endgame table has, 0 with none
+    private final int tablebasePieces = Tablebases.maxPieces();
+
+    private final MoveList[] moveLists = new MoveList[MAX_PLY];
+    private final int[][] moveScores = new int[MAX_PLY][];
+    private final int[][] killers = new int[MAX_PLY][2];
+    // Indexed by the mover's color, then from * 64 + to
+    private final int[][] history = new int[2][64 * 64];
+    // Triangular PV table: pv[ply] holds the best line found from that ply on
+    private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    // Best line from the last iteration, searched first in the next one
+    private int[] previousPv = new int[0];
+
+    private long nodes;
+    // This thread's nodes already added to searchNodes
+    private long reportedNodes;
+    private boolean stopped;
+
+    /**
+     * @param game       game to search; changed while searching and put back afterward
+     * @param table      table to share results through
+     * @param limits     when to stop
+     * @param startNanos System.nanoTime() when the search started
+     */
+    Searcher(ChessGame game, TranspositionTable table, SearchLimits limits, long startNanos) {
+        this(game, table, limits, startNanos, new AtomicBoolean(), new AtomicLong(), 0);
+    }
+
+    /**
+     * @param game        game to search; changed while searching and put back afterward
+     * @param table       table to share results through
+     * @param limits      when to stop
+     * @param startNanos  System.nanoTime() when the search started
+     * @param stopSignal  stops the search as soon as it is set
+     * @param searchNodes node count shared by all the search's threads; the node limit is
+     *                    checked against it, not against this thread's nodes
+     * @param helperId    0 for the main thread; helpers get their own move ordering from it
+     */
+    Searcher(ChessGame game, TranspositionTable table, SearchLimits limits, long startNanos,
+             AtomicBoolean stopSignal, AtomicLong searchNodes, int helperId) {
+        this.game = game;
+        this.table = table;
+        this.limits = limits;
+        this.deadline = limits.moveMillis() > 0 ? startNanos + limits.moveMillis() * 1_000_000L : Long.MAX_VALUE;
+        this.stopSignal = stopSignal;
+        this.searchNodes = searchNodes;
+        for (int i = 0; i < MAX_PLY; i++) {
+            moveLists[i] = new MoveList();
+            moveScores[i] = new int[256];
+        }
+        if (helperId > 0) {
+            // Small random history scores: enough to break ties between quiet moves
+            // differently in every helper, and soon outweighed by real cutoffs
+            SplittableRandom random = new SplittableRandom(helperId);
+            for (int[] scores : history) {
+                for (int i = 0; i < scores.length; i++) {
+                    scores[i] = random.nextInt(64);
+                }
+            }
+        }
+    }
+
+    long nodes() {
+        return nodes;
+    }
+
+    boolean stopped() {
+        return stopped;
+    }
+
+    /**
+     * @return the best line from the root found by the last finished search
+     */
+    int[] principalVariation() {
+        int[] line = new int[pvLength[0]];
+        System.arraycopy(pv[0], 0, line, 0, line.length);
+        return line;
+    }
+
+    /**
+     * One iteration of iterative deepening: a full-width search of the root to depth.
+     * The line the last iteration liked best is searched first.
+     *
+     * @return score of the root, or 0 if the search had to stop partway through
+     */
+    int searchRoot(int depth) {
+        previousPv = principalVariation();
+        return negamax(depth, 0, -INFINITY, INFINITY, pvMoveAt(0));
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta, int pvMove) {
+        pvLength[ply] = ply;
+        if ((++nodes & CHECK_INTERVAL) == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (ply > 0 && (game.getHalfmoveClock() >= 100 || game.repetitionCount() > 1)) {
+            // Repeating a position (even once) or running out the clock is a draw
+            return 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return Evaluator.evaluate(game);
+        }
+
+        // A result from the table that went at least as deep can answer for this node,
+        // as long as its bound says enough; either way its move gets searched first
+        long key = game.positionKey();
+        long entry = table.probe(key);
+        int hashMove = 0;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        // Right after a capture or pawn move (when the fifty-move count starts over) an
+        // endgame table, if there is one, knows the result without searching
+        if (ply > 0 && tablebasePieces > 0 && game.getHalfmoveClock() == 0
+                && Long.bitCount(game.getBoard().occupancy(ChessGame.TeamColor.WHITE)
+                | game.getBoard().occupancy(ChessGame.TeamColor.BLACK)) <= tablebasePieces) {
+            Optional<Tablebases.Wdl> wdl = Tablebases.probeWdl(game);
+            if (wdl.isPresent()) {
+                int score = switch (wdl.get()) {
+                    // Sooner wins are better, like mates
+                    case WIN -> TABLEBASE_WIN - ply;
+                    case LOSS -> -TABLEBASE_WIN + ply;
+                    // Won or lost, but not within fifty moves
+                    case CURSED_WIN -> 1;
+                    case BLESSED_LOSS -> -1;
+                    case DRAW -> 0;
+                };
+                table.store(key, 0, toTable(score, ply), depth, TranspositionTable.EXACT);
+                return score;
+            }
+        }
+
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        if (inCheck) {
+            // Don't let the horizon hide a mate; look one ply further when in check
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        game.legalMoves(moves);
+        if (moves.isEmpty()) {
+            // Checkmate (sooner is worse) or stalemate
+            return inCheck ? -MATE + ply : 0;
+        }
+        // On the previous iteration's line, follow it; elsewhere the table's move is best
+        scoreMoves(moves, ply, pvMove != 0 ? pvMove : hashMove);
+
+        int colorIndex = game.getTeamTurn().ordinal();
+        int originalAlpha = alpha;
+        int bestMove = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = nextMove(moves, ply, i);
+            game.makeMove(move);
+            // Only the first move of the PV gets to pass the PV on
+            int childPv = (i == 0 && pvMove != 0) ? pvMoveAt(ply + 1) : 0;
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha, childPv);
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+                updatePv(ply, move);
+                if (score >= beta) {
+                    if (!isTactical(move)) {
+                        rememberQuietCutoff(move, ply, depth, colorIndex);
+                    }
+                    table.store(key, move, toTable(beta, ply), depth, TranspositionTable.LOWER);
+                    return beta;
+                }
+            }
+        }
+        table.store(key, bestMove, toTable(alpha, ply), depth,
+                alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER);
+        return alpha;
+    }
+
+    // Mate and tablebase scores count plies from the root; the table needs them counted
+    // from the position itself, since the same position can come up at any ply
+    static int toTable(int score, int ply) {
+        if (score > DISTANCE_SCORES) {
+            return score + ply;
+        }
+        if (score < -DISTANCE_SCORES) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    static int fromTable(int score, int ply) {
+        if (score > DISTANCE_SCORES) {
+            return score - ply;
+        }
+        if (score < -DISTANCE_SCORES) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    // Only captures (and promotions) from here on, until the position is quiet
+    private int quiesce(int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if ((++nodes & CHECK_INTERVAL) == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        // "Stand pat": the side to move can usually do at least as well as doing nothing
+        int standPat = Evaluator.evaluate(game);
+        if (standPat >= beta || ply >= MAX_PLY - 1) {
+            return standPat >= beta ? beta : standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        game.legalMoves(moves);
+        // Drop the quiet moves, keeping the list in place
+        int kept = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            if (isTactical(moves.get(i))) {
+                moves.swap(kept++, i);
+            }
+        }
+        moves.truncate(kept);
+        scoreMoves(moves, ply, 0);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = nextMove(moves, ply, i);
+            game.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (score >= beta) {
+                    return beta;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    private static boolean isTactical(int move) {
+        return PackedMove.hasFlags(move, PackedMove.CAPTURE) || PackedMove.promotion(move) != null;
+    }
+
+    private void checkLimits() {
+        // Only every CHECK_INTERVAL nodes, so the shared counter is hardly contended
+        long total = searchNodes.addAndGet(nodes - reportedNodes);
+        reportedNodes = nodes;
+        if (limits.nodes() > 0 && total >= limits.nodes()) {
+            // Out of nodes for every thread, not just this one
+            stopSignal.set(true);
+        }
+        if (System.nanoTime() >= deadline || stopSignal.get()) {
+            stopped = true;
+        }
+    }
+
+    private int pvMoveAt(int ply) {
+        return ply < previousPv.length ? previousPv[ply] : 0;
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][ply] = move;
+        int length = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, length - ply - 1);
+        pvLength[ply] = Math.max(length, ply + 1);
+    }
+
+    private void rememberQuietCutoff(int move, int ply, int depth, int colorIndex) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] scores = history[colorIndex];
+        int index = PackedMove.from(move) * 64 + PackedMove.to(move);
+        scores[index] += depth * depth;
+        if (scores[index] >= HISTORY_MAX) {
+            // Keep history below the killer scores by halving everything now and then
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] /= 2;
+            }
+        }
+    }
+
+    private void scoreMoves(MoveList moves, int ply, int pvMove) {
+        ChessBoard board = game.getBoard();
+        int[] scores = moveScores[ply];
+        int[] colorHistory = history[game.getTeamTurn().ordinal()];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            if (pvMove != 0 && PackedMove.sameMove(move, pvMove)) {
+                score = PV_SCORE;
+            }
+            else if (isTactical(move)) {
+                // Most valuable victim first, cheapest attacker breaking ties
+                ChessPiece victim = board.pieceAt(PackedMove.to(move));
+                int victimValue = victim == null ? Evaluator.PIECE_VALUES[ChessPiece.PieceType.PAWN.ordinal()]
+                        : Evaluator.PIECE_VALUES[victim.getPieceType().ordinal()];
+                ChessPiece.PieceType promotion = PackedMove.promotion(move);
+                if (promotion != null) {
+                    victimValue += Evaluator.PIECE_VALUES[promotion.ordinal()];
+                }
+                int attackerType = board.pieceAt(PackedMove.from(move)).getPieceType().ordinal();
+                score = CAPTURE_SCORE + victimValue * 16 - Evaluator.PIECE_VALUES[attackerType] / 16;
+            }
+            else if (move == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            }
+            else if (move == killers[ply][1]) {
+                score = KILLER_SCORE;
+            }
+            else {
+                score = colorHistory[PackedMove.from(move) * 64 + PackedMove.to(move)];
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Selection sort, one step at a time: most cutoffs come early, so sorting the whole
+    // list up front would mostly be wasted
+    private int nextMove(MoveList moves, int ply, int index) {
+        int[] scores = moveScores[ply];
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            moves.swap(index, best);
+            int score = scores[index];
+            scores[index] = scores[best];
+            scores[best] = score;
+        }
+        return moves.get(index);
+    }
+}
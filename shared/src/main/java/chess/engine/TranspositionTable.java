@@ -0,0 +1,211 @@
+package chess.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size hash table of search results, keyed by ChessGame.positionKey(), that any
+ * number of search threads can share without locks.
+ * <p>
+ * Entries are two longs in one big long[]: the key XOR'd with the data, then the data.
+ * Two threads writing the same slot at once can leave a key from one write next to data
+ * from the other, but then key ^ data no longer gives back the key being probed, so the
+ * torn entry just reads as a miss. No locks, no CAS, no objects per entry.
+ * <p>
+ * Slots come in buckets of two. A new result replaces the entry for the same position,
+ * otherwise whichever of the two is least worth keeping: entries from older searches
+ * (see newSearch) go first, then shallower ones.
+ * <p>
+ * Data layout of an entry:
+ * <pre>
+ * bits  0-18  best move (PackedMove), 0 if none
+ * bits 19-34  score + 32768
+ * bits 35-42  depth searched
+ * bits 43-44  bound (EXACT, LOWER or UPPER)
+ * bits 45-52  age: the search generation that wrote it
+ * </pre>
+ */
+public final class TranspositionTable {
+
+    // Score is exact, a lower bound (the search failed high) or an upper bound (failed low)
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int BUCKET_LONGS = 4;
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * @param megabytes memory to use; rounded down to a power of two number of entries
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Transposition table needs at least 1 MB");
+        }
+        long entries = Long.highestOneBit((long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        // A Java array can't have more than 2^31 - 1 elements
+        entries = Math.min(entries, 1L << 29);
+        table = new long[(int) entries * 2];
+        bucketMask = (int) (entries / 2) - 1;
+    }
+
+    /**
+     * Starts a new search generation, so entries from earlier searches get replaced
+     * first. With many games sharing a table this just means "recently written".
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * @return the entry's data for this key, or 0 if the table doesn't have it
+     */
+    public long probe(long key) {
+        probes.increment();
+        int bucket = bucketIndex(key);
+        for (int slot = bucket; slot < bucket + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Saves a search result.
+     *
+     * @param key   position key
+     * @param move  best move found (PackedMove), or 0
+     * @param score score, already adjusted so mate scores don't depend on the ply
+     * @param depth depth searched
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        stores.increment();
+        int bucket = bucketIndex(key);
+        int currentAge = age;
+
+        int victim = bucket;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int slot = bucket; slot < bucket + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key) {
+                // Same position: keep the old best move if this search didn't find one
+                if (move == 0) {
+                    move = move(data);
+                }
+                victim = slot;
+                break;
+            }
+            // Old entries are worth nothing; otherwise deeper is worth more
+            int worth = data == 0 ? -1 : age(data) != currentAge ? 0 : depth(data) + 1;
+            if (worth < victimWorth) {
+                victimWorth = worth;
+                victim = slot;
+            }
+        }
+
+        long data = (move & 0x7FFFFL)
+                | ((long) (score + 32768) & 0xFFFF) << 19
+                | ((long) Math.min(depth, 255)) << 35
+                | ((long) bound) << 43
+                | ((long) currentAge) << 45;
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    private int bucketIndex(long key) {
+        // High bits pick the bucket; the full key is still checked on probe
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_LONGS;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x7FFFF);
+    }
+
+    public static int score(long data) {
+        return (int) ((data >>> 19) & 0xFFFF) - 32768;
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 35) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 43) & 0x3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 45) & 0xFF);
+    }
+
+    /**
+     * Empties the table and resets the statistics. Don't call while a search is using it.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    /**
+     * @return number of entries the table holds
+     */
+    public int capacity() {
+        return table.length / 2;
+    }
+
+    public long probes() {
+        return probes.sum();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long stores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return fraction of probes that found their position
+     */
+    public double hitRate() {
+        long probeCount = probes.sum();
+        return probeCount == 0 ? 0 : (double) hits.sum() / probeCount;
+    }
+
+    /**
+     * How full the table is with entries from the current generation, in parts per
+     * thousand, estimated from the first thousand entries (the UCI "hashfull" number).
+     */
+    public int hashfull() {
+        int sample = Math.min(1000, capacity());
+        int currentAge = age;
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = table[i * 2 + 1];
+            if (data != 0 && age(data) == currentAge) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TranspositionTable[%d entries, %d probes, %.1f%% hits, %d stores, hashfull %d]",
+                capacity(), probes(), hitRate() * 100, stores(), hashfull());
+    }
+}
@@ -1,6 +1,8 @@
 package model;
 
 import chess.ChessGame;
+import chess.ChessGameAdapter;
+import com.google.gson.annotations.JsonAdapter;
 
 public class GameData {
 
@@ -8,6 +10,8 @@ public class GameData {
     public String whiteUsername;
     public String blackUsername;
     public String gameName;
+    // Sent and stored as FEN rather than a reflective dump of the board
+    @JsonAdapter(ChessGameAdapter.class)
     public ChessGame game;
 
 }
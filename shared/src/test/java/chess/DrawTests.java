@@ -0,0 +1,93 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class DrawTests {
+
+    private static void play(ChessGame game, String... moves) throws InvalidMoveException {
+        for (String move : moves) {
+            ChessPosition start = ChessPosition.of(move.charAt(1) - '0', move.charAt(0) - 'a' + 1);
+            ChessPosition end = ChessPosition.of(move.charAt(3) - '0', move.charAt(2) - 'a' + 1);
+            game.makeMove(new ChessMove(start, end, null));
+        }
+    }
+
+    @Test
+    @DisplayName("Threefold Repetition")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(1, game.repetitionCount());
+
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(2, game.repetitionCount());
+        Assertions.assertFalse(game.isDraw());
+
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(3, game.repetitionCount());
+        Assertions.assertTrue(game.isThreefoldRepetition());
+        Assertions.assertTrue(game.isDraw());
+    }
+
+    @Test
+    @DisplayName("Pawn Move Resets Repetitions")
+    public void pawnMoveResets() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8", "e2e3");
+        Assertions.assertEquals(0, game.getHalfmoveClock());
+        play(game, "g8f6", "g1f3", "f6g8", "f3g1");
+        // Only the positions since e3 count
+        Assertions.assertEquals(4, game.getHalfmoveClock());
+        Assertions.assertEquals(2, game.repetitionCount());
+        Assertions.assertFalse(game.isThreefoldRepetition());
+    }
+
+    @Test
+    @DisplayName("Unmake Restores Clock And Repetitions")
+    public void unmakeRestores() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "g1f3", "g8f6", "f3g1");
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            game.unmakeMove();
+        }
+        Assertions.assertEquals(3, game.getHalfmoveClock());
+        play(game, "f6g8");
+        Assertions.assertEquals(2, game.repetitionCount());
+    }
+
+    @Test
+    @DisplayName("Fifty-Move Rule")
+    public void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/R7/4K3 w - - 99 80");
+        Assertions.assertFalse(game.isFiftyMoveDraw());
+        play(game, "a2a3");
+        Assertions.assertEquals(100, game.getHalfmoveClock());
+        Assertions.assertTrue(game.isFiftyMoveDraw());
+        Assertions.assertEquals("4k3/8/8/8/8/R7/8/4K3 b - - 100 80", game.toFen());
+
+        // Mate on the hundredth ply still wins
+        ChessGame mate = ChessGame.fromFen("k7/8/1K6/8/8/8/8/7R w - - 99 80");
+        play(mate, "h1h8");
+        Assertions.assertTrue(mate.isInCheckmate(ChessGame.TeamColor.BLACK));
+        Assertions.assertFalse(mate.isFiftyMoveDraw());
+    }
+
+    @Test
+    @DisplayName("Insufficient Material")
+    public void insufficientMaterial() {
+        Assertions.assertTrue(ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1").isInsufficientMaterial());
+        Assertions.assertTrue(ChessGame.fromFen("4k3/8/8/8/8/8/8/4KN2 w - - 0 1").isInsufficientMaterial());
+        // c1 and f8 are both dark squares; d1 and f1 are both light
+        Assertions.assertTrue(ChessGame.fromFen("4kb2/8/8/8/8/8/8/2B1K3 w - - 0 1").isInsufficientMaterial());
+        Assertions.assertTrue(ChessGame.fromFen("4k3/8/8/8/8/8/8/3BKB2 w - - 0 1").isInsufficientMaterial());
+
+        Assertions.assertFalse(ChessGame.fromFen("4k3/8/8/8/8/8/8/2B1KB2 w - - 0 1").isInsufficientMaterial());
+        Assertions.assertFalse(ChessGame.fromFen("4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1").isInsufficientMaterial());
+        Assertions.assertFalse(ChessGame.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").isInsufficientMaterial());
+        Assertions.assertFalse(new ChessGame().isInsufficientMaterial());
+    }
+}
@@ -0,0 +1,37 @@
+package chess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EngineLogTests {
+
+    @AfterEach
+    public void restoreSink() {
+        EngineLog.setSink(null);
+    }
+
+    @Test
+    @DisplayName("Level Names Ignore Case")
+    public void levelNames() {
+        Assertions.assertEquals(EngineLog.Level.DEBUG, EngineLog.parseLevel("debug"));
+        Assertions.assertEquals(EngineLog.Level.TRACE, EngineLog.parseLevel(" Trace "));
+        Assertions.assertEquals(EngineLog.Level.OFF, EngineLog.parseLevel("OFF"));
+        Assertions.assertEquals(EngineLog.Level.WARN, EngineLog.parseLevel(null));
+        Assertions.assertEquals(EngineLog.Level.WARN, EngineLog.parseLevel(""));
+    }
+
+    @Test
+    @DisplayName("Bad Level Falls Back To WARN")
+    public void badLevel() {
+        List<String> warnings = new ArrayList<>();
+        EngineLog.setSink((level, message) -> warnings.add(level + " " + message));
+        Assertions.assertEquals(EngineLog.Level.WARN, EngineLog.parseLevel("verbose"));
+        Assertions.assertEquals(1, warnings.size());
+        Assertions.assertTrue(warnings.getFirst().startsWith("WARN"), warnings.getFirst());
+    }
+}
@@ -0,0 +1,96 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class EvaluationTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String POSITION_4 = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+
+    // Walks the whole move tree, checking the incremental score against a rescan everywhere
+    private static int checkTree(ChessGame game, int depth) {
+        Assertions.assertEquals(PieceSquareTables.evaluate(game.getBoard()), game.getBoard().pieceSquareScore(),
+                game.toFen());
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        int nodes = 1;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            nodes += checkTree(game, depth - 1);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    // Same position with the colors swapped: rows flipped and upper/lower case swapped
+    private static String mirror(String placement) {
+        String[] rows = placement.split("/");
+        StringBuilder mirrored = new StringBuilder();
+        for (int i = rows.length - 1; i >= 0; i--) {
+            for (char c : rows[i].toCharArray()) {
+                mirrored.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+            }
+            if (i > 0) {
+                mirrored.append('/');
+            }
+        }
+        return mirrored.toString();
+    }
+
+    @Test
+    @DisplayName("Start Position Is Even")
+    public void startPosition() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        Assertions.assertEquals(0, board.pieceSquareScore());
+        Assertions.assertEquals(0, PieceSquareTables.evaluate(board));
+    }
+
+    @Test
+    @DisplayName("Incremental Score Matches Rescan")
+    public void incrementalMatchesRescan() {
+        // Kiwipete has castling and en passant, position 4 has promotions
+        for (String fen : new String[]{KIWIPETE, POSITION_4}) {
+            ChessGame game = ChessGame.fromFen(fen);
+            int before = game.getBoard().pieceSquareScore();
+            Assertions.assertTrue(checkTree(game, 3) > 1000);
+            Assertions.assertEquals(before, game.getBoard().pieceSquareScore(), "Score changed after unmaking");
+        }
+
+        // addPiece goes through the same bookkeeping
+        ChessBoard board = ChessBoard.fromFen("4k3/8/8/8/8/8/8/4K3");
+        board.addPiece(ChessPosition.of(4, 4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        board.addPiece(ChessPosition.of(4, 4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        Assertions.assertEquals(PieceSquareTables.evaluate(board), board.pieceSquareScore());
+        Assertions.assertEquals(PieceSquareTables.evaluate(new ChessBoard(board)), new ChessBoard(board).pieceSquareScore());
+    }
+
+    @Test
+    @DisplayName("Mirrored Position Has Opposite Score")
+    public void mirrored() {
+        String placement = KIWIPETE.split(" ")[0];
+        ChessBoard board = ChessBoard.fromFen(placement);
+        ChessBoard flipped = ChessBoard.fromFen(mirror(placement));
+        Assertions.assertNotEquals(0, board.pieceSquareScore());
+        Assertions.assertEquals(-board.pieceSquareScore(), flipped.pieceSquareScore());
+    }
+
+    @Test
+    @DisplayName("Score Tapers From Middlegame To Endgame")
+    public void tapered() {
+        // With everything on the board the king belongs behind its pawns...
+        ChessBoard castled = ChessBoard.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQ1RK1");
+        ChessBoard central = ChessBoard.fromFen("rnbqkbnr/pppppppp/8/8/4K3/8/PPPPPPPP/RNBQ1R2");
+        Assertions.assertTrue(castled.pieceSquareScore() > central.pieceSquareScore());
+
+        // ...but with only pawns left it should head for the center
+        ChessBoard pawnsCorner = ChessBoard.fromFen("4k3/pppppppp/8/8/8/8/PPPPPPPP/7K");
+        ChessBoard pawnsCenter = ChessBoard.fromFen("4k3/pppppppp/8/8/4K3/8/PPPPPPPP/8");
+        Assertions.assertTrue(pawnsCenter.pieceSquareScore() > pawnsCorner.pieceSquareScore());
+    }
+}
@@ -0,0 +1,100 @@
+package chess;
+
+import com.google.gson.Gson;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class FenTests {
+
+    @Test
+    @DisplayName("FEN Round Trip")
+    public void fenRoundTrip() {
+        for (Perft.ReferencePosition position : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = ChessGame.fromFen(position.fen());
+            ChessGame reparsed = ChessGame.fromFen(game.toFen());
+            Assertions.assertEquals(game, reparsed, String.format("%s changed after a round trip", position.name()));
+            Assertions.assertEquals(position.fen().split(" ")[0], game.getBoard().toFen(),
+                    "Wrong piece placement");
+        }
+    }
+
+    @Test
+    @DisplayName("Castling And En Passant Fields")
+    public void specialMoveFields() {
+        String fen = "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 1";
+        Assertions.assertEquals(fen, ChessGame.fromFen(fen).toFen());
+        Assertions.assertEquals(ChessGame.fromFen(fen), PositionCodec.decode(PositionCodec.encode(ChessGame.fromFen(fen))));
+
+        // No white pawn can take on a6, so the square is dropped
+        Assertions.assertEquals("4k3/8/8/p7/8/8/8/4K2R w K - 0 1",
+                ChessGame.fromFen("4k3/8/8/p7/8/8/8/4K2R w Kq a6 0 1").toFen());
+        Assertions.assertNotEquals(ChessGame.fromFen(fen).positionKey(),
+                ChessGame.fromFen(fen.replace("f6", "-")).positionKey());
+
+        // A black pawn is next to d6, but no black pawn just moved past it: a knight is in
+        // front of it, or something still stands behind it, so the square is dropped
+        Assertions.assertEquals("4k3/8/8/3nP3/8/8/8/4K3 w - - 0 1",
+                ChessGame.fromFen("4k3/8/8/3nP3/8/8/8/4K3 w - d6 0 1").toFen());
+        Assertions.assertEquals("4k3/3b4/8/3pP3/8/8/8/4K3 w - - 0 1",
+                ChessGame.fromFen("4k3/3b4/8/3pP3/8/8/8/4K3 w - d6 0 1").toFen());
+        Assertions.assertEquals("4k3/8/8/3pP3/8/8/8/4K3 w - - 0 1",
+                ChessGame.fromFen("4k3/8/8/3pP3/8/8/8/4K3 w - d3 0 1").toFen());
+        Assertions.assertEquals("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1",
+                ChessGame.fromFen("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1").toFen());
+    }
+
+    @Test
+    @DisplayName("Default Board Matches Start Position")
+    public void defaultBoard() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        Assertions.assertEquals(board, ChessBoard.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR"));
+        Assertions.assertEquals(Fen.START_POSITION, new ChessGame().toFen());
+    }
+
+    @Test
+    @DisplayName("Malformed FEN Rejected")
+    public void malformedFen() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8 w"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("9/8/8/8/8/8/8/8 w"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen("8/8/8/8/8/8/8/8 x"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessBoard.fromFen("x7/8/8/8/8/8/8/8"));
+    }
+
+    @Test
+    @DisplayName("Binary Codec Round Trip")
+    public void codecRoundTrip() {
+        for (Perft.ReferencePosition position : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = ChessGame.fromFen(position.fen());
+            byte[] bytes = PositionCodec.encode(game);
+            Assertions.assertTrue(bytes.length <= 29, String.format("%s took %d bytes", position.name(), bytes.length));
+            ChessGame decoded = PositionCodec.decode(bytes);
+            Assertions.assertEquals(game, decoded, String.format("%s changed after a round trip", position.name()));
+            Assertions.assertEquals(game.toFen(), decoded.toFen(), "Move counters changed after a round trip");
+            Assertions.assertEquals(game.positionKey(), decoded.positionKey());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(new byte[3]));
+
+        // Games stored in this form are reloaded at the move they were on
+        ChessGame late = ChessGame.fromFen("8/8/4k3/8/8/4K3/8/8 b - - 37 300");
+        Assertions.assertEquals(300, PositionCodec.decode(PositionCodec.encode(late)).getFullmoveNumber());
+    }
+
+    @Test
+    @DisplayName("GameData Serializes Game as FEN")
+    public void gameDataJson() {
+        GameData data = new GameData();
+        data.gameID = 7;
+        data.gameName = "fen";
+        data.game = ChessGame.fromFen(Perft.REFERENCE_POSITIONS.get(1).fen());
+
+        Gson gson = new Gson();
+        String json = gson.toJson(data);
+        Assertions.assertTrue(json.contains(data.game.toFen()), json);
+        GameData read = gson.fromJson(json, GameData.class);
+        Assertions.assertEquals(data.game, read.game);
+        Assertions.assertEquals(data.gameName, read.gameName);
+    }
+}
@@ -0,0 +1,80 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class HistoryTests {
+
+    private static void play(ChessGame game, String... moves) throws InvalidMoveException {
+        for (String move : moves) {
+            ChessPosition start = ChessPosition.of(move.charAt(1) - '0', move.charAt(0) - 'a' + 1);
+            ChessPosition end = ChessPosition.of(move.charAt(3) - '0', move.charAt(2) - 'a' + 1);
+            game.makeMove(new ChessMove(start, end, null));
+        }
+    }
+
+    @Test
+    @DisplayName("Moves Are Recorded In Order")
+    public void recordsMoves() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "e2e4", "e7e5", "g1f3");
+        Assertions.assertEquals(3, game.getHistorySize());
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null),
+                game.getMoveHistory().getFirst());
+
+        // A rejected move isn't recorded
+        Assertions.assertThrows(InvalidMoveException.class, () -> play(game, "e5e3"));
+        Assertions.assertEquals(3, game.getHistorySize());
+    }
+
+    @Test
+    @DisplayName("Replay Any Ply")
+    public void replay() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        ChessGame afterTwo = new ChessGame();
+        play(afterTwo, "d2d4", "d7d5");
+        play(game, "d2d4", "d7d5", "c2c4", "d5c4");
+
+        Assertions.assertEquals(new ChessGame(), game.replay(0));
+        Assertions.assertEquals(afterTwo, game.replay(2));
+        Assertions.assertEquals(2, game.replay(2).getHistorySize());
+        Assertions.assertEquals(game, game.replay(4));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.replay(5));
+
+        // An archived game comes back the same
+        ChessGame restored = ChessGame.fromHistory(game.getStartPosition(), game.getPackedHistory());
+        Assertions.assertEquals(game, restored);
+        Assertions.assertEquals(game.getMoveHistory(), restored.getMoveHistory());
+    }
+
+    @Test
+    @DisplayName("PGN Of A Finished Game")
+    public void pgn() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "e2e4", "e7e5", "f1c4", "b8c6", "d1h5", "g8f6", "h5f7");
+        String pgn = game.toPgn();
+        Assertions.assertTrue(pgn.contains("[Result \"1-0\"]"), pgn);
+        Assertions.assertTrue(pgn.contains("1. e4 e5 2. Bc4 Nc6 3. Qh5 Nf6 4. Qxf7# 1-0"), pgn);
+        Assertions.assertFalse(pgn.contains("[FEN"), pgn);
+
+        String named = Pgn.write(game, Map.of("White", "alice", "Black", "bob"));
+        Assertions.assertTrue(named.contains("[White \"alice\"]"), named);
+    }
+
+    @Test
+    @DisplayName("SAN Disambiguation And Promotion")
+    public void sanDisambiguation() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("4k3/1P6/8/8/8/8/4K3/R6R b - - 0 1");
+        play(game, "e8f7");
+        // Both rooks can reach d1 along the first row
+        game.makeMove(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(1, 4), null));
+        play(game, "f7e7");
+        game.makeMove(new ChessMove(ChessPosition.of(7, 2), ChessPosition.of(8, 2), ChessPiece.PieceType.QUEEN));
+        String pgn = game.toPgn();
+        Assertions.assertTrue(pgn.contains("[FEN \"4k3/1P6/8/8/8/8/4K3/R6R b - - 0 1\"]"), pgn);
+        Assertions.assertTrue(pgn.contains("1... Kf7 2. Rad1 Ke7 3. b8=Q *"), pgn);
+    }
+}
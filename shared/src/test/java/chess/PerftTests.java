@@ -0,0 +1,83 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PerftTests {
+
+    @Test
+    @DisplayName("Start Position Node Counts")
+    public void startPosition() {
+        ChessGame game = Fen.parse(Fen.START_POSITION);
+        long[] expected = {20, 400, 8902, 197281};
+        for (int depth = 1; depth <= expected.length; depth++) {
+            Assertions.assertEquals(expected[depth - 1], Perft.perft(game, depth),
+                    String.format("Wrong node count at depth %d", depth));
+        }
+    }
+
+    @Test
+    @DisplayName("Endgame Position Node Counts")
+    public void endgamePosition() {
+        // En passant and discovered checks along the row
+        assertNodeCounts("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 14, 191, 2812, 43238);
+    }
+
+    @Test
+    @DisplayName("Kiwipete Node Counts")
+    public void kiwipete() {
+        // Castling both ways, en passant and promotions all come up early
+        assertNodeCounts("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 48, 2039, 97862);
+    }
+
+    @Test
+    @DisplayName("Promotion Position Node Counts")
+    public void promotionPositions() {
+        assertNodeCounts("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 6, 264, 9467);
+        assertNodeCounts("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 44, 1486, 62379);
+    }
+
+    private static void assertNodeCounts(String fen, long... expected) {
+        ChessGame game = Fen.parse(fen);
+        for (int depth = 1; depth <= expected.length; depth++) {
+            Assertions.assertEquals(expected[depth - 1], Perft.perft(game, depth),
+                    String.format("Wrong node count at depth %d for %s", depth, fen));
+        }
+    }
+
+    @Test
+    @DisplayName("Middlegame Position Node Counts")
+    public void middlegamePosition() {
+        ChessGame game = Fen.parse("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10");
+        long[] expected = {46, 2079, 89890};
+        for (int depth = 1; depth <= expected.length; depth++) {
+            Assertions.assertEquals(expected[depth - 1], Perft.perft(game, depth),
+                    String.format("Wrong node count at depth %d", depth));
+        }
+    }
+
+    @Test
+    @DisplayName("Perft Leaves Game Unchanged")
+    public void gameRestored() {
+        ChessGame game = Fen.parse(Fen.START_POSITION);
+        ChessGame original = new ChessGame();
+        Perft.perft(game, 3);
+        Assertions.assertEquals(original, game, "Game changed after counting");
+        Assertions.assertEquals(original.positionKey(), game.positionKey(), "Position key changed after counting");
+    }
+
+    @Test
+    @DisplayName("Parallel And Divide Agree")
+    public void parallelMatchesSerial() {
+        ChessGame game = Fen.parse(Fen.START_POSITION);
+        long serial = Perft.perft(game, 3);
+        try (ForkJoinPool pool = new ForkJoinPool(4)) {
+            Assertions.assertEquals(serial, Perft.parallelPerft(game, 3, pool), "Parallel count differs");
+        }
+        long divided = Perft.divide(game, 3).values().stream().mapToLong(Long::longValue).sum();
+        Assertions.assertEquals(serial, divided, "Divide counts don't add up");
+    }
+}
@@ -0,0 +1,368 @@
+package chess;
+
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+public class TablebaseTests {
+
+    // Syzygy piece codes
+    private static final int WHITE_PAWN = 1;
+    private static final int WHITE_ROOK = 4;
+    private static final int WHITE_QUEEN = 5;
+    private static final int WHITE_KING = 6;
+    private static final int BLACK_KING = 14;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    public void noTables() {
+        Tablebases.setPath("");
+    }
+
+    /**
+     * Writes a table where every position has one value per side to move. That's a real
+     * (if unusual) Syzygy layout: the header and piece order, then a single-value flag
+     * instead of compressed blocks.
+     */
+    private static void writeSingleValueTable(Path directory, String name, SyzygyTable.Kind kind,
+                                              int[] pieces, int[] flags, int[] values) throws IOException {
+        SyzygyTable table = new SyzygyTable(name, List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(kind.magic);
+        out.write((table.symmetric ? 0 : 1) | (table.hasPawns ? 2 : 0));
+        int files = table.hasPawns ? 4 : 1;
+        for (int f = 0; f < files; f++) {
+            // Leading group first for both sides
+            out.write(0);
+            for (int piece : pieces) {
+                out.write(piece | (piece << 4));
+            }
+        }
+        if ((out.size() & 1) != 0) {
+            out.write(0);
+        }
+        for (int f = 0; f < files; f++) {
+            for (int side = 0; side < flags.length; side++) {
+                out.write(flags[side]);
+                out.write(values[side]);
+            }
+        }
+        while (out.size() % 64 != 16) {
+            out.write(0);
+        }
+        Files.write(directory.resolve(name + kind.suffix), out.toByteArray());
+    }
+
+    private static ChessBoard board(int... squaresAndCodes) {
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < squaresAndCodes.length; i += 2) {
+            int code = squaresAndCodes[i + 1];
+            ChessGame.TeamColor color = code >= 8 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            ChessPiece.PieceType type = switch (code & 7) {
+                case 1 -> ChessPiece.PieceType.PAWN;
+                case 4 -> ChessPiece.PieceType.ROOK;
+                case 5 -> ChessPiece.PieceType.QUEEN;
+                default -> ChessPiece.PieceType.KING;
+            };
+            board.putPiece(squaresAndCodes[i], ChessPiece.of(color, type));
+        }
+        return board;
+    }
+
+    private static boolean kingsTouch(int a, int b) {
+        return Math.abs((a >>> 3) - (b >>> 3)) <= 1 && Math.abs((a & 7) - (b & 7)) <= 1;
+    }
+
+    // The eight ways to turn or mirror the board
+    private static int transform(int sq, int symmetry) {
+        if ((symmetry & 1) != 0) {
+            sq ^= 7;
+        }
+        if ((symmetry & 2) != 0) {
+            sq ^= 56;
+        }
+        if ((symmetry & 4) != 0) {
+            sq = ((sq >>> 3) | (sq << 3)) & 63;
+        }
+        return sq;
+    }
+
+    @Test
+    @DisplayName("Table Sizes")
+    public void tableSizes() throws IOException {
+        writeSingleValueTable(directory, "KQvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_KING, WHITE_QUEEN, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        writeSingleValueTable(directory, "KRRvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_KING, BLACK_KING, WHITE_ROOK, WHITE_ROOK}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        writeSingleValueTable(directory, "KPvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_PAWN, WHITE_KING, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        List<Path> directories = List.of(directory);
+
+        // Three unique pieces together, with the first folded into the a1-d1-d4 triangle
+        Assertions.assertEquals(31332, new SyzygyTable("KQvK", directories).size(SyzygyTable.Kind.WDL, 0));
+        // The 462 king placements, then any two of the 62 squares left for the rooks
+        Assertions.assertEquals(462L * 1891, new SyzygyTable("KRRvK", directories).size(SyzygyTable.Kind.WDL, 0));
+        // Six ranks for the pawn on its file, then the kings on any of the squares left
+        SyzygyTable pawns = new SyzygyTable("KPvK", directories);
+        for (int file = 0; file < 4; file++) {
+            Assertions.assertEquals(6L * 63 * 62, pawns.size(SyzygyTable.Kind.WDL, file));
+        }
+    }
+
+    @Test
+    @DisplayName("Pawnless Encoding Is One Index Per Symmetry Class")
+    public void pawnlessEncoding() throws IOException {
+        writeSingleValueTable(directory, "KQvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_KING, WHITE_QUEEN, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        SyzygyTable table = new SyzygyTable("KQvK", List.of(directory));
+        int[] state = new int[1];
+        Map<Integer, Long> indexOfClass = new HashMap<>();
+        Map<Long, Integer> classOfIndex = new HashMap<>();
+        for (int king = 0; king < 64; king++) {
+            for (int queen = 0; queen < 64; queen++) {
+                for (int enemy = 0; enemy < 64; enemy++) {
+                    if (queen == king || queen == enemy || enemy == king || kingsTouch(king, enemy)) {
+                        continue;
+                    }
+                    long idx = table.index(SyzygyTable.Kind.WDL,
+                            board(king, WHITE_KING, queen, WHITE_QUEEN, enemy, BLACK_KING), false, false, state);
+                    Assertions.assertTrue(idx >= 0 && idx < 31332, "Index " + idx + " out of range");
+                    int symmetryClass = Integer.MAX_VALUE;
+                    for (int symmetry = 0; symmetry < 8; symmetry++) {
+                        symmetryClass = Math.min(symmetryClass, transform(king, symmetry) * 4096
+                                + transform(queen, symmetry) * 64 + transform(enemy, symmetry));
+                    }
+                    Long known = indexOfClass.putIfAbsent(symmetryClass, idx);
+                    Assertions.assertTrue(known == null || known == idx, "Mirror images got different indexes");
+                    Integer other = classOfIndex.putIfAbsent(idx, symmetryClass);
+                    Assertions.assertTrue(other == null || other == symmetryClass, "Two positions share index " + idx);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Pawn Encoding Is One Index Per Position")
+    public void pawnEncoding() throws IOException {
+        writeSingleValueTable(directory, "KPvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_PAWN, WHITE_KING, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        SyzygyTable table = new SyzygyTable("KPvK", List.of(directory));
+        int[] state = new int[1];
+        Map<String, Integer> positionOfIndex = new HashMap<>();
+        for (int pawn = 8; pawn < 56; pawn++) {
+            for (int king = 0; king < 64; king++) {
+                for (int enemy = 0; enemy < 64; enemy++) {
+                    if (king == pawn || enemy == pawn || enemy == king || kingsTouch(king, enemy)) {
+                        continue;
+                    }
+                    long idx = table.index(SyzygyTable.Kind.WDL,
+                            board(pawn, WHITE_PAWN, king, WHITE_KING, enemy, BLACK_KING), false, false, state);
+                    int file = Math.min(pawn & 7, 7 - (pawn & 7));
+                    Assertions.assertTrue(idx >= 0 && idx < table.size(SyzygyTable.Kind.WDL, file));
+                    // Only the a-h mirror is a symmetry once there are pawns
+                    int position = (pawn & 7) <= 3 ? pawn * 4096 + king * 64 + enemy
+                            : (pawn ^ 7) * 4096 + (king ^ 7) * 64 + (enemy ^ 7);
+                    Integer other = positionOfIndex.putIfAbsent(file + ":" + idx, position);
+                    Assertions.assertTrue(other == null || other == position, "Two positions share index " + idx);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("WDL Probe")
+    public void probeWdl() throws IOException {
+        // White wins with the queen whoever is to move (ignoring stalemates)
+        writeSingleValueTable(directory, "KQvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_KING, WHITE_QUEEN, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        Tablebases.setPath(directory.toString());
+        Assertions.assertEquals(3, Tablebases.maxPieces());
+
+        Assertions.assertEquals(Optional.of(Tablebases.Wdl.WIN), ChessGame.fromFen("8/8/8/8/8/2k5/8/KQ6 w - - 0 1")
+                .getTablebaseResult());
+        Assertions.assertEquals(Optional.of(Tablebases.Wdl.LOSS), ChessGame.fromFen("8/8/8/8/8/2k5/8/KQ6 b - - 0 1")
+                .getTablebaseResult());
+        // Same table with the colors swapped
+        Assertions.assertEquals(Optional.of(Tablebases.Wdl.LOSS), ChessGame.fromFen("8/8/8/8/8/2K5/8/kq6 w - - 0 1")
+                .getTablebaseResult());
+        Assertions.assertEquals(Optional.of(Tablebases.Wdl.WIN), ChessGame.fromFen("8/8/8/8/8/2K5/8/kq6 b - - 0 1")
+                .getTablebaseResult());
+
+        // Captures are searched rather than trusted to the table: the king takes the queen
+        ChessGame capture = ChessGame.fromFen("8/8/8/8/8/8/2Qk4/K7 b - - 0 1");
+        String before = capture.toFen();
+        Assertions.assertEquals(Optional.of(Tablebases.Wdl.DRAW), capture.getTablebaseResult());
+        Assertions.assertEquals(before, capture.toFen(), "Probing changed the game");
+
+        // No table for this material
+        Assertions.assertEquals(Optional.empty(), ChessGame.fromFen("8/8/8/8/8/2k5/8/KR6 w - - 0 1")
+                .getTablebaseResult());
+    }
+
+    @Test
+    @DisplayName("DTZ Probe")
+    public void probeDtz() throws IOException {
+        writeSingleValueTable(directory, "KQvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_KING, WHITE_QUEEN, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        // DTZ files store one side to move; this one stores white, 5 moves from zeroing
+        writeSingleValueTable(directory, "KQvK", SyzygyTable.Kind.DTZ,
+                new int[]{WHITE_KING, WHITE_QUEEN, BLACK_KING}, new int[]{0x80}, new int[]{5});
+        Tablebases.setPath(directory.toString());
+
+        Assertions.assertEquals(OptionalInt.of(11), Tablebases.probeDtz(ChessGame.fromFen("8/8/8/8/8/2k5/8/KQ6 w - - 0 1")));
+        // Black to move isn't stored: every black move leads to 11 for white, one ply later
+        Assertions.assertEquals(OptionalInt.of(-12), Tablebases.probeDtz(ChessGame.fromFen("8/8/8/8/8/2k5/8/KQ6 b - - 0 1")));
+        // A draw has no distance
+        Assertions.assertEquals(OptionalInt.of(0), Tablebases.probeDtz(ChessGame.fromFen("8/8/8/8/8/8/2Qk4/K7 b - - 0 1")));
+    }
+
+    @Test
+    @DisplayName("Missing Or Damaged Tables")
+    public void degradesGracefully() throws IOException {
+        Tablebases.setPath("");
+        Assertions.assertEquals(0, Tablebases.maxPieces());
+        Assertions.assertEquals(Optional.empty(), ChessGame.fromFen("8/8/8/8/8/2k5/8/KQ6 w - - 0 1").getTablebaseResult());
+
+        Tablebases.setPath(directory.resolve("nowhere").toString());
+        Assertions.assertEquals(0, Tablebases.maxPieces());
+
+        // Named like a table, but not one; a good table next to it still works
+        Files.write(directory.resolve("KRvK.rtbw"), new byte[80]);
+        writeSingleValueTable(directory, "KQvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_KING, WHITE_QUEEN, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        Tablebases.setPath(directory.toString());
+        Assertions.assertEquals(Optional.empty(), ChessGame.fromFen("8/8/8/8/8/2k5/8/KR6 w - - 0 1").getTablebaseResult());
+        Assertions.assertEquals(OptionalInt.empty(), Tablebases.probeDtz(ChessGame.fromFen("8/8/8/8/8/2k5/8/KQ6 w - - 0 1")));
+        Assertions.assertEquals(Optional.of(Tablebases.Wdl.WIN), ChessGame.fromFen("8/8/8/8/8/2k5/8/KQ6 w - - 0 1")
+                .getTablebaseResult());
+
+        // Castling rights aren't in the tables
+        Assertions.assertEquals(Optional.empty(), ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1").getTablebaseResult());
+    }
+
+    @Test
+    @DisplayName("Search Uses Tables After Captures")
+    public void searchProbes() throws IOException {
+        writeSingleValueTable(directory, "KQvK", SyzygyTable.Kind.WDL,
+                new int[]{WHITE_KING, WHITE_QUEEN, BLACK_KING}, new int[]{0x80, 0x80}, new int[]{4, 0});
+        Tablebases.setPath(directory.toString());
+        // Taking the rook reaches a table position, which the search then doesn't need to search
+        ChessGame game = ChessGame.fromFen("8/8/8/3r4/8/2k5/8/K2Q4 w - - 0 1");
+        SearchResult result = new Engine().search(game, SearchLimits.depth(3));
+        Assertions.assertEquals(new ChessMove(new ChessPosition(1, 4), new ChessPosition(5, 4), null),
+                result.bestMove(), result.toString());
+        Assertions.assertTrue(result.score() > 30000 && !result.isMate(), "Score " + result.score());
+    }
+
+    /**
+     * Checks the decoder against real KQvK and KRvK tables (download them from any
+     * Syzygy mirror) in the directory named by the chess.syzygy.test.path system
+     * property; skipped without it. Every legal position is compared with what the rules
+     * alone say: with the queen or rook and the move, white wins; with the move, black
+     * draws only by stalemate or by taking the piece, and loses otherwise.
+     */
+    @Test
+    @DisplayName("Real Tables Agree With The Rules")
+    public void realTables() {
+        String path = System.getProperty("chess.syzygy.test.path", "");
+        Assumptions.assumeTrue(!path.isEmpty(), "chess.syzygy.test.path isn't set");
+        Tablebases.setPath(path);
+        Assertions.assertEquals(3, Tablebases.maxPieces(), "No 3-piece tables in " + path);
+        // Longest wins are mate in 10 (KQvK) and 16 (KRvK) moves, plus a ply of slack
+        checkAgainstRules(ChessPiece.PieceType.QUEEN, 21);
+        checkAgainstRules(ChessPiece.PieceType.ROOK, 33);
+    }
+
+    private static void checkAgainstRules(ChessPiece.PieceType piece, int longestDtz) {
+        MoveList moves = new MoveList();
+        int positions = 0;
+        for (int whiteKing = 0; whiteKing < 64; whiteKing++) {
+            for (int blackKing = 0; blackKing < 64; blackKing++) {
+                for (int square = 0; square < 64; square++) {
+                    if (whiteKing == blackKing || square == whiteKing || square == blackKing
+                            || Math.abs(whiteKing / 8 - blackKing / 8) <= 1 && Math.abs(whiteKing % 8 - blackKing % 8) <= 1) {
+                        continue;
+                    }
+                    for (ChessGame.TeamColor turn : ChessGame.TeamColor.values()) {
+                        ChessBoard board = new ChessBoard();
+                        board.putPiece(whiteKing, ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+                        board.putPiece(blackKing, ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+                        board.putPiece(square, ChessPiece.of(ChessGame.TeamColor.WHITE, piece));
+                        ChessGame game = new ChessGame(turn, board);
+                        if (turn == ChessGame.TeamColor.WHITE && game.isInCheck(ChessGame.TeamColor.BLACK)) {
+                            continue;
+                        }
+                        positions++;
+                        String fen = game.toFen();
+                        Tablebases.Wdl expected = expectedResult(game, moves);
+                        Assertions.assertEquals(Optional.of(expected), Tablebases.probeWdl(game), fen);
+
+                        int dtz = Tablebases.probeDtz(game).orElseThrow();
+                        switch (expected) {
+                            case WIN -> Assertions.assertTrue(dtz >= 1 && dtz <= longestDtz, fen + " dtz " + dtz);
+                            case LOSS -> Assertions.assertTrue(dtz <= -1 && dtz >= -longestDtz - 1, fen + " dtz " + dtz);
+                            default -> Assertions.assertEquals(0, dtz, fen);
+                        }
+                        if (expected == Tablebases.Wdl.WIN && matesInOne(game, moves)) {
+                            Assertions.assertTrue(dtz <= 2, fen + " mates in one but has dtz " + dtz);
+                        }
+                    }
+                }
+            }
+        }
+        Assertions.assertTrue(positions > 100_000, "Only " + positions + " positions");
+    }
+
+    private static Tablebases.Wdl expectedResult(ChessGame game, MoveList moves) {
+        if (game.getTeamTurn() == ChessGame.TeamColor.WHITE) {
+            return Tablebases.Wdl.WIN;
+        }
+        moves.clear();
+        game.legalMoves(moves);
+        if (moves.isEmpty()) {
+            return game.isInCheck(ChessGame.TeamColor.BLACK) ? Tablebases.Wdl.LOSS : Tablebases.Wdl.DRAW;
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.hasFlags(moves.get(i), PackedMove.CAPTURE)) {
+                return Tablebases.Wdl.DRAW;
+            }
+        }
+        return Tablebases.Wdl.LOSS;
+    }
+
+    private static boolean matesInOne(ChessGame game, MoveList moves) {
+        moves.clear();
+        game.legalMoves(moves);
+        int[] candidates = new int[moves.size()];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = moves.get(i);
+        }
+        for (int move : candidates) {
+            game.makeMove(move);
+            boolean mate = game.isInCheckmate(game.getTeamTurn());
+            game.unmakeMove();
+            if (mate) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
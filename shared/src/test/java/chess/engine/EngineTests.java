@@ -0,0 +1,93 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class EngineTests {
+
+    private final Engine engine = new Engine();
+
+    private static ChessMove move(String move) {
+        return new ChessMove(ChessPosition.of(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                ChessPosition.of(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+
+    @Test
+    @DisplayName("Finds Mate In One")
+    public void mateInOne() {
+        ChessGame game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(3));
+        Assertions.assertEquals(move("a1a8"), result.bestMove());
+        Assertions.assertEquals(SearchResult.MATE - 1, result.score());
+        Assertions.assertTrue(result.isMate());
+    }
+
+    @Test
+    @DisplayName("Finds Mate In Two")
+    public void mateInTwo() {
+        // Rook roller: 1. Ra7 (or Rb7) Kg8 2. Rb8#
+        ChessGame game = ChessGame.fromFen("7k/8/8/8/8/8/R7/1R4K1 w - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(5));
+        Assertions.assertEquals(SearchResult.MATE - 3, result.score(), result.principalVariation().toString());
+    }
+
+    @Test
+    @DisplayName("Takes Hanging Queen")
+    public void takesHangingQueen() {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+        Assertions.assertEquals(move("d2d5"), engine.bestMove(game, SearchLimits.depth(4)));
+    }
+
+    @Test
+    @DisplayName("Sees Defended Piece In Quiescence")
+    public void avoidsBadCapture() {
+        // The pawn on d5 is defended by the one on e6; taking it with the queen loses her
+        ChessGame game = ChessGame.fromFen("4k3/8/4p3/3p4/8/8/3Q4/4K3 w - - 0 1");
+        Assertions.assertNotEquals(move("d2d5"), engine.bestMove(game, SearchLimits.depth(2)));
+    }
+
+    @Test
+    @DisplayName("No Move When Checkmated")
+    public void noMoveWhenMated() {
+        ChessGame game = ChessGame.fromFen("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(3));
+        Assertions.assertNull(result.bestMove());
+    }
+
+    @Test
+    @DisplayName("Search Respects Limits And Leaves Game Alone")
+    public void limits() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        String before = game.toFen();
+
+        SearchResult byNodes = engine.search(game, SearchLimits.nodes(20_000));
+        Assertions.assertNotNull(byNodes.bestMove());
+        Assertions.assertTrue(byNodes.nodes() < 20_000 + 4096, "Went far past the node limit: " + byNodes.nodes());
+
+        long start = System.nanoTime();
+        SearchResult byTime = engine.search(game, SearchLimits.time(200));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertNotNull(byTime.bestMove());
+        Assertions.assertTrue(millis < 1000, "Search ran for " + millis + " ms");
+
+        Assertions.assertEquals(before, game.toFen());
+        Assertions.assertTrue(game.validMoves(byTime.bestMove().getStartPosition()).contains(byTime.bestMove()));
+    }
+
+    @Test
+    @DisplayName("Table Scores Count From The Position")
+    public void distanceScoresInTable() {
+        // A tablebase win found 5 plies in, read back where the same position is 9 plies in
+        int stored = Searcher.toTable(Searcher.TABLEBASE_WIN - 5, 5);
+        Assertions.assertEquals(Searcher.TABLEBASE_WIN, stored);
+        Assertions.assertEquals(Searcher.TABLEBASE_WIN - 9, Searcher.fromTable(stored, 9));
+        Assertions.assertEquals(-Searcher.TABLEBASE_WIN + 9, Searcher.fromTable(Searcher.toTable(-Searcher.TABLEBASE_WIN + 5, 5), 9));
+        // Mates the same way; ordinary evaluations as they are
+        Assertions.assertEquals(SearchResult.MATE - 2, Searcher.fromTable(Searcher.toTable(SearchResult.MATE - 3, 3), 2));
+        Assertions.assertEquals(250, Searcher.fromTable(Searcher.toTable(250, 7), 3));
+    }
+}
@@ -0,0 +1,75 @@
+package chess.engine;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class LazySmpTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private final int originalLimit = SearchThreads.getLimit();
+
+    @AfterEach
+    public void restoreLimit() {
+        SearchThreads.setLimit(originalLimit);
+    }
+
+    @Test
+    @DisplayName("Parallel Search Finds Mate")
+    public void parallelMate() {
+        SearchThreads.setLimit(4);
+        Engine engine = new Engine(new TranspositionTable(1), 4);
+        ChessGame game = ChessGame.fromFen("7k/8/8/8/8/8/R7/1R4K1 w - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(5));
+        Assertions.assertEquals(SearchResult.MATE - 3, result.score(), result.principalVariation().toString());
+        Assertions.assertEquals(4, result.threads());
+        Assertions.assertEquals(result.nodes(), Arrays.stream(result.threadNodes()).sum());
+        Assertions.assertEquals(0, SearchThreads.searching(), "Threads still counted after the search");
+    }
+
+    @Test
+    @DisplayName("Helpers Stop With The Main Thread")
+    public void helpersStop() {
+        SearchThreads.setLimit(3);
+        Engine engine = new Engine(new TranspositionTable(1), 3);
+        SearchResult result = engine.search(ChessGame.fromFen(KIWIPETE), SearchLimits.time(200));
+        Assertions.assertNotNull(result.bestMove());
+        Assertions.assertEquals(3, result.threads());
+        // Helpers may run at most a few thousand nodes past the stop
+        Assertions.assertTrue(result.nanos() < 2_000_000_000L, "Search took " + result.nanos() + " ns");
+        Assertions.assertEquals(0, SearchThreads.searching());
+    }
+
+    @Test
+    @DisplayName("Node Limit Covers All Threads")
+    public void sharedNodeLimit() {
+        SearchThreads.setLimit(4);
+        Engine engine = new Engine(new TranspositionTable(1), 4);
+        SearchResult result = engine.search(ChessGame.fromFen(KIWIPETE), SearchLimits.nodes(50_000));
+        Assertions.assertEquals(4, result.threads());
+        // Each thread checks the shared count every 2048 nodes, so can only run that far past it
+        Assertions.assertTrue(result.nodes() < 50_000 + 4 * 2048,
+                "Went far past the node limit: " + Arrays.toString(result.threadNodes()));
+    }
+
+    @Test
+    @DisplayName("Thread Budget Caps Helpers")
+    public void threadBudget() {
+        SearchThreads.setLimit(2);
+        Engine engine = new Engine(new TranspositionTable(1), 8);
+        SearchResult result = engine.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(3));
+        Assertions.assertEquals(2, result.threads());
+
+        SearchThreads.setLimit(1);
+        result = engine.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(3));
+        Assertions.assertEquals(1, result.threads());
+        Assertions.assertNotNull(result.bestMove());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SearchThreads.setLimit(0));
+    }
+}
@@ -0,0 +1,101 @@
+package chess.engine;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TranspositionTableTests {
+
+    @Test
+    @DisplayName("Store And Probe")
+    public void storeAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x123456789ABCDEF0L;
+        Assertions.assertEquals(0, table.probe(key));
+
+        table.store(key, 0x4A3C5, -31990, 7, TranspositionTable.LOWER);
+        long data = table.probe(key);
+        Assertions.assertEquals(0x4A3C5, TranspositionTable.move(data));
+        Assertions.assertEquals(-31990, TranspositionTable.score(data));
+        Assertions.assertEquals(7, TranspositionTable.depth(data));
+        Assertions.assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+
+        // A result without a move keeps the move already stored for the position
+        table.store(key, 0, 15, 8, TranspositionTable.UPPER);
+        Assertions.assertEquals(0x4A3C5, TranspositionTable.move(table.probe(key)));
+        Assertions.assertEquals(15, TranspositionTable.score(table.probe(key)));
+
+        Assertions.assertEquals(4, table.probes());
+        Assertions.assertEquals(3, table.hits());
+        table.clear();
+        Assertions.assertEquals(0, table.probe(key));
+    }
+
+    @Test
+    @DisplayName("Old Entries Are Replaced First")
+    public void replacement() {
+        TranspositionTable table = new TranspositionTable(1);
+        // Same high bits, so all three land in one two-slot bucket
+        long deep = 0x0000000100000001L;
+        long shallow = 0x0000000100000002L;
+        long newer = 0x0000000100000003L;
+
+        table.store(deep, 0, 0, 20, TranspositionTable.EXACT);
+        table.newSearch();
+        table.store(shallow, 0, 0, 1, TranspositionTable.EXACT);
+        table.store(newer, 0, 0, 2, TranspositionTable.EXACT);
+        // The deep entry was from an older search, so it went, not the shallow new one
+        Assertions.assertEquals(0, table.probe(deep));
+        Assertions.assertNotEquals(0, table.probe(shallow));
+        Assertions.assertNotEquals(0, table.probe(newer));
+    }
+
+    @Test
+    @DisplayName("Concurrent Writers Never Produce Wrong Data")
+    public void concurrentAccess() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1);
+        AtomicInteger wrong = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < 200_000; i++) {
+                    // Keys from a small range so threads keep colliding on the same slots
+                    long key = random.nextLong(1, 5_000) * 0x9E3779B97F4A7C15L;
+                    int expectedDepth = (int) (Long.remainderUnsigned(key, 200));
+                    long data = table.probe(key);
+                    if (data != 0 && TranspositionTable.depth(data) != expectedDepth) {
+                        wrong.incrementAndGet();
+                    }
+                    table.store(key, 0, 0, expectedDepth, TranspositionTable.EXACT);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(0, wrong.get());
+        Assertions.assertTrue(table.hitRate() > 0);
+    }
+
+    @Test
+    @DisplayName("Shared Table Speeds Up A Repeated Search")
+    public void sharedTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        ChessGame game = ChessGame.fromFen("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10");
+        SearchResult first = new Engine(table).search(game, SearchLimits.depth(4));
+        Assertions.assertTrue(table.hashfull() > 0, table.toString());
+        SearchResult second = new Engine(table).search(game, SearchLimits.depth(4));
+        Assertions.assertTrue(second.nodes() < first.nodes(),
+                String.format("%d nodes the second time vs %d", second.nodes(), first.nodes()));
+        Assertions.assertTrue(table.hits() > 0, table.toString());
+    }
+}